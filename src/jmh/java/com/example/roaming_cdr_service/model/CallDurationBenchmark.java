@@ -0,0 +1,49 @@
+package com.example.roaming_cdr_service.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк форматирования длительности {@link CallDuration#formatDuration(long)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallDurationBenchmark {
+
+    /**
+     * Длительность в секундах: меньше часа, сутки с лишним, больше 99 часов (три цифры в часах).
+     */
+    @Param({"59", "90061", "3600000"})
+    private long totalSeconds;
+
+    private CallDuration callDuration;
+
+    @Setup
+    public void setUp() {
+        callDuration = new CallDuration(0);
+    }
+
+    @Benchmark
+    public String formatDuration() {
+        return callDuration.formatDuration(totalSeconds);
+    }
+
+    @Benchmark
+    public CallDuration newCallDuration() {
+        return new CallDuration(totalSeconds);
+    }
+}
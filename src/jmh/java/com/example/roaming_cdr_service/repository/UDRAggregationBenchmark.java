@@ -0,0 +1,112 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.UDRRollup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Бенчмарк подсчёта UDR за месяц на синтетических звонках во встроенной базе H2:
+ * по секции месяца ({@link UDRAggregator}) и по колоночному хранилищу ({@link CDRColumnStore}) —
+ * для всех абонентов и для одного абонента.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UDRAggregationBenchmark {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 2);
+    private static final LocalDateTime START = MONTH.atDay(1).atStartOfDay();
+    private static final LocalDateTime END = START.plusMonths(1);
+    private static final long FIRST_MSISDN = 79990000000L;
+    private static final String INSERT_SQL = "INSERT INTO %s VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int INSERT_BATCH_SIZE = 5_000;
+
+    /**
+     * Число звонков за месяц.
+     */
+    @Param({"10000", "100000"})
+    private int calls;
+
+    @Param({"100", "1000"})
+    private int subscribers;
+
+    private JdbcTemplate jdbcTemplate;
+    private UDRAggregator aggregator;
+    private CDRColumnStore columnStore;
+    private String msisdn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:udr_benchmark;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE cdr (id BIGINT PRIMARY KEY, call_type TINYINT, msisdn BIGINT, "
+                + "other_msisdn BIGINT, call_start_time TIMESTAMP, call_end_time TIMESTAMP)");
+        CDRPartitions partitions = new CDRPartitions(jdbcTemplate);
+        String table = partitions.ensure(MONTH);
+
+        SplittableRandom random = new SplittableRandom(42);
+        int monthSeconds = (int) (END.toLocalDate().toEpochDay() - START.toLocalDate().toEpochDay()) * 24 * 3600;
+        List<Object[]> rows = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int id = 1; id <= calls; id++) {
+            LocalDateTime start = START.plusSeconds(random.nextInt(monthSeconds));
+            rows.add(new Object[]{id, random.nextInt(1, 3), FIRST_MSISDN + random.nextInt(subscribers),
+                    FIRST_MSISDN + random.nextInt(subscribers), start, start.plusSeconds(random.nextInt(1_200))});
+            if (rows.size() == INSERT_BATCH_SIZE || id == calls) {
+                jdbcTemplate.batchUpdate(String.format(INSERT_SQL, table), rows);
+                rows.clear();
+            }
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        aggregator = new UDRAggregator(jdbcTemplate, partitions, meterRegistry, 0);
+        columnStore = new CDRColumnStore(jdbcTemplate, mock(CDRArchive.class), partitions, true, meterRegistry);
+        columnStore.load();
+        msisdn = String.valueOf(FIRST_MSISDN);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Benchmark
+    public List<UDRRollup> aggregateTable() {
+        return aggregator.aggregate(MONTH);
+    }
+
+    @Benchmark
+    public List<UDRRollup> aggregateStore() {
+        return columnStore.aggregate(MONTH.atDay(1), START, END);
+    }
+
+    @Benchmark
+    public long[] subscriberStore() {
+        long[] seconds = new long[2];
+        columnStore.addSubscriberCallDurations(seconds, msisdn, START, END);
+        return seconds;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.CDR;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк записи CDR-отчёта в CSV файл через {@link CDRCsvWriter} с буфером одиночного
+ * и пакетного отчёта. Время — на отчёт из {@code rows} строк, включая открытие и закрытие файла.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CDRCsvWriterBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    /**
+     * Размер буфера записи: одиночного отчёта (64 КБ) и файла абонента пакетного отчёта (8 КБ).
+     */
+    @Param({"65536", "8192"})
+    private int bufferSize;
+
+    private List<CDR> cdrs;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        cdrs = new ArrayList<>(rows);
+        LocalDateTime start = START;
+        for (int i = 0; i < rows; i++) {
+            start = start.plusSeconds(random.nextInt(3_600));
+            cdrs.add(CDR.builder()
+                    .callType(random.nextBoolean() ? "01" : "02")
+                    .msisdn(String.valueOf(79990000000L + random.nextInt(100)))
+                    .otherMsisdn(String.valueOf(79990000000L + random.nextInt(100)))
+                    .callStartTime(start)
+                    .callEndTime(start.plusSeconds(random.nextInt(1_200)))
+                    .build());
+        }
+        file = Files.createTempFile("cdr-report-benchmark", ".csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long writeReport() throws IOException {
+        try (CDRCsvWriter writer = new CDRCsvWriter(file, false, bufferSize)) {
+            for (CDR cdr : cdrs) {
+                writer.write(cdr);
+            }
+        }
+        return Files.size(file);
+    }
+}
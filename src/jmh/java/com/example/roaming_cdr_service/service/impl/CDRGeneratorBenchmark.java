@@ -0,0 +1,76 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.CDR;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк генерации CDR: моделирование звонков {@link CDRGenerator} и преобразование окон
+ * в записи {@link CDR}, как в {@link CDRServiceImpl#generateCDRs()} до записи пакета в базу.
+ * Время — на весь период, число звонков периода не зависит от числа абонентов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CDRGeneratorBenchmark {
+
+    private static final LocalDateTime END = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final int SUBSCRIBERS = 100;
+    private static final int PARTITIONS = 12;
+    private static final long SEED = 42;
+
+    /**
+     * Длина периода генерации в месяцах.
+     */
+    @Param({"1", "12"})
+    private int months;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private CDRGenerator generator;
+    private LocalDateTime start;
+
+    @Setup
+    public void setUp() {
+        List<String> msisdns = new ArrayList<>(SUBSCRIBERS);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            msisdns.add(String.valueOf(79990000000L + i));
+        }
+        generator = new CDRGenerator(msisdns, SEED, PARTITIONS, CDRGenerator.DEFAULT_CALLS_PER_SUBSCRIBER_PER_DAY);
+        start = END.minusMonths(months);
+    }
+
+    @Benchmark
+    public long simulate() {
+        long[] calls = {0};
+        generator.generate(start, END, parallelism, window -> calls[0] += window.size());
+        return calls[0];
+    }
+
+    @Benchmark
+    public void generateCDRs(Blackhole blackhole) {
+        generator.generate(start, END, parallelism, window -> {
+            for (int i = 0; i < window.size(); i++) {
+                blackhole.consume(window.toCDR(i));
+            }
+        });
+    }
+}
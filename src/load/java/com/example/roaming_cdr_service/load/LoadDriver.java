@@ -0,0 +1,300 @@
+package com.example.roaming_cdr_service.load;
+
+import com.example.roaming_cdr_service.RoamingCdrServiceApplication;
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.Subscriber;
+import com.example.roaming_cdr_service.repository.CDRBulkWriter;
+import com.example.roaming_cdr_service.repository.SubscriberRepository;
+import com.example.roaming_cdr_service.service.impl.CDRGenerationJob;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный прогон эндпоинтов {@code /udr/{msisdn}}, {@code /udr/all} и {@code /cdr/generate-report}
+ * против встроенного экземпляра приложения.
+ * <p>
+ * Запуск: {@code mvn -Pload test-compile exec:exec -Dload.args="--load.rate=200 --load.subscribers=1000 --load.calls=1000000"}.
+ * Аргументы передаются приложению как есть, поэтому можно задавать и его свойства
+ * ({@code --cdr.udr.store.enabled=true} и т. п.). Настройки прогона описаны в {@link LoadProperties}.
+ * </p>
+ * <p>
+ * После завершения генерации CDR прогон добавляет синтетических абонентов и звонки через {@link CDRBulkWriter},
+ * затем отправляет запросы с постоянной интенсивностью по расписанию, не дожидаясь ответов (открытая модель).
+ * Задержка отсчитывается от запланированного, а не от фактического момента отправки, поэтому отставание
+ * клиента или сервера от расписания попадает в задержку (поправка на coordinated omission).
+ * Для каждого эндпоинта выводятся перцентили задержки, пропускная способность и число ошибок,
+ * а гистограммы сохраняются в {@code load.output} в формате HdrHistogram.
+ * </p>
+ */
+@Slf4j
+public final class LoadDriver {
+
+    private static final String MSISDN_FORMAT = "78%09d";
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final long POLL_MILLIS = 200;
+    private static final int MAX_CALL_SECONDS = 3_600;
+    private static final String OVERRIDES_PROPERTY_SOURCE = "loadDriver";
+    private static final String ERROR_EMPTY_MIX = "В load.mix нет эндпоинтов с положительным весом.";
+    private static final String ERROR_GENERATION_FAILED = "Генерация CDR завершилась ошибкой: %s.";
+
+    private LoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        SpringApplication application = new SpringApplication(RoamingCdrServiceApplication.class);
+        application.addInitializers(LoadDriver::overrideDefaults);
+
+        try (ConfigurableApplicationContext context = application.run(args)) {
+            LoadProperties properties = Binder.get(context.getEnvironment())
+                    .bindOrCreate("load", LoadProperties.class);
+            awaitGeneration(context.getBean(CDRGenerationJob.class));
+            seed(context, properties);
+
+            List<String> msisdns = context.getBean(SubscriberRepository.class).findAll().stream()
+                    .map(Subscriber::getMsisdn)
+                    .toList();
+            URI base = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            Map<LoadEndpoint, Result> results = run(properties, base, msisdns);
+            report(properties, results);
+        }
+    }
+
+    /**
+     * Отчёты и архив прогона не смешиваются с файлами обычного запуска: настройки прогона важнее
+     * {@code application.properties}, но аргументы командной строки важнее их.
+     */
+    private static void overrideDefaults(ConfigurableApplicationContext context) {
+        MutablePropertySources sources = context.getEnvironment().getPropertySources();
+        MapPropertySource overrides = new MapPropertySource(OVERRIDES_PROPERTY_SOURCE, Map.of(
+                "server.port", "0",
+                "cdr.report.directory", "target/load/reports",
+                "cdr.archive.directory", "target/load/archive"));
+        if (sources.contains(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+            sources.addAfter(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME, overrides);
+        } else {
+            sources.addFirst(overrides);
+        }
+    }
+
+    private static void awaitGeneration(CDRGenerationJob generationJob) throws InterruptedException {
+        while (generationJob.isRunning()) {
+            Thread.sleep(POLL_MILLIS);
+        }
+        if (!generationJob.isCompleted()) {
+            throw new IllegalStateException(String.format(ERROR_GENERATION_FAILED, generationJob.getStatus().getError()));
+        }
+    }
+
+    /**
+     * Добавляет синтетических абонентов и равномерно распределённые по году звонки между ними.
+     */
+    private static void seed(ConfigurableApplicationContext context, LoadProperties properties) {
+        if (properties.getSubscribers() < 2) {
+            return;
+        }
+        List<String> msisdns = new ArrayList<>(properties.getSubscribers());
+        for (int i = 0; i < properties.getSubscribers(); i++) {
+            msisdns.add(String.format(MSISDN_FORMAT, i));
+        }
+        context.getBean(SubscriberRepository.class).saveAll(msisdns.stream().map(Subscriber::new).toList());
+
+        CDRBulkWriter writer = context.getBean(CDRBulkWriter.class);
+        SplittableRandom random = new SplittableRandom(properties.getSeed());
+        LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime start = end.minusYears(1);
+        long periodSeconds = ChronoUnit.SECONDS.between(start, end);
+        long started = System.nanoTime();
+        List<CDR> batch = new ArrayList<>(writer.getBatchSize());
+        for (long i = 0; i < properties.getCalls(); i++) {
+            // Звонки идут по возрастанию времени начала, как при генерации
+            LocalDateTime callStart = start.plusSeconds(i * periodSeconds / properties.getCalls());
+            int caller = random.nextInt(msisdns.size());
+            int receiver = (caller + 1 + random.nextInt(msisdns.size() - 1)) % msisdns.size();
+            batch.add(CDR.builder()
+                    .callType(random.nextBoolean() ? "01" : "02")
+                    .msisdn(msisdns.get(caller))
+                    .otherMsisdn(msisdns.get(receiver))
+                    .callStartTime(callStart)
+                    .callEndTime(callStart.plusSeconds(random.nextInt(MAX_CALL_SECONDS)))
+                    .build());
+            if (batch.size() == writer.getBatchSize()) {
+                writer.insertAll(batch);
+                batch.clear();
+            }
+        }
+        writer.insertAll(batch);
+        log.info("Добавлено {} абонентов и {} звонков за {} мс", msisdns.size(), properties.getCalls(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Отправляет запросы по расписанию: {@code i}-й запрос запланирован на {@code i / rate} секунд от начала.
+     * Если отправка отстала от расписания, запросы уходят сразу, а задержка всё равно считается от плана.
+     */
+    private static Map<LoadEndpoint, Result> run(LoadProperties properties, URI base, List<String> msisdns)
+            throws InterruptedException {
+        LoadEndpoint[] schedule = schedule(properties.getMix());
+        Map<LoadEndpoint, Result> results = new EnumMap<>(LoadEndpoint.class);
+        for (LoadEndpoint endpoint : schedule) {
+            results.putIfAbsent(endpoint, new Result());
+        }
+
+        long intervalNanos = (long) (1_000_000_000L / properties.getRate());
+        long warmupNanos = properties.getWarmup().toNanos();
+        long totalNanos = warmupNanos + properties.getDuration().toNanos();
+        YearMonth lastMonth = YearMonth.now();
+        SplittableRandom random = new SplittableRandom(properties.getSeed());
+        AtomicLong inFlight = new AtomicLong();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpClient client = HttpClient.newBuilder().executor(executor).build();
+        log.info("Нагрузка {} запросов/с на {}: прогрев {}, измерение {}, доли {}",
+                properties.getRate(), base, properties.getWarmup(), properties.getDuration(), properties.getMix());
+
+        long started = System.nanoTime();
+        try {
+            for (long i = 0; ; i++) {
+                long intended = started + i * intervalNanos;
+                if (intended - started >= totalNanos) {
+                    break;
+                }
+                long delay = intended - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                LoadEndpoint endpoint = schedule[random.nextInt(schedule.length)];
+                HttpRequest request = endpoint.randomRequest(base, msisdns, lastMonth, properties.getTimeout(), random);
+                Result result = intended - started >= warmupNanos ? results.get(endpoint) : null;
+                inFlight.incrementAndGet();
+                client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                    if (result != null) {
+                        result.record(System.nanoTime() - intended,
+                                error != null ? error.getClass().getSimpleName()
+                                        : response.statusCode() >= 400 ? String.valueOf(response.statusCode()) : null);
+                    }
+                    inFlight.decrementAndGet();
+                });
+            }
+            long deadline = System.nanoTime() + properties.getTimeout().toNanos();
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(POLL_MILLIS);
+            }
+            if (inFlight.get() > 0) {
+                log.warn("Не дождались ответов на {} запросов", inFlight.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Раскладывает эндпоинты по 100 ячейкам пропорционально весам; случайная ячейка задаёт следующий запрос.
+     */
+    private static LoadEndpoint[] schedule(Map<String, Integer> mix) {
+        List<LoadEndpoint> endpoints = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        mix.forEach((key, weight) -> {
+            if (weight > 0) {
+                endpoints.add(LoadEndpoint.of(key));
+                weights.add(weight);
+            }
+        });
+        int total = weights.stream().mapToInt(Integer::intValue).sum();
+        if (total == 0) {
+            throw new IllegalArgumentException(ERROR_EMPTY_MIX);
+        }
+        List<LoadEndpoint> slots = new ArrayList<>();
+        for (int i = 0; i < endpoints.size(); i++) {
+            for (int slot = 0; slot < Math.max(1, 100 * weights.get(i) / total); slot++) {
+                slots.add(endpoints.get(i));
+            }
+        }
+        return slots.toArray(new LoadEndpoint[0]);
+    }
+
+    private static void report(LoadProperties properties, Map<LoadEndpoint, Result> results) throws IOException {
+        Path output = Path.of(properties.getOutput());
+        Files.createDirectories(output);
+        double seconds = properties.getDuration().toNanos() / 1e9;
+        Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        long totalErrors = 0;
+
+        StringBuilder table = new StringBuilder(String.format("%n%-8s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<LoadEndpoint, Result> entry : results.entrySet()) {
+            Histogram histogram = entry.getValue().latencies;
+            long errors = entry.getValue().errors.values().stream().mapToLong(LongAdder::sum).sum();
+            table.append(row(entry.getKey().key(), histogram, errors, seconds));
+            total.add(histogram);
+            totalErrors += errors;
+            try (PrintStream out = new PrintStream(Files.newOutputStream(output.resolve(entry.getKey().key() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+        table.append(row("total", total, totalErrors, seconds));
+        results.forEach((endpoint, result) -> result.errors.forEach((error, count) ->
+                table.append(String.format("%-8s error %s: %d%n", endpoint.key(), error, count.sum()))));
+        log.info("Результаты нагрузки (задержка от запланированного момента, целевая интенсивность {} запросов/с):{}",
+                properties.getRate(), table);
+        log.info("Гистограммы задержек (мс) сохранены в {}", output.toAbsolutePath());
+    }
+
+    private static String row(String name, Histogram histogram, long errors, double seconds) {
+        return String.format("%-8s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                name, histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+                millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Задержки и ошибки одного эндпоинта (по коду ответа или классу исключения); пишутся из потоков HTTP-клиента.
+     */
+    private static final class Result {
+        private final Histogram latencies = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        private final Map<String, LongAdder> errors = new ConcurrentSkipListMap<>();
+
+        /**
+         * @param error Код ответа 4xx/5xx или класс исключения; {@code null} — успешный ответ.
+         */
+        private void record(long nanos, String error) {
+            latencies.recordValue(nanos);
+            if (error != null) {
+                errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.roaming_cdr_service.load;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Эндпоинты, которые нагружает {@link LoadDriver}. Абонент и месяц запроса выбираются случайно
+ * среди абонентов приложения и месяцев года до текущего момента.
+ */
+enum LoadEndpoint {
+
+    /**
+     * {@code GET /udr/{msisdn}?month=yyyy-MM}.
+     */
+    UDR("udr") {
+        @Override
+        HttpRequest.Builder request(URI base, String msisdn, YearMonth month) {
+            return HttpRequest.newBuilder(base.resolve("/udr/" + msisdn + "?month=" + month)).GET();
+        }
+    },
+
+    /**
+     * {@code GET /udr/all?month=yyyy-MM}.
+     */
+    UDR_ALL("udr-all") {
+        @Override
+        HttpRequest.Builder request(URI base, String msisdn, YearMonth month) {
+            return HttpRequest.newBuilder(base.resolve("/udr/all?month=" + month)).GET();
+        }
+    },
+
+    /**
+     * {@code POST /cdr/generate-report} за весь месяц.
+     */
+    REPORT("report") {
+        @Override
+        HttpRequest.Builder request(URI base, String msisdn, YearMonth month) {
+            LocalDateTime start = month.atDay(1).atStartOfDay();
+            LocalDateTime end = month.atEndOfMonth().atTime(23, 59, 59);
+            return HttpRequest.newBuilder(base.resolve("/cdr/generate-report?msisdn=" + msisdn
+                            + "&startDate=" + DATE_TIME_FORMATTER.format(start)
+                            + "&endDate=" + DATE_TIME_FORMATTER.format(end)))
+                    .POST(HttpRequest.BodyPublishers.noBody());
+        }
+    };
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final String ERROR_UNKNOWN_ENDPOINT = "Неизвестный эндпоинт в load.mix: %s.";
+
+    private final String key;
+
+    LoadEndpoint(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return Имя эндпоинта в {@code load.mix}.
+     */
+    String key() {
+        return key;
+    }
+
+    abstract HttpRequest.Builder request(URI base, String msisdn, YearMonth month);
+
+    /**
+     * Строит случайный запрос к эндпоинту.
+     */
+    HttpRequest randomRequest(URI base, List<String> msisdns, YearMonth lastMonth, Duration timeout,
+                              SplittableRandom random) {
+        return request(base, msisdns.get(random.nextInt(msisdns.size())), lastMonth.minusMonths(random.nextInt(12)))
+                .timeout(timeout)
+                .build();
+    }
+
+    static LoadEndpoint of(String key) {
+        for (LoadEndpoint endpoint : values()) {
+            if (endpoint.key.equals(key.toLowerCase(Locale.ROOT))) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException(String.format(ERROR_UNKNOWN_ENDPOINT, key));
+    }
+}
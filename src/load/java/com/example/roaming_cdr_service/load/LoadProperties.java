@@ -0,0 +1,59 @@
+package com.example.roaming_cdr_service.load;
+
+import lombok.Data;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Настройки нагрузочного прогона (префикс {@code load}), передаются аргументами {@code --load.*}.
+ */
+@Data
+public class LoadProperties {
+
+    /**
+     * Целевая интенсивность запросов в секунду. Запросы отправляются по расписанию независимо
+     * от времени ответа (открытая модель нагрузки).
+     */
+    private double rate = 50;
+
+    /**
+     * Длительность измерения.
+     */
+    private Duration duration = Duration.ofSeconds(60);
+
+    /**
+     * Длительность прогрева перед измерением; ответы на запросы прогрева не учитываются.
+     */
+    private Duration warmup = Duration.ofSeconds(10);
+
+    /**
+     * Время ожидания ответа на один запрос.
+     */
+    private Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * Доли запросов по эндпоинтам ({@code udr}, {@code udr-all}, {@code report}); нулевой вес исключает эндпоинт.
+     */
+    private Map<String, Integer> mix = new LinkedHashMap<>(Map.of("udr", 70, "udr-all", 20, "report", 10));
+
+    /**
+     * Число синтетических абонентов, добавляемых к абонентам приложения перед прогоном.
+     */
+    private int subscribers = 0;
+
+    /**
+     * Число синтетических звонков между синтетическими абонентами за год до текущего момента.
+     */
+    private long calls = 0;
+
+    /**
+     * Зерно генератора синтетических звонков и выбора запросов.
+     */
+    private long seed = 42;
+
+    /**
+     * Директория для гистограмм задержек в формате HdrHistogram ({@code .hgrm}).
+     */
+    private String output = "target/load";
+}
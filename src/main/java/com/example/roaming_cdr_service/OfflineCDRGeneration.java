@@ -0,0 +1,110 @@
+package com.example.roaming_cdr_service;
+
+import com.example.roaming_cdr_service.service.impl.CDRFileWriter;
+import com.example.roaming_cdr_service.service.impl.CDRGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Офлайн-режим генерации CDR записей прямо в файл, без запуска Spring-контекста, H2 и JPA.
+ * <p>
+ * Включается аргументом {@code --offline}:
+ * <pre>
+ * java -jar roaming-cdr-service.jar --offline --output=cdr.csv [--format=csv|binary]
+ *      [--subscribers=10] [--calls-per-subscriber-per-day=1.2] [--seed=42] [--partitions=1] [--parallelism=0]
+ *      [--period-end=2025-03-01T00:00:00]
+ * </pre>
+ * Абоненты нумеруются синтетически: {@code 79000000000}, {@code 79000000001} и т.д. Число записей
+ * пропорционально числу абонентов и {@code --calls-per-subscriber-per-day}; окна генератора ограничены
+ * по числу звонков, поэтому память не растёт с объёмом файла.
+ * Формат файла описан в {@link CDRFileWriter}.
+ * </p>
+ */
+@Slf4j
+public final class OfflineCDRGeneration {
+
+    private static final String OFFLINE_ARG = "--offline";
+    private static final String MSISDN_FORMAT = "79%09d";
+    private static final int DEFAULT_SUBSCRIBERS = 10;
+    private static final String ERROR_NO_OUTPUT = "Не указан выходной файл (--output).";
+    private static final String ERROR_INSUFFICIENT_SUBSCRIBERS = "Недостаточно абонентов для генерации звонков (нужно минимум 2).";
+
+    private OfflineCDRGeneration() {
+    }
+
+    /**
+     * @param args Аргументы командной строки.
+     * @return true, если запрошен офлайн-режим.
+     */
+    public static boolean isRequested(String... args) {
+        for (String arg : args) {
+            if (OFFLINE_ARG.equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Генерирует CDR записи за год и записывает их в файл.
+     *
+     * @param args Аргументы командной строки.
+     * @return Число записанных звонков.
+     * @throws IOException Если не удалось записать файл.
+     */
+    public static long run(String... args) throws IOException {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+
+        String output = options.getProperty("output");
+        if (output == null) {
+            throw new IllegalArgumentException(ERROR_NO_OUTPUT);
+        }
+        CDRFileWriter.Format format = CDRFileWriter.Format.valueOf(
+                option(options, "format", "csv").toUpperCase(Locale.ROOT));
+        int subscribers = Integer.parseInt(option(options, "subscribers", String.valueOf(DEFAULT_SUBSCRIBERS)));
+        if (subscribers < 2) {
+            throw new IllegalArgumentException(ERROR_INSUFFICIENT_SUBSCRIBERS);
+        }
+        double callsPerSubscriberPerDay = Double.parseDouble(option(options, "calls-per-subscriber-per-day",
+                String.valueOf(CDRGenerator.DEFAULT_CALLS_PER_SUBSCRIBER_PER_DAY)));
+        long seed = options.containsProperty("seed")
+                ? Long.parseLong(options.getProperty("seed"))
+                : ThreadLocalRandom.current().nextLong();
+        int partitions = Integer.parseInt(option(options, "partitions", "1"));
+        int parallelism = Integer.parseInt(option(options, "parallelism", "0"));
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        LocalDateTime endDate = options.containsProperty("period-end")
+                ? LocalDateTime.parse(options.getProperty("period-end"))
+                : LocalDateTime.now();
+
+        List<String> msisdns = new ArrayList<>(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            msisdns.add(String.format(MSISDN_FORMAT, i));
+        }
+
+        long started = System.nanoTime();
+        long written;
+        try (CDRFileWriter writer = new CDRFileWriter(Path.of(output), format, msisdns)) {
+            new CDRGenerator(msisdns, seed, partitions, callsPerSubscriberPerDay).generate(endDate.minusYears(1), endDate, parallelism, writer);
+            written = writer.getRecordsWritten();
+        }
+
+        long millis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        log.info("Записано {} CDR в {} за {} мс ({} записей/с)", written, output, millis, written * 1000 / millis);
+        return written;
+    }
+
+    private static String option(SimpleCommandLinePropertySource options, String name, String defaultValue) {
+        String value = options.getProperty(name);
+        return value != null ? value : defaultValue;
+    }
+}
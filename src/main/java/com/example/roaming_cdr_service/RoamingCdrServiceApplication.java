@@ -1,6 +1,6 @@
 package com.example.roaming_cdr_service;
 
-import com.example.roaming_cdr_service.service.impl.CDRServiceImpl;
+import com.example.roaming_cdr_service.service.impl.CDRGenerationJob;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -9,32 +9,40 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 /**
  * Основной класс приложения Roaming CDR Service.
  * Этот класс является точкой входа в приложение. Он запускает Spring Boot приложение
- * и инициализирует генерацию CDR записей с помощью {@link CDRServiceImpl}.
+ * и запускает фоновую генерацию CDR записей с помощью {@link CDRGenerationJob}.
  */
 @SpringBootApplication
 public class RoamingCdrServiceApplication implements CommandLineRunner {
 
 	@Autowired
-	private CDRServiceImpl cdrServiceImpl;
+	private CDRGenerationJob generationJob;
 
 	/**
 	 * Точка входа в приложение.
+	 * С аргументом {@code --offline} записи генерируются сразу в файл без запуска приложения
+	 * (см. {@link OfflineCDRGeneration}).
 	 *
 	 * @param args Аргументы командной строки.
+	 * @throws Exception Если офлайн-генерация завершилась ошибкой.
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws Exception {
+		if (OfflineCDRGeneration.isRequested(args)) {
+			OfflineCDRGeneration.run(args);
+			return;
+		}
 		SpringApplication.run(RoamingCdrServiceApplication.class, args);
 	}
 
 	/**
 	 * Метод, который выполняется после запуска приложения.
-	 * Инициализирует генерацию CDR записей с помощью {@link CDRServiceImpl}.
+	 * Запускает генерацию CDR записей в фоне, не задерживая старт приложения.
+	 * Приложение сообщает о готовности ({@code /actuator/health/readiness}) только после её завершения.
 	 *
 	 * @param args Аргументы командной строки.
 	 * @throws Exception Если произошла ошибка при выполнении.
 	 */
 	@Override
 	public void run(String... args) throws Exception {
-		cdrServiceImpl.generateCDRs();
+		generationJob.start();
 	}
 }
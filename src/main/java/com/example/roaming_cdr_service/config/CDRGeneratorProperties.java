@@ -0,0 +1,46 @@
+package com.example.roaming_cdr_service.config;
+
+import com.example.roaming_cdr_service.service.impl.CDRGenerator;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import java.time.LocalDateTime;
+
+/**
+ * Настройки генератора CDR записей (префикс {@code cdr.generator}).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cdr.generator")
+public class CDRGeneratorProperties {
+
+    /**
+     * Зерно генератора случайных чисел. Если не задано, выбирается случайно при каждом запуске.
+     * При одинаковых зерне, числе партиций и периоде генерации набор данных всегда один и тот же.
+     */
+    private Long seed;
+
+    /**
+     * Число временных окон (партиций), на которые делится период генерации.
+     * Значение 1 соответствует последовательной генерации.
+     */
+    private int partitions = 1;
+
+    /**
+     * Число потоков {@link java.util.concurrent.ForkJoinPool}, моделирующих окна.
+     * Значение 0 означает число доступных процессоров.
+     */
+    private int parallelism = 0;
+
+    /**
+     * Среднее число звонков, которые абонент начинает за сутки. Число записей растёт линейно
+     * с этим значением и с числом абонентов.
+     */
+    private double callsPerSubscriberPerDay = CDRGenerator.DEFAULT_CALLS_PER_SUBSCRIBER_PER_DAY;
+
+    /**
+     * Конец периода генерации. Если не задан, используется текущее время.
+     * Период генерации — один год до этого момента.
+     */
+    private LocalDateTime periodEnd;
+}
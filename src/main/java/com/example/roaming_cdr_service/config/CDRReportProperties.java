@@ -0,0 +1,60 @@
+package com.example.roaming_cdr_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import java.time.Duration;
+
+/**
+ * Настройки построения и хранения CDR-отчётов (префикс {@code cdr.report}).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cdr.report")
+public class CDRReportProperties {
+
+    /**
+     * Директория файлов отчётов.
+     */
+    private String directory = "reports";
+
+    /**
+     * Число потоков, строящих отчёты.
+     */
+    private int workers = 2;
+
+    /**
+     * Число заданий, ожидающих свободного потока; запросы сверх него отклоняются.
+     */
+    private int queueCapacity = 16;
+
+    /**
+     * Срок хранения файла отчёта с момента последнего скачивания (или построения).
+     */
+    private Duration retention = Duration.ofDays(7);
+
+    /**
+     * Предельный суммарный размер файлов отчётов; при превышении удаляются давно не скачивавшиеся отчёты.
+     */
+    private DataSize maxTotalSize = DataSize.ofGigabytes(1);
+
+    /**
+     * Период очистки директории отчётов по сроку хранения и предельному размеру.
+     */
+    private Duration cleanupInterval = Duration.ofMinutes(1);
+
+    /**
+     * Настройки пакетных отчётов.
+     */
+    private Bulk bulk = new Bulk();
+
+    @Data
+    public static class Bulk {
+
+        /**
+         * Число одновременно открытых файлов отчётов абонентов.
+         */
+        private int maxOpenFiles = 64;
+    }
+}
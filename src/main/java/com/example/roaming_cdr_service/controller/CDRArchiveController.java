@@ -0,0 +1,87 @@
+package com.example.roaming_cdr_service.controller;
+
+import com.example.roaming_cdr_service.model.ArchivedMonth;
+import com.example.roaming_cdr_service.service.CDRArchiveService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Контроллер архива CDR: перенос закрытых месяцев в колоночные файлы и просмотр каталога архива.
+ */
+@RestController
+@RequestMapping("/cdr/archive")
+@Tag(name = "CDR Archive API", description = "API для архивации CDR за закрытые месяцы")
+public class CDRArchiveController {
+
+    private static final String DATE_FORMAT = "yyyy-MM";
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
+    private static final String ERROR_INVALID_MONTH_FORMAT = "Неверный формат месяца. Используйте %s.";
+
+    private final CDRArchiveService archiveService;
+
+    public CDRArchiveController(CDRArchiveService archiveService) {
+        this.archiveService = archiveService;
+    }
+
+    /**
+     * Переносит звонки закрытого месяца из таблицы {@code cdr} в файл архива.
+     * CDR-отчёты и UDR за этот месяц после переноса читаются из архива.
+     *
+     * @param month Месяц в формате "yyyy-MM".
+     * @return Запись каталога архива: месяц, файл, число звонков и размер файла.
+     */
+    @Operation(
+            summary = "Перенести месяц в архив",
+            description = "Переносит звонки закрытого месяца в колоночный файл архива и удаляет их из таблицы CDR.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Месяц перенесён в архив"),
+                    @ApiResponse(responseCode = "400", description = "Неверный формат месяца или месяц ещё не закончился"),
+                    @ApiResponse(responseCode = "404", description = "За месяц нет CDR записей"),
+                    @ApiResponse(responseCode = "409", description = "Месяц уже в архиве или генерация CDR ещё не завершена")
+            }
+    )
+    @PostMapping("/{month}")
+    public ArchivedMonth archiveMonth(
+            @Parameter(description = "Месяц в формате yyyy-MM", example = "2025-02")
+            @PathVariable String month
+    ) {
+        return archiveService.archiveMonth(parseMonth(month));
+    }
+
+    /**
+     * Возвращает каталог архива.
+     *
+     * @return Архивные месяцы в хронологическом порядке.
+     */
+    @Operation(
+            summary = "Получить каталог архива",
+            description = "Возвращает месяцы, перенесённые в архив, с числом звонков и размером файлов.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Успешный запрос")
+            }
+    )
+    @GetMapping
+    public List<ArchivedMonth> getArchivedMonths() {
+        return archiveService.getArchivedMonths();
+    }
+
+    // Проверяем формат месяца
+    private static YearMonth parseMonth(String month) {
+        try {
+            return YearMonth.parse(month, DATE_TIME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(String.format(ERROR_INVALID_MONTH_FORMAT, DATE_FORMAT));
+        }
+    }
+}
@@ -1,67 +1,79 @@
 package com.example.roaming_cdr_service.controller;
 
-import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.ReportStatus;
 import com.example.roaming_cdr_service.service.CDRService;
+import com.example.roaming_cdr_service.service.impl.CDRReportJobs;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.springframework.web.bind.annotation.*;
 import io.swagger.v3.oas.annotations.Parameter;
-import java.io.FileWriter;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.List;
-import java.util.UUID;
 
 /**
  * Контроллер для работы с CDR (Call Data Record) отчётами.
- * Предоставляет REST API для генерации CDR-отчётов в формате CSV.
+ * Предоставляет REST API для асинхронной генерации CDR-отчётов в формате CSV,
+ * получения состояния построения и скачивания готовых отчётов.
  */
 @RestController
 @RequestMapping("/cdr")
 public class CDRController {
 
     private final CDRService cdrService;
+    private final CDRReportJobs reportJobs;
+    private final boolean gzipDownloads;
     private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
-    private static final String REPORTS_DIRECTORY = "reports/";
+    private static final MediaType CSV_MEDIA_TYPE = MediaType.parseMediaType("text/csv");
     private static final String ERROR_INVALID_DATE_FORMAT = "Неверный формат даты. Используйте %s.";
     private static final String ERROR_NO_DATA_FOUND = "Для абонента с номером %s не найдены записи за указанный период.";
-    private static final String SUCCESS_REPORT_MESSAGE = "Отчет успешно создан. UUID: %s";
-    private static final String ERROR_REPORT_CREATION = "Ошибка при создании отчета: %s";
+    private static final String ACCEPTED_REPORT_MESSAGE = "Отчет поставлен в очередь. UUID: %s";
+    private static final String READY_REPORT_MESSAGE = "Отчет уже построен. UUID: %s";
+    private static final String ACCEPTED_BULK_REPORT_MESSAGE = "Пакетный отчет поставлен в очередь. UUID: %s";
 
     @Autowired
-    public CDRController(CDRService cdrService) {
+    public CDRController(CDRService cdrService, CDRReportJobs reportJobs,
+                         @Value("${cdr.report.download.gzip:true}") boolean gzipDownloads) {
         this.cdrService = cdrService;
+        this.reportJobs = reportJobs;
+        this.gzipDownloads = gzipDownloads;
     }
 
     /**
-     * Генерирует CDR-отчёт для указанного абонента за заданный период времени.
-     * Отчёт сохраняется в формате CSV в директорию {@code /reports}.
+     * Ставит в очередь генерацию CDR-отчёта для указанного абонента за заданный период времени.
+     * Отчёт строится в фоне и сохраняется в формате CSV в директорию {@code /reports};
+     * ход построения доступен через {@link #getReportStatus(String)}. Если отчёт за тот же неизменяемый
+     * период уже построен или строится, возвращается его UUID.
      *
      * @param msisdn    Номер абонента, для которого генерируется отчёт.
      * @param startDate Начальная дата периода в формате {@code yyyy-MM-dd'T'HH:mm:ss}.
      * @param endDate   Конечная дата периода в формате {@code yyyy-MM-dd'T'HH:mm:ss}.
-     * @return Ответ с UUID сгенерированного отчёта или сообщением об ошибке.
+     * @return Ответ {@code 202} (или {@code 200}, если отчёт уже построен) с UUID отчёта
+     * и ссылкой на его состояние в заголовке {@code Location}.
      */
     @Operation(
             summary = "Сгенерировать CDR-отчет",
-            description = "Генерирует CDR-отчет для указанного абонента за заданный период.",
+            description = "Ставит в очередь генерацию CDR-отчета для указанного абонента за заданный период.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Отчет успешно создан"),
+                    @ApiResponse(responseCode = "200", description = "Отчет за тот же период уже построен"),
+                    @ApiResponse(responseCode = "202", description = "Отчет поставлен в очередь"),
                     @ApiResponse(responseCode = "400", description = "Неверные параметры запроса"),
                     @ApiResponse(responseCode = "404", description = "Данные для абонента не найдены"),
-                    @ApiResponse(responseCode = "500", description = "Ошибка при создании отчета")
+                    @ApiResponse(responseCode = "429", description = "Очередь построения отчетов заполнена")
             }
     )
     @PostMapping("/generate-report")
@@ -76,62 +88,117 @@ public class CDRController {
             @RequestParam String endDate
     ) {
 
-        LocalDateTime start;
-        LocalDateTime end;
+        LocalDateTime start = parseDateTime(startDate);
+        LocalDateTime end = parseDateTime(endDate);
 
-        try {
-            start = LocalDateTime.parse(startDate, DATE_TIME_FORMATTER);
-            end = LocalDateTime.parse(endDate, DATE_TIME_FORMATTER);
-        } catch (DateTimeParseException e) {
-            throw new IllegalArgumentException(String.format(ERROR_INVALID_DATE_FORMAT, DATE_FORMAT));
+        // Повторный запрос за неизменяемый период возвращает прежний отчёт без запросов к базе
+        ReportStatus status = reportJobs.findReusable(msisdn, start, end).orElse(null);
+        if (status == null) {
+            // Отсутствие данных проверяется сразу, чтобы не ставить в очередь пустой отчёт
+            if (!cdrService.hasCDRsForSubscriber(msisdn, start, end)) {
+                throw new EntityNotFoundException(String.format(ERROR_NO_DATA_FOUND, msisdn));
+            }
+            status = reportJobs.submit(msisdn, start, end);
         }
 
-        // Получаем данные из БД
-        List<CDR> cdrs = cdrService.getCDRsForSubscriber(msisdn, start, end);
-
-        if (cdrs.isEmpty()) {
-            throw new EntityNotFoundException(String.format(ERROR_NO_DATA_FOUND, msisdn));
+        URI location = URI.create("/cdr/reports/" + status.getId());
+        if (status.getState() == ReportStatus.State.DONE) {
+            return ResponseEntity.ok().location(location).body(String.format(READY_REPORT_MESSAGE, status.getId()));
         }
-
-        return saveReportToFile(msisdn, cdrs);
+        return ResponseEntity.accepted()
+                .location(location)
+                .body(String.format(ACCEPTED_REPORT_MESSAGE, status.getId()));
     }
 
     /**
-     * Сохраняет CDR-отчет в файл.
+     * Ставит в очередь генерацию CDR-отчётов всех абонентов за заданный период времени.
+     * Звонки периода читаются один раз; файлы отчётов абонентов совпадают с файлами
+     * {@link #generateCDRReport(String, String, String)}, их UUID появятся в состоянии пакетного отчёта.
      *
-     * @param msisdn    Номер абонента, для которого генерируется отчёт.
-     * @param cdrs  Список CDR записей
-     * @return Ответ с результатом операции
+     * @param startDate Начальная дата периода в формате {@code yyyy-MM-dd'T'HH:mm:ss}.
+     * @param endDate   Конечная дата периода в формате {@code yyyy-MM-dd'T'HH:mm:ss}.
+     * @return Ответ {@code 202} с UUID пакетного отчёта и ссылкой на его состояние в заголовке {@code Location}.
      */
-    private ResponseEntity<String> saveReportToFile(String msisdn, List<CDR> cdrs) {
-
-        // Генерируем уникальный UUID для имени файла
-        String uuid = UUID.randomUUID().toString();
-        String fileName = String.format("%s_%s.csv", msisdn, uuid);
-        String filePath = Paths.get(REPORTS_DIRECTORY, fileName).toString();
+    @Operation(
+            summary = "Сгенерировать CDR-отчеты всех абонентов",
+            description = "Ставит в очередь генерацию CDR-отчетов всех абонентов за заданный период за один проход по звонкам.",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Пакетный отчет поставлен в очередь"),
+                    @ApiResponse(responseCode = "400", description = "Неверные параметры запроса"),
+                    @ApiResponse(responseCode = "429", description = "Очередь построения отчетов заполнена")
+            }
+    )
+    @PostMapping("/generate-reports")
+    public ResponseEntity<String> generateCDRReports(
+            @Parameter(description = "Начальная дата в формате " + DATE_FORMAT, example = "2025-02-01T00:00:00")
+            @RequestParam String startDate,
 
-        try {
-            // Создаем директорию, если она не существует
-            Files.createDirectories(Paths.get(REPORTS_DIRECTORY));
+            @Parameter(description = "Конечная дата в формате " + DATE_FORMAT, example = "2025-02-28T23:59:59")
+            @RequestParam String endDate
+    ) {
+        ReportStatus status = reportJobs.submitBulk(parseDateTime(startDate), parseDateTime(endDate));
+        return ResponseEntity.accepted()
+                .location(URI.create("/cdr/reports/" + status.getId()))
+                .body(String.format(ACCEPTED_BULK_REPORT_MESSAGE, status.getId()));
+    }
 
-            // Записываем данные в CSV
-            try (FileWriter writer = new FileWriter(filePath);
-                 CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+    /**
+     * Возвращает состояние построения CDR-отчёта.
+     *
+     * @param id UUID отчёта.
+     * @return Этап построения, число записанных строк и время этапов.
+     */
+    @Operation(
+            summary = "Получить состояние CDR-отчета",
+            description = "Возвращает этап построения отчета (QUEUED, RUNNING, DONE, FAILED) и число записанных строк.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Успешный запрос"),
+                    @ApiResponse(responseCode = "404", description = "Отчет не найден")
+            }
+    )
+    @GetMapping("/reports/{id}")
+    public ReportStatus getReportStatus(
+            @Parameter(description = "UUID отчета")
+            @PathVariable String id) {
+        return reportJobs.getStatus(id);
+    }
 
-                for (CDR cdr : cdrs) {
-                    csvPrinter.printRecord(
-                            cdr.getCallType(),
-                            cdr.getMsisdn(),
-                            cdr.getOtherMsisdn(),
-                            cdr.getCallStartTime().format(DATE_TIME_FORMATTER),
-                            cdr.getCallEndTime().format(DATE_TIME_FORMATTER)
-                    );
-                }
-                csvPrinter.flush();
+    /**
+     * Отдаёт готовый CDR-отчёт в формате CSV без копирования файла через кучу JVM.
+     * Поддерживает запрос диапазона ({@code Range: bytes=...}) для докачки и параллельного скачивания
+     * и сжатие gzip при {@code Accept-Encoding: gzip} (только для целого файла).
+     *
+     * @param uuid     UUID отчёта.
+     * @param request  HTTP запрос.
+     * @param response HTTP ответ.
+     */
+    @Operation(
+            summary = "Скачать CDR-отчет",
+            description = "Отдает готовый CDR-отчет в формате CSV. Поддерживает заголовки Range и Accept-Encoding: gzip.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Отчет целиком"),
+                    @ApiResponse(responseCode = "206", description = "Запрошенный диапазон отчета"),
+                    @ApiResponse(responseCode = "400", description = "UUID пакетного отчета"),
+                    @ApiResponse(responseCode = "404", description = "Отчет не найден"),
+                    @ApiResponse(responseCode = "409", description = "Отчет еще не построен или построение завершилось ошибкой"),
+                    @ApiResponse(responseCode = "416", description = "Диапазон за пределами отчета")
             }
-            return ResponseEntity.ok(String.format(SUCCESS_REPORT_MESSAGE, uuid));
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().body(ERROR_REPORT_CREATION + e.getMessage());
+    )
+    @GetMapping("/report/{uuid}")
+    public void downloadReport(
+            @Parameter(description = "UUID отчета")
+            @PathVariable String uuid,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Path file = reportJobs.getReportFile(uuid);
+        FileDownloads.send(file, CSV_MEDIA_TYPE, gzipDownloads, request, response);
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        try {
+            return LocalDateTime.parse(value, DATE_TIME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(String.format(ERROR_INVALID_DATE_FORMAT, DATE_FORMAT));
         }
     }
-}
\ No newline at end of file
+}
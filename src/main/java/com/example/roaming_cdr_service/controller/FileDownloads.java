@@ -0,0 +1,141 @@
+package com.example.roaming_cdr_service.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Отдача файлов по HTTP без копирования содержимого через кучу JVM.
+ * <p>
+ * Если контейнер поддерживает sendfile (Tomcat NIO), передача файла поручается ему: тело ответа
+ * пишет ядро напрямую из страничного кэша в сокет. Иначе файл передаётся через
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}. Поддерживается один диапазон
+ * {@code Range: bytes=...} (ответ {@code 206}), что позволяет докачивать файл и скачивать его
+ * частями параллельно; запрос нескольких диапазонов обслуживается целым файлом.
+ * </p>
+ * <p>
+ * Сжатие gzip применяется только к целому файлу и только если клиент его принимает: сжатый поток
+ * формируется на лету, поэтому диапазоны в нём не поддерживаются.
+ * </p>
+ */
+final class FileDownloads {
+
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String BYTES = "bytes";
+    private static final String GZIP = "gzip";
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    private FileDownloads() {
+    }
+
+    /**
+     * Отправляет файл как вложение с учётом заголовков {@code Range} и {@code Accept-Encoding}.
+     *
+     * @param file        Отправляемый файл.
+     * @param contentType Тип содержимого.
+     * @param gzipAllowed Разрешено ли сжатие ответа.
+     * @param request     HTTP запрос.
+     * @param response    HTTP ответ.
+     */
+    static void send(Path file, MediaType contentType, boolean gzipAllowed,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = Files.size(file);
+        response.setContentType(contentType.toString());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString());
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null) {
+            List<HttpRange> ranges;
+            long start;
+            long end;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+                start = ranges.size() == 1 ? ranges.get(0).getRangeStart(length) : 0;
+                end = ranges.size() == 1 ? ranges.get(0).getRangeEnd(length) : length - 1;
+                if (start >= length || start > end) {
+                    throw new IllegalArgumentException("Диапазон за пределами файла: " + rangeHeader);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " */" + length);
+                return;
+            }
+            if (ranges.size() == 1) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " " + start + "-" + end + "/" + length);
+                transfer(file, start, end - start + 1, request, response);
+                return;
+            }
+        }
+
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzipAllowed && acceptsGzip(request)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            try (OutputStream out = new GZIPOutputStream(response.getOutputStream(), GZIP_BUFFER_SIZE)) {
+                Files.copy(file, out);
+            }
+            return;
+        }
+        transfer(file, 0, length, request, response);
+    }
+
+    private static void transfer(Path file, long position, long count,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(count);
+        if (count == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // Tomcat отправит файл после выхода из обработчика, тело ответа не пишется
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, position);
+            request.setAttribute(SENDFILE_END_ATTR, position + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long sent = 0;
+            while (sent < count) {
+                long transferred = channel.transferTo(position + sent, count - sent, out);
+                if (transferred <= 0) {
+                    throw new EOFException("Файл " + file + " короче ожидаемого");
+                }
+                sent += transferred;
+            }
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.roaming_cdr_service.controller;
+
+import com.example.roaming_cdr_service.model.GenerationStatus;
+import com.example.roaming_cdr_service.service.impl.CDRGenerationJob;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Контроллер для наблюдения за фоновой генерацией CDR записей.
+ */
+@RestController
+@RequestMapping("/generation")
+@Tag(name = "Generation API", description = "API для наблюдения за генерацией CDR")
+public class GenerationController {
+
+    private final CDRGenerationJob generationJob;
+
+    public GenerationController(CDRGenerationJob generationJob) {
+        this.generationJob = generationJob;
+    }
+
+    /**
+     * Возвращает ход фоновой генерации CDR записей.
+     *
+     * @return Состояние генерации: этап, число записей, достигнутое моделируемое время и скорость.
+     */
+    @Operation(
+            summary = "Получить состояние генерации CDR",
+            description = "Возвращает этап генерации, число сохранённых записей, достигнутое моделируемое время и скорость.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Успешный запрос")
+            }
+    )
+    @GetMapping("/status")
+    public GenerationStatus getStatus() {
+        return generationJob.getStatus();
+    }
+}
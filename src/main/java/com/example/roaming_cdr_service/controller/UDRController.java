@@ -1,25 +1,29 @@
 package com.example.roaming_cdr_service.controller;
 
-import com.example.roaming_cdr_service.model.CDR;
-import com.example.roaming_cdr_service.model.CallDuration;
 import com.example.roaming_cdr_service.model.UDR;
-import com.example.roaming_cdr_service.repository.CDRRepository;
+import com.example.roaming_cdr_service.service.UDRService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Контроллер для работы с UDR (Usage Data Report) отчётами.
@@ -33,10 +37,17 @@ public class UDRController {
     private static final String DATE_FORMAT = "yyyy-MM";
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
     private static final String ERROR_INVALID_MONTH_FORMAT = "Неверный формат месяца. Используйте %s.";
-    private static final String ERROR_NO_DATA_FOUND = "Для абонента с номером %s не найдены записи за указанный период.";
+    private static final String RANGE_DATE_FORMAT = "yyyy-MM-dd";
+    private static final String ERROR_INVALID_DATE_FORMAT = "Неверный формат даты. Используйте %s.";
+    private static final String ERROR_INVALID_RANGE = "Начало диапазона не может быть позже его конца.";
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    private static final String SUCCESS_REBUILD_MESSAGE = "Сводная таблица UDR пересчитана. Строк: %d";
 
     @Autowired
-    private CDRRepository cdrRepository;
+    private UDRService udrService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     /**
      * Возвращает UDR отчёт для указанного абонента за заданный месяц или за весь период.
@@ -62,32 +73,48 @@ public class UDRController {
             @Parameter(description = "Месяц в формате yyyy-MM", example = "2025-02")
             @RequestParam(required = false) String month
     ) {
-        LocalDateTime startDate;
-        LocalDateTime endDate;
+        if (month == null) {
+            LocalDateTime endDate = LocalDateTime.now();
+            return udrService.getUDR(msisdn, endDate.minusYears(1), endDate);
+        }
+        return udrService.getUDR(msisdn, parseMonth(month));
+    }
 
-        // Проверяем формат месяца
-        try {
-            if (month != null) {
-                startDate = LocalDateTime.parse(month + "-01T00:00:00");
-                endDate = startDate.plusMonths(1);
-            } else {
-                startDate = LocalDateTime.now().minusYears(1);
-                endDate = LocalDateTime.now();
+    /**
+     * Возвращает UDR отчёт для указанного абонента за произвольный диапазон дат.
+     *
+     * @param msisdn Номер абонента.
+     * @param from   Первый день диапазона в формате "yyyy-MM-dd".
+     * @param to     Последний день диапазона в формате "yyyy-MM-dd" (включительно).
+     * @return UDR отчёт для указанного абонента.
+     */
+    @Operation(
+            summary = "Получить UDR для одного абонента за диапазон дат",
+            description = "Возвращает UDR для указанного абонента за диапазон дат (квартал, год с начала года и т. п.). "
+                    + "Полные месяцы берутся из сводной таблицы, поэтому длина диапазона почти не влияет на время ответа.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Успешный запрос"),
+                    @ApiResponse(responseCode = "400", description = "Неверный формат даты или диапазон"),
+                    @ApiResponse(responseCode = "404", description = "Для абонента не найдены записи за указанный период")
             }
-        } catch (DateTimeParseException e) {
-            throw new IllegalArgumentException(String.format(ERROR_INVALID_MONTH_FORMAT, DATE_FORMAT));
-        }
+    )
+    @GetMapping("/{msisdn}/range")
+    public UDR getUDRForRange(
+            @Parameter(description = "Номер абонента", example = "79991112233")
+            @PathVariable String msisdn,
 
-        List<CDR> allCdrs = new ArrayList<>();
-        allCdrs.addAll(cdrRepository.findByMsisdnAndCallStartTimeBetween(msisdn, startDate, endDate));
-        allCdrs.addAll(cdrRepository.findByOtherMsisdnAndCallStartTimeBetween(msisdn, startDate, endDate));
+            @Parameter(description = "Первый день диапазона в формате yyyy-MM-dd", example = "2025-01-01")
+            @RequestParam String from,
 
-        // Проверяем, что есть такой абонент
-        if (allCdrs.isEmpty()) {
-            throw new EntityNotFoundException(String.format(ERROR_NO_DATA_FOUND, msisdn));
+            @Parameter(description = "Последний день диапазона в формате yyyy-MM-dd (включительно)", example = "2025-03-31")
+            @RequestParam String to
+    ) {
+        LocalDate fromDate = parseDate(from);
+        LocalDate toDate = parseDate(to);
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException(ERROR_INVALID_RANGE);
         }
-
-        return createUDR(msisdn, allCdrs);
+        return udrService.getUDR(msisdn, fromDate.atStartOfDay(), toDate.plusDays(1).atStartOfDay());
     }
 
     /**
@@ -109,35 +136,88 @@ public class UDRController {
             @Parameter(description = "Месяц в формате yyyy-MM", example = "2025-02")
             @RequestParam String month
     ) {
-        LocalDateTime startDate;
-        LocalDateTime endDate;
+        return udrService.getAllUDRs(parseMonth(month));
+    }
 
-        // Проверяем формат
+    /**
+     * Возвращает UDR отчёты для всех абонентов за указанный месяц потоком NDJSON: по одному UDR на строку.
+     * Отчёты пишутся в ответ по мере чтения сводной таблицы, поэтому память сервера не зависит
+     * от числа абонентов, а клиент может обрабатывать строки, не дожидаясь конца ответа.
+     *
+     * @param month Месяц в формате "yyyy-MM".
+     * @return Поток UDR отчётов в порядке номеров абонентов.
+     */
+    @Operation(
+            summary = "Получить UDR для всех абонентов потоком",
+            description = "Возвращает UDR для всех абонентов за указанный месяц в формате NDJSON (по одному UDR на строку).",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Успешный запрос"),
+                    @ApiResponse(responseCode = "400", description = "Неверный формат месяца")
+            }
+    )
+    @GetMapping(value = "/all/stream", produces = NDJSON_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamAllUDRs(
+            @Parameter(description = "Месяц в формате yyyy-MM", example = "2025-02")
+            @RequestParam String month
+    ) {
+        YearMonth parsedMonth = parseMonth(month);
+        // Поток сбрасывается буфером генератора, а не после каждого UDR
+        ObjectWriter udrWriter = objectMapper.writerFor(UDR.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // Строки разделяются только переводом строки, без пробела между корневыми значениями
+                generator.setRootValueSeparator(null);
+                udrService.streamAllUDRs(parsedMonth, udr -> {
+                    try {
+                        udrWriter.writeValue(generator, udr);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE)).body(body);
+    }
+
+    /**
+     * Пересчитывает сводную таблицу UDR по всем CDR записям.
+     * Нужен для заполнения сводки по данным, записанным до её появления или в обход пакетной записи.
+     *
+     * @return Сообщение с числом строк сводной таблицы.
+     */
+    @Operation(
+            summary = "Пересчитать сводную таблицу UDR",
+            description = "Полностью пересчитывает помесячную сводную таблицу UDR по CDR записям.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Сводная таблица пересчитана"),
+                    @ApiResponse(responseCode = "409", description = "Генерация CDR ещё не завершена")
+            }
+    )
+    @PostMapping("/rollup/rebuild")
+    public ResponseEntity<String> rebuildRollup() {
+        return ResponseEntity.ok(String.format(SUCCESS_REBUILD_MESSAGE, udrService.rebuildRollup()));
+    }
+
+    // Проверяем формат даты
+    private static LocalDate parseDate(String date) {
         try {
-            startDate = LocalDateTime.parse(month + "-01T00:00:00");
-            endDate = startDate.plusMonths(1);
+            return LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE);
         } catch (DateTimeParseException e) {
-            throw new IllegalArgumentException(String.format(ERROR_INVALID_MONTH_FORMAT, DATE_FORMAT));
+            throw new IllegalArgumentException(String.format(ERROR_INVALID_DATE_FORMAT, RANGE_DATE_FORMAT));
         }
-
-        return cdrRepository.findByCallStartTimeBetween(startDate, endDate)
-                .stream()
-                .collect(Collectors.groupingBy(CDR::getMsisdn, Collectors.collectingAndThen(Collectors.toList(),
-                        cdrs -> createUDR(cdrs.get(0).getMsisdn(), cdrs))));
     }
 
-    private UDR createUDR(String msisdn, List<CDR> cdrs) {
-        return UDR.builder()
-                .msisdn(msisdn)
-                .incomingCall(new CallDuration(getTotalCallDuration(cdrs, "02")))
-                .outcomingCall(new CallDuration(getTotalCallDuration(cdrs, "01")))
-                .build();
+    // Проверяем формат месяца
+    private static YearMonth parseMonth(String month) {
+        try {
+            return YearMonth.parse(month, DATE_TIME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(String.format(ERROR_INVALID_MONTH_FORMAT, DATE_FORMAT));
+        }
     }
+}
 
-    private long getTotalCallDuration(List<CDR> cdrs, String callType) {
-        return cdrs.stream()
-                .filter(cdr -> cdr.getCallType().equals(callType))
-                .mapToLong(cdr -> Duration.between(cdr.getCallStartTime(), cdr.getCallEndTime()).getSeconds())
-                .sum();
-    }
-}
\ No newline at end of file
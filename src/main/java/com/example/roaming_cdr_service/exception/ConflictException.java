@@ -0,0 +1,13 @@
+package com.example.roaming_cdr_service.exception;
+
+/**
+ * Запрос несовместим с текущим состоянием сервиса: идёт генерация CDR, месяц уже в архиве,
+ * отчёт ещё не построен. Отвечается статусом {@code 409}; прочие {@link IllegalStateException}
+ * остаются внутренними ошибками ({@code 500}).
+ */
+public class ConflictException extends IllegalStateException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
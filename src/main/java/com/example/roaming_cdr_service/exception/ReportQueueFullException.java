@@ -0,0 +1,14 @@
+package com.example.roaming_cdr_service.exception;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Очередь построения отчётов заполнена. Отвечается статусом {@code 429}; прочие
+ * {@link RejectedExecutionException} (например, при остановке пулов потоков) остаются внутренними ошибками ({@code 500}).
+ */
+public class ReportQueueFullException extends RejectedExecutionException {
+
+    public ReportQueueFullException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
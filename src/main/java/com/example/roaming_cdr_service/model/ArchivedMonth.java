@@ -0,0 +1,50 @@
+package com.example.roaming_cdr_service.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Запись каталога архива CDR: календарный месяц, звонки которого перенесены из таблицы {@code cdr}
+ * в колоночный файл архива.
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "cdr_archive")
+public class ArchivedMonth {
+
+    /**
+     * Первый день архивного месяца (по времени начала звонка).
+     */
+    @Id
+    private LocalDate monthStart;
+
+    /**
+     * Имя файла архива в директории {@code cdr.archive.directory}.
+     */
+    private String fileName;
+
+    /**
+     * Число звонков в архиве.
+     */
+    private long rowCount;
+
+    /**
+     * Размер файла архива в байтах.
+     */
+    private long fileSize;
+
+    /**
+     * Дата и время переноса месяца в архив.
+     */
+    private LocalDateTime archivedAt;
+}
@@ -1,26 +1,50 @@
 package com.example.roaming_cdr_service.model;
 
 import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 /**
  * Класс для представления CDR (Call Data Record) записей.
  * CDR записи содержат информацию о звонках, включая тип звонка, номера абонентов,
  * а также время начала и окончания звонка.
+ * <p>
+ * В таблице номера абонентов хранятся числами ({@link MsisdnConverter}), тип звонка — байтом
+ * ({@link CallTypeConverter}); в модели и API они остаются строками.
+ * </p>
  */
 @Data
 @Entity
 @Builder
-@Table(name = "cdr")
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "cdr", indexes = {
+        @Index(name = "idx_cdr_msisdn_start", columnList = "msisdn, call_start_time"),
+        @Index(name = "idx_cdr_other_msisdn_start", columnList = "other_msisdn, call_start_time"),
+        @Index(name = "idx_cdr_start", columnList = "call_start_time")
+})
 public class CDR {
 
+    /**
+     * Имя последовательности идентификаторов CDR.
+     */
+    public static final String ID_SEQUENCE = "cdr_seq";
+
+    /**
+     * Шаг последовательности: каждое её значение резервирует блок из стольких идентификаторов.
+     */
+    public static final int ID_ALLOCATION_SIZE = 1000;
+
     /**
      * Уникальный идентификатор записи.
+     * Выделяется блоками из последовательности {@value #ID_SEQUENCE}, что сохраняет пакетную вставку.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     /**
@@ -30,16 +54,19 @@ public class CDR {
      *   <li>"02" — входящий звонок.</li>
      * </ul>
      */
+    @Convert(converter = CallTypeConverter.class)
     private String callType;
 
     /**
      * Номер абонента, инициирующего звонок.
      */
+    @Convert(converter = MsisdnConverter.class)
     private String msisdn;
 
     /**
      * Номер абонента, принимающего звонок.
      */
+    @Convert(converter = MsisdnConverter.class)
     private String otherMsisdn;
 
     /**
@@ -0,0 +1,63 @@
+package com.example.roaming_cdr_service.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Хранение типа звонка в таблице {@code cdr} одним байтом ({@code TINYINT}) вместо строки.
+ * Двузначный код ("01", "02") хранится числом и восстанавливается с ведущим нулём.
+ */
+@Converter
+public class CallTypeConverter implements AttributeConverter<String, Byte> {
+
+    private static final String[] CALL_TYPES = new String[100];
+    private static final String ERROR_INVALID_CALL_TYPE = "Тип звонка %s не может быть сохранён числом.";
+
+    static {
+        for (int code = 0; code < CALL_TYPES.length; code++) {
+            CALL_TYPES[code] = (code < 10 ? "0" : "") + code;
+        }
+    }
+
+    @Override
+    public Byte convertToDatabaseColumn(String callType) {
+        return toCode(callType);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Byte code) {
+        return toCallType(code);
+    }
+
+    /**
+     * @return Числовой код типа звонка; {@code null} для {@code null}.
+     * @throws IllegalArgumentException если тип звонка не двузначное число.
+     */
+    public static Byte toCode(String callType) {
+        if (callType == null) {
+            return null;
+        }
+        if (callType.length() != 2 || !isDigit(callType.charAt(0)) || !isDigit(callType.charAt(1))) {
+            throw new IllegalArgumentException(String.format(ERROR_INVALID_CALL_TYPE, callType));
+        }
+        return (byte) ((callType.charAt(0) - '0') * 10 + callType.charAt(1) - '0');
+    }
+
+    /**
+     * @return Тип звонка по числовому коду; {@code null} для {@code null}.
+     * @throws IllegalArgumentException если код вне диапазона 0–99.
+     */
+    public static String toCallType(Byte code) {
+        if (code == null) {
+            return null;
+        }
+        if (code < 0 || code >= CALL_TYPES.length) {
+            throw new IllegalArgumentException(String.format(ERROR_INVALID_CALL_TYPE, code));
+        }
+        return CALL_TYPES[code];
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
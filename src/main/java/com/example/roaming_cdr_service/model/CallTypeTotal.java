@@ -0,0 +1,23 @@
+package com.example.roaming_cdr_service.model;
+
+/**
+ * Проекция агрегированной длительности звонков одного типа для абонента.
+ * Возвращается агрегирующими запросами вместо загрузки отдельных CDR записей.
+ */
+public interface CallTypeTotal {
+
+    /**
+     * @return Номер абонента (MSISDN).
+     */
+    String getMsisdn();
+
+    /**
+     * @return Тип звонка ("01" — исходящий, "02" — входящий).
+     */
+    String getCallType();
+
+    /**
+     * @return Суммарная длительность звонков в секундах.
+     */
+    Long getTotalSeconds();
+}
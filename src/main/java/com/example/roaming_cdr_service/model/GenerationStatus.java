@@ -0,0 +1,55 @@
+package com.example.roaming_cdr_service.model;
+
+import lombok.Builder;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Класс для представления состояния фоновой генерации CDR записей.
+ */
+@Data
+@Builder
+public class GenerationStatus {
+
+    /**
+     * Этап генерации. {@code CANCELLED} — генерация прервана остановкой приложения.
+     */
+    public enum State {
+        PENDING, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    /**
+     * Текущий этап генерации.
+     */
+    private State state;
+
+    /**
+     * Число сохранённых CDR записей.
+     */
+    private long recordsWritten;
+
+    /**
+     * Момент моделируемого времени, до которого дошла генерация.
+     */
+    private LocalDateTime simulatedTime;
+
+    /**
+     * Средняя скорость сохранения записей в секунду.
+     */
+    private long recordsPerSecond;
+
+    /**
+     * Время запуска генерации.
+     */
+    private LocalDateTime startedAt;
+
+    /**
+     * Время завершения генерации.
+     */
+    private LocalDateTime finishedAt;
+
+    /**
+     * Сообщение об ошибке, если генерация завершилась неудачно.
+     */
+    private String error;
+}
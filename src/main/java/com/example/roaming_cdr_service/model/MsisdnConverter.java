@@ -0,0 +1,70 @@
+package com.example.roaming_cdr_service.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Хранение номера абонента (MSISDN) в таблице {@code cdr} числом {@code BIGINT} вместо строки.
+ * <p>
+ * Номер в формате E.164 состоит только из цифр и не начинается с нуля, поэтому однозначно
+ * восстанавливается из числа. Числовой ключ занимает 8 байт в строке и в индексах, а поиск и
+ * группировка по абоненту сравнивают числа, а не строки.
+ * </p>
+ */
+@Converter
+public class MsisdnConverter implements AttributeConverter<String, Long> {
+
+    /**
+     * Наибольшее число цифр номера, которое помещается в {@code long}.
+     */
+    public static final int MAX_DIGITS = 18;
+
+    private static final String ERROR_INVALID_MSISDN = "Номер абонента %s не может быть сохранён числом.";
+
+    @Override
+    public Long convertToDatabaseColumn(String msisdn) {
+        return toKey(msisdn);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Long key) {
+        return toMsisdn(key);
+    }
+
+    /**
+     * @return true, если номер состоит из 1–{@value #MAX_DIGITS} цифр и не начинается с нуля.
+     */
+    public static boolean isValid(String msisdn) {
+        if (msisdn == null || msisdn.isEmpty() || msisdn.length() > MAX_DIGITS || msisdn.charAt(0) == '0') {
+            return false;
+        }
+        for (int i = 0; i < msisdn.length(); i++) {
+            char c = msisdn.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Числовой ключ номера; {@code null} для {@code null}.
+     * @throws IllegalArgumentException если номер нельзя сохранить числом без потерь.
+     */
+    public static Long toKey(String msisdn) {
+        if (msisdn == null) {
+            return null;
+        }
+        if (!isValid(msisdn)) {
+            throw new IllegalArgumentException(String.format(ERROR_INVALID_MSISDN, msisdn));
+        }
+        return Long.parseLong(msisdn);
+    }
+
+    /**
+     * @return Номер абонента по числовому ключу; {@code null} для {@code null}.
+     */
+    public static String toMsisdn(Long key) {
+        return key == null ? null : Long.toString(key);
+    }
+}
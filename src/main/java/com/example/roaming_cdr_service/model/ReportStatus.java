@@ -0,0 +1,66 @@
+package com.example.roaming_cdr_service.model;
+
+import lombok.Builder;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Класс для представления состояния задания на построение CDR-отчёта.
+ */
+@Data
+@Builder
+public class ReportStatus {
+
+    /**
+     * Этап построения отчёта.
+     */
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * UUID отчёта.
+     */
+    private String id;
+
+    /**
+     * Номер абонента, для которого строится отчёт; {@code null} у пакетного отчёта по всем абонентам.
+     */
+    private String msisdn;
+
+    /**
+     * Текущий этап построения.
+     */
+    private State state;
+
+    /**
+     * Число записанных в отчёт строк; у пакетного отчёта — число прочитанных звонков периода.
+     */
+    private long rowsWritten;
+
+    /**
+     * Время постановки задания в очередь.
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * Время начала построения.
+     */
+    private LocalDateTime startedAt;
+
+    /**
+     * Время завершения построения.
+     */
+    private LocalDateTime finishedAt;
+
+    /**
+     * Сообщение об ошибке, если построение завершилось неудачно.
+     */
+    private String error;
+
+    /**
+     * UUID отчётов абонентов пакетного отчёта (ключ — номер абонента); заполняется после завершения.
+     */
+    private Map<String, String> reports;
+}
@@ -0,0 +1,70 @@
+package com.example.roaming_cdr_service.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Сводная запись UDR абонента за календарный месяц.
+ * <p>
+ * Хранит суммарную длительность и число входящих и исходящих звонков, в которых абонент был
+ * инициатором или получателем. Обновляется в одной транзакции с записью CDR, поэтому UDR за месяц
+ * читается одной строкой вместо пересчёта по всем звонкам.
+ * </p>
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(UDRRollup.Key.class)
+@Table(name = "udr_rollup", indexes = @Index(name = "idx_udr_rollup_month", columnList = "month_start"))
+public class UDRRollup {
+
+    /**
+     * Номер абонента (MSISDN).
+     */
+    @Id
+    private String msisdn;
+
+    /**
+     * Первый день месяца, к которому относятся звонки (по времени начала звонка).
+     */
+    @Id
+    private LocalDate monthStart;
+
+    /**
+     * Суммарная длительность входящих звонков в секундах.
+     */
+    private long incomingSeconds;
+
+    /**
+     * Суммарная длительность исходящих звонков в секундах.
+     */
+    private long outgoingSeconds;
+
+    /**
+     * Число входящих звонков.
+     */
+    private long incomingCalls;
+
+    /**
+     * Число исходящих звонков.
+     */
+    private long outgoingCalls;
+
+    /**
+     * Составной ключ сводной записи: абонент и месяц.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String msisdn;
+        private LocalDate monthStart;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.ArchivedMonth;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Репозиторий каталога архивных месяцев.
+ * Записи добавляются через {@link CDRArchive}.
+ */
+@Repository
+public interface ArchivedMonthRepository extends JpaRepository<ArchivedMonth, LocalDate> {
+
+    /**
+     * @return Все архивные месяцы в хронологическом порядке.
+     */
+    List<ArchivedMonth> findAllByOrderByMonthStart();
+}
@@ -0,0 +1,228 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.model.ArchivedMonth;
+import com.example.roaming_cdr_service.model.CallTypeConverter;
+import com.example.roaming_cdr_service.model.MsisdnConverter;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Архив CDR: закрытые месяцы, перенесённые из таблицы {@code cdr} в колоночные файлы {@link CDRArchiveFile}.
+ * <p>
+ * Каталог архивных месяцев хранится в таблице {@code cdr_archive} ({@link ArchivedMonth}), файлы —
+ * в директории {@code cdr.archive.directory}. Перенос месяца записывает файл, добавляет его в каталог
+ * и удаляет звонки месяца из секции по умолчанию в одной транзакции; после её фиксации секция месяца
+ * ({@link CDRPartitions}) удаляется целиком, и файл становится видимым для чтения. Файлы, которых нет в каталоге (например, оставшиеся от прежней базы в памяти),
+ * удаляются при старте.
+ * </p>
+ */
+@Slf4j
+@Repository
+public class CDRArchive {
+
+    private static final String FILE_PREFIX = "cdr-";
+    private static final String FILE_EXTENSION = ".cdra";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int FETCH_SIZE = 10_000;
+
+    private static final String SELECT_PARTITION_MONTH_SQL =
+            "SELECT call_type, msisdn, other_msisdn, call_start_time, call_end_time FROM ("
+                    + "SELECT id, call_type, msisdn, other_msisdn, call_start_time, call_end_time FROM %s "
+                    + "UNION ALL "
+                    + "SELECT id, call_type, msisdn, other_msisdn, call_start_time, call_end_time FROM cdr "
+                    + "WHERE call_start_time >= ? AND call_start_time < ?) calls ORDER BY call_start_time, id";
+    private static final String SELECT_MONTH_SQL =
+            "SELECT call_type, msisdn, other_msisdn, call_start_time, call_end_time FROM cdr "
+                    + "WHERE call_start_time >= ? AND call_start_time < ? ORDER BY call_start_time, id";
+    private static final String DELETE_MONTH_SQL = "DELETE FROM cdr WHERE call_start_time >= ? AND call_start_time < ?";
+
+    private static final String ERROR_ALREADY_ARCHIVED = "Месяц %s уже перенесён в архив.";
+    private static final String ERROR_NO_CALLS = "За месяц %s нет CDR записей.";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ArchivedMonthRepository catalog;
+    private final CDRPartitions partitions;
+    private final Path directory;
+    private final NavigableMap<YearMonth, CDRArchiveFile> files = new ConcurrentSkipListMap<>();
+
+    public CDRArchive(JdbcTemplate jdbcTemplate, ArchivedMonthRepository catalog, CDRPartitions partitions,
+                      @Value("${cdr.archive.directory:archive}") String directory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalog = catalog;
+        this.partitions = partitions;
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Открывает файлы месяцев из каталога и удаляет файлы, которых в каталоге нет.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        Set<Path> known = new HashSet<>();
+        for (ArchivedMonth archivedMonth : catalog.findAllByOrderByMonthStart()) {
+            Path file = directory.resolve(archivedMonth.getFileName());
+            known.add(file);
+            try {
+                files.put(YearMonth.from(archivedMonth.getMonthStart()), CDRArchiveFile.open(file));
+            } catch (IOException e) {
+                log.error("Не удалось открыть архив месяца {}: {}", archivedMonth.getMonthStart(), file, e);
+            }
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path file : paths.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(FILE_PREFIX) && !known.contains(file)
+                        && (name.endsWith(FILE_EXTENSION) || name.endsWith(TEMP_EXTENSION))) {
+                    Files.deleteIfExists(file);
+                    log.info("Удалён архив {}, отсутствующий в каталоге", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Переносит звонки месяца из секций таблицы {@code cdr} в файл архива.
+     *
+     * @param month Месяц (по времени начала звонка).
+     * @return Запись каталога.
+     * @throws ConflictException       если месяц уже в архиве.
+     * @throws IllegalStateException   если звонки месяца нельзя сохранить без потерь.
+     * @throws EntityNotFoundException если за месяц нет звонков.
+     */
+    @Transactional
+    public ArchivedMonth archive(YearMonth month) {
+        if (files.containsKey(month) || catalog.existsById(month.atDay(1))) {
+            throw new ConflictException(String.format(ERROR_ALREADY_ARCHIVED, month));
+        }
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        CDRArchiveWriter writer = new CDRArchiveWriter(month);
+        String selectSql = partitions.find(month)
+                .map(table -> String.format(SELECT_PARTITION_MONTH_SQL, table))
+                .orElse(SELECT_MONTH_SQL);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(selectSql);
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setObject(1, start);
+            ps.setObject(2, end);
+            return ps;
+        }, (ResultSet rs) -> {
+            writer.add(CallTypeConverter.toCallType(rs.getObject(1, Byte.class)),
+                    MsisdnConverter.toMsisdn(rs.getObject(2, Long.class)), MsisdnConverter.toMsisdn(rs.getObject(3, Long.class)),
+                    rs.getObject(4, LocalDateTime.class), rs.getObject(5, LocalDateTime.class));
+        });
+        if (writer.size() == 0) {
+            throw new EntityNotFoundException(String.format(ERROR_NO_CALLS, month));
+        }
+
+        String fileName = FILE_PREFIX + month + FILE_EXTENSION;
+        Path file = directory.resolve(fileName);
+        Path tempFile = directory.resolve(fileName + TEMP_EXTENSION);
+        CDRArchiveFile archiveFile;
+        long fileSize;
+        try {
+            fileSize = writer.write(tempFile);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            archiveFile = CDRArchiveFile.open(file);
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            deleteQuietly(file);
+            throw new UncheckedIOException(e);
+        }
+
+        // Файл становится видимым только после фиксации удаления звонков из таблицы, иначе он удаляется.
+        // Секция удаляется раньше, чем файл становится видимым, чтобы звонки месяца не читались дважды
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    dropPartition(month);
+                    files.put(month, archiveFile);
+                    log.info("Месяц {} перенесён в архив {}: {} звонков, {} байт", month, file, writer.size(), fileSize);
+                } else {
+                    deleteQuietly(file);
+                }
+            }
+        });
+
+        ArchivedMonth archivedMonth = catalog.save(ArchivedMonth.builder()
+                .monthStart(month.atDay(1))
+                .fileName(fileName)
+                .rowCount(writer.size())
+                .fileSize(fileSize)
+                .archivedAt(LocalDateTime.now())
+                .build());
+        jdbcTemplate.update(DELETE_MONTH_SQL, start, end);
+        return archivedMonth;
+    }
+
+    /**
+     * @return Архивные месяцы в хронологическом порядке.
+     */
+    public List<ArchivedMonth> findAll() {
+        return catalog.findAllByOrderByMonthStart();
+    }
+
+    /**
+     * @return Архив месяца, если месяц перенесён в архив.
+     */
+    public Optional<CDRArchiveFile> find(YearMonth month) {
+        return Optional.ofNullable(files.get(month));
+    }
+
+    /**
+     * Находит архивы месяцев, пересекающихся с диапазоном {@code [start, end]}.
+     *
+     * @return Архивы в хронологическом порядке; пустой список, если таких месяцев нет.
+     */
+    public List<CDRArchiveFile> find(LocalDateTime start, LocalDateTime end) {
+        if (files.isEmpty() || end.isBefore(start)) {
+            return List.of();
+        }
+        return List.copyOf(files.subMap(YearMonth.from(start), true, YearMonth.from(end), true).values());
+    }
+
+    private void dropPartition(YearMonth month) {
+        try {
+            partitions.drop(month);
+        } catch (RuntimeException e) {
+            // Секция уже исключена из запросов, таблица останется до пересоздания базы
+            log.error("Не удалось удалить секцию месяца {}", month, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл архива {}", file, e);
+        }
+    }
+}
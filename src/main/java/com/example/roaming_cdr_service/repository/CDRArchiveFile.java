@@ -0,0 +1,372 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.UDRRollup;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Колоночный файл архива CDR за календарный месяц, читаемый через {@link java.nio.MappedByteBuffer}.
+ * <p>
+ * Формат (big-endian, смещения от начала файла):
+ * <ul>
+ *   <li>заголовок: сигнатура {@value #MAGIC}, версия, начало месяца в секундах эпохи (UTC), число звонков,
+ *   размер словаря, ширина кода абонента в байтах (1, 2 или 4) и смещения секций;</li>
+ *   <li>словарь: номера абонентов в лексикографическом порядке (смещения и байты UTF-8), код абонента — его позиция;</li>
+ *   <li>коды инициаторов и коды получателей звонков;</li>
+ *   <li>время начала: разности с предыдущим звонком в секундах (varint), первый — от начала месяца;</li>
+ *   <li>длительности в секундах (varint);</li>
+ *   <li>битовая карта типов звонка: 1 — исходящий ("01"), 0 — входящий ("02");</li>
+ *   <li>контрольные точки каждых {@value #BLOCK_SIZE} звонков: время начала предыдущего звонка и позиции
+ *   в секциях varint, чтобы декодирование начиналось с ближайшего блока;</li>
+ *   <li>индекс абонентов: для каждого кода — номера звонков, где абонент инициатор или получатель, по возрастанию.</li>
+ * </ul>
+ * Звонки упорядочены по времени начала и идентификатору, как в выборках из таблицы {@code cdr}.
+ * Файл читается только абсолютными методами буфера, поэтому один экземпляр можно читать из нескольких потоков.
+ * </p>
+ */
+public final class CDRArchiveFile {
+
+    /**
+     * Сигнатура файла архива ("CDRA").
+     */
+    public static final int MAGIC = 0x43445241;
+
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 64;
+    static final int BLOCK_ENTRY_SIZE = 3 * Integer.BYTES;
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 8 * 4;
+
+    private static final String OUTGOING_CALL_TYPE = "01";
+    private static final String INCOMING_CALL_TYPE = "02";
+    private static final String ERROR_NOT_ARCHIVE = "Файл %s не является архивом CDR версии %d.";
+
+    private final YearMonth month;
+    private final long monthStartSecond;
+    private final ByteBuffer data;
+    private final int rows;
+    private final String[] msisdns;
+    private final Map<String, Integer> codes;
+    private final int codeWidth;
+    private final int callersOffset;
+    private final int receiversOffset;
+    private final int callTypesOffset;
+    private final int blocksOffset;
+    private final int indexOffset;
+    private final int indexEntriesOffset;
+
+    private CDRArchiveFile(Path file, ByteBuffer data) throws IOException {
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException(String.format(ERROR_NOT_ARCHIVE, file, VERSION));
+        }
+        this.data = data;
+        this.monthStartSecond = data.getLong(8);
+        this.month = YearMonth.from(LocalDateTime.ofEpochSecond(monthStartSecond, 0, ZoneOffset.UTC));
+        this.rows = data.getInt(16);
+        int dictionarySize = data.getInt(20);
+        this.codeWidth = data.getInt(24);
+        int dictionaryOffset = data.getInt(28);
+        this.callersOffset = data.getInt(32);
+        this.receiversOffset = data.getInt(36);
+        this.callTypesOffset = data.getInt(48);
+        this.blocksOffset = data.getInt(52);
+        this.indexOffset = data.getInt(56);
+        this.indexEntriesOffset = indexOffset + (dictionarySize + 1) * Integer.BYTES;
+
+        this.msisdns = new String[dictionarySize];
+        this.codes = new HashMap<>(dictionarySize * 2);
+        int bytesOffset = dictionaryOffset + (dictionarySize + 1) * Integer.BYTES;
+        for (int code = 0; code < dictionarySize; code++) {
+            int from = data.getInt(dictionaryOffset + code * Integer.BYTES);
+            int to = data.getInt(dictionaryOffset + (code + 1) * Integer.BYTES);
+            byte[] bytes = new byte[to - from];
+            data.get(bytesOffset + from, bytes);
+            msisdns[code] = new String(bytes, StandardCharsets.UTF_8);
+            codes.put(msisdns[code], code);
+        }
+    }
+
+    /**
+     * Отображает файл архива в память.
+     *
+     * @param file Файл архива.
+     * @return Архив месяца.
+     * @throws IOException если файл не читается или не является архивом.
+     */
+    public static CDRArchiveFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Отображение остаётся действительным и после закрытия канала
+            return new CDRArchiveFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return Месяц архива.
+     */
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    /**
+     * @return Начало месяца архива.
+     */
+    public LocalDateTime getStart() {
+        return month.atDay(1).atStartOfDay();
+    }
+
+    /**
+     * @return Число звонков в архиве.
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Передаёт звонки с временем начала в диапазоне {@code [start, end]} в порядке времени начала,
+     * как {@link CDRRepository#streamByCallStartTimeBetween}.
+     */
+    public void forEachCall(LocalDateTime start, LocalDateTime end, Consumer<CDR> sink) {
+        long from = ceilSecond(start);
+        long to = floorSecond(end);
+        Cursor cursor = new Cursor();
+        cursor.seek(firstRowFrom(from));
+        while (cursor.row < rows && cursor.start <= to) {
+            if (cursor.start >= from) {
+                sink.accept(toCDR(cursor));
+            }
+            cursor.next();
+        }
+    }
+
+    /**
+     * Передаёт звонки абонента (в любом направлении) с временем начала в диапазоне {@code [start, end]}
+     * в порядке времени начала, как {@link CDRRepository#streamSubscriberCalls}.
+     */
+    public void forEachSubscriberCall(String msisdn, LocalDateTime start, LocalDateTime end, Consumer<CDR> sink) {
+        forEachSubscriberRow(msisdn, ceilSecond(start), floorSecond(end), cursor -> {
+            sink.accept(toCDR(cursor));
+            return true;
+        });
+    }
+
+    /**
+     * Проверяет, есть ли у абонента звонки с временем начала в диапазоне {@code [start, end]}.
+     */
+    public boolean hasSubscriberCalls(String msisdn, LocalDateTime start, LocalDateTime end) {
+        boolean[] found = {false};
+        forEachSubscriberRow(msisdn, ceilSecond(start), floorSecond(end), cursor -> {
+            found[0] = true;
+            return false;
+        });
+        return found[0];
+    }
+
+    /**
+     * Добавляет к {@code seconds} длительности звонков абонента с временем начала в диапазоне {@code [start, end)}:
+     * {@code seconds[0]} — входящих, {@code seconds[1]} — исходящих.
+     *
+     * @return true, если в диапазоне у абонента были звонки.
+     */
+    public boolean addSubscriberCallDurations(long[] seconds, String msisdn, LocalDateTime start, LocalDateTime end) {
+        boolean[] found = {false};
+        forEachSubscriberRow(msisdn, ceilSecond(start), ceilSecond(end) - 1, cursor -> {
+            seconds[isOutgoing(cursor.row) ? 1 : 0] += cursor.duration;
+            found[0] = true;
+            return true;
+        });
+        return found[0];
+    }
+
+    /**
+     * Подсчитывает сводные записи UDR всех абонентов месяца за один проход по колонкам.
+     *
+     * @return Сводные записи, по одной на абонента, в порядке номеров.
+     */
+    public List<UDRRollup> aggregate() {
+        long[] incomingSeconds = new long[msisdns.length];
+        long[] outgoingSeconds = new long[msisdns.length];
+        long[] incomingCalls = new long[msisdns.length];
+        long[] outgoingCalls = new long[msisdns.length];
+        Cursor cursor = new Cursor();
+        for (cursor.seek(0); cursor.row < rows; cursor.next()) {
+            int caller = code(callersOffset, cursor.row);
+            int receiver = code(receiversOffset, cursor.row);
+            if (isOutgoing(cursor.row)) {
+                outgoingSeconds[caller] += cursor.duration;
+                outgoingCalls[caller]++;
+                outgoingSeconds[receiver] += cursor.duration;
+                outgoingCalls[receiver]++;
+            } else {
+                incomingSeconds[caller] += cursor.duration;
+                incomingCalls[caller]++;
+                incomingSeconds[receiver] += cursor.duration;
+                incomingCalls[receiver]++;
+            }
+        }
+
+        List<UDRRollup> rollups = new ArrayList<>(msisdns.length);
+        for (int code = 0; code < msisdns.length; code++) {
+            rollups.add(UDRRollup.builder()
+                    .msisdn(msisdns[code])
+                    .monthStart(month.atDay(1))
+                    .incomingSeconds(incomingSeconds[code])
+                    .outgoingSeconds(outgoingSeconds[code])
+                    .incomingCalls(incomingCalls[code])
+                    .outgoingCalls(outgoingCalls[code])
+                    .build());
+        }
+        return rollups;
+    }
+
+    /**
+     * Обходит звонки абонента по индексу с временем начала в {@code [from, to]} (секунды от начала месяца),
+     * пока {@code visitor} возвращает true.
+     */
+    private void forEachSubscriberRow(String msisdn, long from, long to, RowVisitor visitor) {
+        Integer code = codes.get(msisdn);
+        if (code == null || from > to) {
+            return;
+        }
+        int first = data.getInt(indexOffset + code * Integer.BYTES);
+        int last = data.getInt(indexOffset + (code + 1) * Integer.BYTES);
+        Cursor cursor = new Cursor();
+        for (int entry = first; entry < last; entry++) {
+            cursor.seek(data.getInt(indexEntriesOffset + entry * Integer.BYTES));
+            if (cursor.start > to) {
+                return;
+            }
+            if (cursor.start >= from && !visitor.visit(cursor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Номер первого звонка блока, с которого нужно начинать поиск звонков не раньше {@code from}.
+     */
+    private int firstRowFrom(long from) {
+        int low = 0;
+        int high = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE - 1;
+        int found = 0;
+        // Последний блок, все звонки перед которым начались раньше from
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (data.getInt(blocksOffset + mid * BLOCK_ENTRY_SIZE) < from) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found * BLOCK_SIZE;
+    }
+
+    private CDR toCDR(Cursor cursor) {
+        long startSecond = monthStartSecond + cursor.start;
+        return CDR.builder()
+                .callType(isOutgoing(cursor.row) ? OUTGOING_CALL_TYPE : INCOMING_CALL_TYPE)
+                .msisdn(msisdns[code(callersOffset, cursor.row)])
+                .otherMsisdn(msisdns[code(receiversOffset, cursor.row)])
+                .callStartTime(LocalDateTime.ofEpochSecond(startSecond, 0, ZoneOffset.UTC))
+                .callEndTime(LocalDateTime.ofEpochSecond(startSecond + cursor.duration, 0, ZoneOffset.UTC))
+                .build();
+    }
+
+    private int code(int offset, int row) {
+        return switch (codeWidth) {
+            case 1 -> data.get(offset + row) & 0xFF;
+            case 2 -> data.getShort(offset + 2 * row) & 0xFFFF;
+            default -> data.getInt(offset + 4 * row);
+        };
+    }
+
+    private boolean isOutgoing(int row) {
+        return (data.get(callTypesOffset + (row >>> 3)) >> (row & 7) & 1) != 0;
+    }
+
+    /**
+     * @return Первая секунда от начала месяца, не раньше {@code time}.
+     */
+    private long ceilSecond(LocalDateTime time) {
+        long second = time.toEpochSecond(ZoneOffset.UTC) - monthStartSecond;
+        return time.getNano() > 0 ? second + 1 : second;
+    }
+
+    /**
+     * @return Последняя секунда от начала месяца, не позже {@code time}.
+     */
+    private long floorSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) - monthStartSecond;
+    }
+
+    @FunctionalInterface
+    private interface RowVisitor {
+        boolean visit(Cursor cursor);
+    }
+
+    /**
+     * Позиция декодирования колонок varint. Переход вперёд в пределах блока продолжает декодирование,
+     * иначе оно начинается с контрольной точки блока.
+     */
+    private final class Cursor {
+        private int row = -1;
+        private int start;
+        private int duration;
+        private int startsPosition;
+        private int durationsPosition;
+
+        private void seek(int target) {
+            if (target >= rows) {
+                row = rows;
+                return;
+            }
+            if (row < 0 || target < row || target / BLOCK_SIZE != row / BLOCK_SIZE) {
+                int block = target / BLOCK_SIZE;
+                int entry = blocksOffset + block * BLOCK_ENTRY_SIZE;
+                row = block * BLOCK_SIZE - 1;
+                start = data.getInt(entry);
+                startsPosition = data.getInt(entry + Integer.BYTES);
+                durationsPosition = data.getInt(entry + 2 * Integer.BYTES);
+            }
+            while (row < target) {
+                next();
+            }
+        }
+
+        private void next() {
+            row++;
+            if (row >= rows) {
+                return;
+            }
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(startsPosition++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            start += delta;
+
+            duration = 0;
+            shift = 0;
+            do {
+                b = data.get(durationsPosition++);
+                duration |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.roaming_cdr_service.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сборка колоночного файла {@link CDRArchiveFile} из звонков месяца, упорядоченных по времени начала.
+ * <p>
+ * Звонки накапливаются в примитивных массивах: номера абонентов заменяются кодами словаря, время —
+ * секундами от начала месяца. Архив хранит звонки без потерь, кроме идентификаторов, поэтому звонки,
+ * которые нельзя восстановить точно (дробные секунды, неизвестный тип звонка и т. п.), отклоняются.
+ * </p>
+ */
+final class CDRArchiveWriter {
+
+    private static final String OUTGOING_CALL_TYPE = "01";
+    private static final String INCOMING_CALL_TYPE = "02";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String ERROR_UNSUPPORTED_CALL =
+            "Звонок %s %s -> %s в %s не может быть перенесён в архив без потерь.";
+    private static final String ERROR_TOO_LARGE = "Архив месяца %s превышает 2 ГБ.";
+
+    private final YearMonth month;
+    private final long monthStartSecond;
+    private final long monthEndSecond;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> msisdns = new ArrayList<>();
+    private final BitSet outgoing = new BitSet();
+    private int[] callers = new int[1024];
+    private int[] receivers = new int[1024];
+    private int[] starts = new int[1024];
+    private int[] durations = new int[1024];
+    private int size;
+
+    CDRArchiveWriter(YearMonth month) {
+        this.month = month;
+        this.monthStartSecond = month.atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        this.monthEndSecond = month.plusMonths(1).atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Добавляет звонок. Звонки должны поступать в порядке времени начала.
+     *
+     * @throws IllegalStateException если звонок не может быть сохранён в архиве без потерь.
+     */
+    void add(String callType, String msisdn, String otherMsisdn, LocalDateTime start, LocalDateTime end) {
+        boolean outgoingCall = OUTGOING_CALL_TYPE.equals(callType);
+        if (!outgoingCall && !INCOMING_CALL_TYPE.equals(callType) || msisdn == null || otherMsisdn == null
+                || start == null || end == null || start.getNano() != 0 || end.getNano() != 0) {
+            throw new IllegalStateException(String.format(ERROR_UNSUPPORTED_CALL, callType, msisdn, otherMsisdn, start));
+        }
+        long startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        long duration = end.toEpochSecond(ZoneOffset.UTC) - startSecond;
+        if (startSecond < monthStartSecond || startSecond >= monthEndSecond
+                || size > 0 && startSecond - monthStartSecond < starts[size - 1]
+                || duration < 0 || duration > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format(ERROR_UNSUPPORTED_CALL, callType, msisdn, otherMsisdn, start));
+        }
+
+        if (size == callers.length) {
+            int capacity = size + (size >> 1);
+            callers = Arrays.copyOf(callers, capacity);
+            receivers = Arrays.copyOf(receivers, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+        callers[size] = code(msisdn);
+        receivers[size] = code(otherMsisdn);
+        starts[size] = (int) (startSecond - monthStartSecond);
+        durations[size] = (int) duration;
+        outgoing.set(size, outgoingCall);
+        size++;
+    }
+
+    /**
+     * @return Число добавленных звонков.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Записывает архив в файл, перезаписывая его содержимое.
+     *
+     * @return Размер файла в байтах.
+     */
+    long write(Path file) throws IOException {
+        // Словарь в лексикографическом порядке: код абонента — позиция номера в нём
+        String[] sorted = msisdns.toArray(new String[0]);
+        Arrays.sort(sorted);
+        int[] remap = new int[sorted.length];
+        for (int code = 0; code < sorted.length; code++) {
+            remap[codes.get(sorted[code])] = code;
+        }
+        int codeWidth = sorted.length <= 1 << 8 ? 1 : sorted.length <= 1 << 16 ? 2 : 4;
+        int blocks = (size + CDRArchiveFile.BLOCK_SIZE - 1) / CDRArchiveFile.BLOCK_SIZE;
+        int[] blockBases = new int[blocks];
+        int[] blockStarts = new int[blocks];
+        int[] blockDurations = new int[blocks];
+        int[] sections = new int[8];
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.skip(CDRArchiveFile.HEADER_SIZE);
+
+            sections[0] = out.position();
+            byte[][] dictionary = new byte[sorted.length][];
+            int bytesLength = 0;
+            for (int code = 0; code < sorted.length; code++) {
+                out.putInt(bytesLength);
+                dictionary[code] = sorted[code].getBytes(StandardCharsets.UTF_8);
+                bytesLength += dictionary[code].length;
+            }
+            out.putInt(bytesLength);
+            for (byte[] bytes : dictionary) {
+                out.put(bytes);
+            }
+
+            sections[1] = out.position();
+            for (int i = 0; i < size; i++) {
+                out.putCode(remap[callers[i]], codeWidth);
+            }
+            sections[2] = out.position();
+            for (int i = 0; i < size; i++) {
+                out.putCode(remap[receivers[i]], codeWidth);
+            }
+
+            sections[3] = out.position();
+            for (int i = 0; i < size; i++) {
+                int previous = i == 0 ? 0 : starts[i - 1];
+                if (i % CDRArchiveFile.BLOCK_SIZE == 0) {
+                    blockBases[i / CDRArchiveFile.BLOCK_SIZE] = previous;
+                    blockStarts[i / CDRArchiveFile.BLOCK_SIZE] = out.position();
+                }
+                out.putVarint(starts[i] - previous);
+            }
+            sections[4] = out.position();
+            for (int i = 0; i < size; i++) {
+                if (i % CDRArchiveFile.BLOCK_SIZE == 0) {
+                    blockDurations[i / CDRArchiveFile.BLOCK_SIZE] = out.position();
+                }
+                out.putVarint(durations[i]);
+            }
+
+            sections[5] = out.position();
+            byte[] bitmap = Arrays.copyOf(outgoing.toByteArray(), (size + 7) / 8);
+            out.put(bitmap);
+
+            sections[6] = out.position();
+            for (int block = 0; block < blocks; block++) {
+                out.putInt(blockBases[block]);
+                out.putInt(blockStarts[block]);
+                out.putInt(blockDurations[block]);
+            }
+
+            sections[7] = out.position();
+            writeIndex(out, remap);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(CDRArchiveFile.HEADER_SIZE);
+            header.putInt(CDRArchiveFile.MAGIC)
+                    .putInt(CDRArchiveFile.VERSION)
+                    .putLong(monthStartSecond)
+                    .putInt(size)
+                    .putInt(sorted.length)
+                    .putInt(codeWidth);
+            for (int section : sections) {
+                header.putInt(section);
+            }
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            channel.force(false);
+            return channel.size();
+        }
+    }
+
+    /**
+     * Пишет индекс абонентов: смещения списков по кодам и номера звонков, где абонент инициатор или получатель.
+     * Звонок абонента самому себе попадает в список дважды, как в объединении выборок по двум индексам таблицы.
+     */
+    private void writeIndex(Output out, int[] remap) throws IOException {
+        int[] offsets = new int[remap.length + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[remap[callers[i]] + 1]++;
+            offsets[remap[receivers[i]] + 1]++;
+        }
+        for (int code = 0; code < remap.length; code++) {
+            offsets[code + 1] += offsets[code];
+        }
+        int[] entries = new int[2 * size];
+        int[] next = Arrays.copyOf(offsets, remap.length);
+        for (int i = 0; i < size; i++) {
+            entries[next[remap[callers[i]]]++] = i;
+            entries[next[remap[receivers[i]]]++] = i;
+        }
+        for (int offset : offsets) {
+            out.putInt(offset);
+        }
+        for (int entry : entries) {
+            out.putInt(entry);
+        }
+    }
+
+    private int code(String msisdn) {
+        Integer code = codes.get(msisdn);
+        if (code == null) {
+            code = msisdns.size();
+            codes.put(msisdn, code);
+            msisdns.add(msisdn);
+        }
+        return code;
+    }
+
+    /**
+     * Буферизованная последовательная запись в канал с учётом позиции в файле.
+     */
+    private final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long flushed;
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private int position() throws IOException {
+            long position = flushed + buffer.position();
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException(String.format(ERROR_TOO_LARGE, month));
+            }
+            return (int) position;
+        }
+
+        private void skip(int length) throws IOException {
+            put(new byte[length]);
+        }
+
+        private void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void putCode(int code, int width) throws IOException {
+            ensure(width);
+            switch (width) {
+                case 1 -> buffer.put((byte) code);
+                case 2 -> buffer.putShort((short) code);
+                default -> buffer.putInt(code);
+            }
+        }
+
+        private void putVarint(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void ensure(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
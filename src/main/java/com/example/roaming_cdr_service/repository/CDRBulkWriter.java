@@ -0,0 +1,193 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.CallTypeConverter;
+import com.example.roaming_cdr_service.model.MsisdnConverter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пакетная запись CDR записей напрямую через JDBC, минуя контекст персистентности JPA.
+ * <p>
+ * Записи вставляются многострочными {@code INSERT} по {@value #ROWS_PER_STATEMENT} строк,
+ * которые отправляются в базу JDBC-пакетами. Идентификаторы выделяются блоками из
+ * последовательности {@link CDR#ID_SEQUENCE} по тем же правилам, что и у оптимизатора
+ * {@code pooled} Hibernate: значение {@code v} резервирует идентификаторы
+ * {@code (v - ID_ALLOCATION_SIZE, v]}, поэтому запись через JPA и через этот класс не конфликтует.
+ * Номера абонентов и тип звонка записываются числами, как их записывают конвертеры атрибутов {@link CDR}.
+ * Каждая запись попадает в секцию месяца своего начала ({@link CDRPartitions}); секции создаются при
+ * первой записи в месяц.
+ * </p>
+ * <p>
+ * В той же транзакции обновляется сводная таблица UDR ({@link UDRRollupWriter}); после фиксации
+ * записи добавляются в колоночное хранилище {@link CDRColumnStore}, если оно включено.
+ * </p>
+ */
+@Slf4j
+@Repository
+public class CDRBulkWriter {
+
+    private static final int ROWS_PER_STATEMENT = 100;
+    private static final String INSERT_PREFIX =
+            "INSERT INTO %s (id, call_type, msisdn, other_msisdn, call_start_time, call_end_time) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?)";
+    private static final String ERROR_INVALID_BATCH_SIZE = "Размер пакета должен быть положительным.";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UDRRollupWriter rollupWriter;
+    private final CDRColumnStore columnStore;
+    private final CDRPartitions partitions;
+    private final DataFieldMaxValueIncrementer idSequence;
+    private final int batchSize;
+    private final Map<String, String> fullInsertSql = new ConcurrentHashMap<>();
+
+    private long nextId;
+    private long lastReservedId = -1;
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong nanosSpent = new AtomicLong();
+
+    public CDRBulkWriter(JdbcTemplate jdbcTemplate, UDRRollupWriter rollupWriter, CDRColumnStore columnStore,
+                         CDRPartitions partitions, @Value("${cdr.bulk.batch-size:1000}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(ERROR_INVALID_BATCH_SIZE);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollupWriter = rollupWriter;
+        this.columnStore = columnStore;
+        this.partitions = partitions;
+        this.idSequence = new H2SequenceMaxValueIncrementer(jdbcTemplate.getDataSource(), CDR.ID_SEQUENCE);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return Рекомендуемое число записей, передаваемых в {@link #insertAll(List)} за один вызов.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Вставляет записи в секции их месяцев, проставляет им идентификаторы и добавляет их к сводной таблице UDR.
+     *
+     * @param cdrs Записи для вставки.
+     * @return Число вставленных записей.
+     */
+    @Transactional
+    public int insertAll(List<CDR> cdrs) {
+        if (cdrs.isEmpty()) {
+            return 0;
+        }
+        long started = System.nanoTime();
+
+        Map<String, List<CDR>> byTable = new LinkedHashMap<>();
+        for (CDR cdr : cdrs) {
+            cdr.setId(nextId());
+            String table = cdr.getCallStartTime() == null
+                    ? CDRPartitions.DEFAULT_TABLE
+                    : partitions.ensure(YearMonth.from(cdr.getCallStartTime()));
+            byTable.computeIfAbsent(table, key -> new ArrayList<>()).add(cdr);
+        }
+        byTable.forEach(this::insertRows);
+        // Хранилище регистрируется раньше события сводной таблицы, чтобы кэш UDR сбрасывался после его обновления
+        columnStore.addAll(cdrs);
+        rollupWriter.addAll(cdrs);
+
+        long total = rowsWritten.addAndGet(cdrs.size());
+        long nanos = nanosSpent.addAndGet(System.nanoTime() - started);
+        log.debug("Вставлено {} CDR, всего {} ({} строк/с)", cdrs.size(), total, rowsPerSecond(total, nanos));
+        return cdrs.size();
+    }
+
+    private void insertRows(String table, List<CDR> cdrs) {
+        int fullStatements = cdrs.size() / ROWS_PER_STATEMENT;
+        if (fullStatements > 0) {
+            String sql = fullInsertSql.computeIfAbsent(table, key -> insertSql(key, ROWS_PER_STATEMENT));
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    bindRows(ps, cdrs, i * ROWS_PER_STATEMENT, ROWS_PER_STATEMENT);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return fullStatements;
+                }
+            });
+        }
+
+        int remainderFrom = fullStatements * ROWS_PER_STATEMENT;
+        int remainder = cdrs.size() - remainderFrom;
+        if (remainder > 0) {
+            jdbcTemplate.update(insertSql(table, remainder), ps -> bindRows(ps, cdrs, remainderFrom, remainder));
+        }
+    }
+
+    /**
+     * @return Общее число записей, вставленных с момента запуска.
+     */
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * @return Средняя скорость вставки в строках в секунду за всё время работы.
+     */
+    public long getRowsPerSecond() {
+        return rowsPerSecond(rowsWritten.get(), nanosSpent.get());
+    }
+
+    private static long rowsPerSecond(long rows, long nanos) {
+        return nanos == 0 ? 0 : rows * 1_000_000_000L / nanos;
+    }
+
+    private synchronized long nextId() {
+        if (nextId > lastReservedId) {
+            lastReservedId = idSequence.nextLongValue();
+            nextId = Math.max(1, lastReservedId - CDR.ID_ALLOCATION_SIZE + 1);
+        }
+        return nextId++;
+    }
+
+    private static void bindRows(PreparedStatement ps, List<CDR> cdrs, int from, int count) throws SQLException {
+        int index = 1;
+        for (int i = from; i < from + count; i++) {
+            CDR cdr = cdrs.get(i);
+            ps.setLong(index++, cdr.getId());
+            ps.setObject(index++, CallTypeConverter.toCode(cdr.getCallType()), Types.TINYINT);
+            ps.setObject(index++, MsisdnConverter.toKey(cdr.getMsisdn()), Types.BIGINT);
+            ps.setObject(index++, MsisdnConverter.toKey(cdr.getOtherMsisdn()), Types.BIGINT);
+            ps.setObject(index++, cdr.getCallStartTime());
+            ps.setObject(index++, cdr.getCallEndTime());
+        }
+    }
+
+    private static String insertSql(String table, int rows) {
+        String prefix = String.format(INSERT_PREFIX, table);
+        StringBuilder sql = new StringBuilder(prefix.length() + rows * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(prefix);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
+    }
+}
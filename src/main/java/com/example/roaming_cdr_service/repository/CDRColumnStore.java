@@ -0,0 +1,521 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.CallTypeConverter;
+import com.example.roaming_cdr_service.model.MsisdnConverter;
+import com.example.roaming_cdr_service.model.UDRRollup;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Колоночное хранилище CDR в памяти для расчёта UDR.
+ * <p>
+ * Звонки хранятся в параллельных примитивных массивах: коды инициатора и получателя (номер абонента
+ * заменяется позицией в словаре), время начала в секундах эпохи (UTC), длительность в секундах и тип
+ * звонка байтом — около 21 байта на звонок вместо графа объектов {@link CDR}. Суммы по абоненту
+ * считаются одним проходом по массивам без ветвлений, который JIT может векторизовать.
+ * </p>
+ * <p>
+ * Массивы разбиты на серии, каждая упорядочена по времени начала, поэтому границы диапазона в серии
+ * находятся двоичным поиском. Пакет, идущий по времени после последней серии, дописывается в неё; пакет
+ * со звонками раньше (например, дозапись прошлых месяцев) сортируется и становится новой серией. Соседние
+ * серии сливаются, когда более новая дорастает до половины предыдущей: серий не больше логарифма от числа
+ * звонков, и каждый звонок переписывается при слияниях логарифмическое число раз, а не при каждом пакете.
+ * Число серий записывается в метрику {@code cdr.udr.store.runs}, число слияний — в {@code cdr.udr.store.merges}.
+ * </p>
+ * <p>
+ * Хранилище включается свойством {@code cdr.udr.store.enabled}. При старте в него загружаются звонки
+ * всех секций таблицы {@code cdr} ({@link CDRPartitions}) и архива {@link CDRArchive}, затем {@link CDRBulkWriter} добавляет записанные
+ * пакеты после фиксации транзакции. Звонки, перенесённые в архив, остаются в хранилище. Читатели
+ * работают со снимком серий без блокировок: новые звонки записываются за пределами опубликованного
+ * размера серии или в новые массивы, а снимок заменяется после записи пакета. Время звонков учитывается
+ * с точностью до секунды. Время подсчёта UDR за месяц записывается в метрику {@code cdr.udr.aggregation}
+ * ({@code source=store, phase=compute}): чтения из базы здесь нет.
+ * </p>
+ */
+@Slf4j
+@Repository
+public class CDRColumnStore {
+
+    private static final byte OTHER = 0;
+    private static final byte OUTGOING = 1;
+    private static final byte INCOMING = 2;
+    private static final String OUTGOING_CALL_TYPE = "01";
+    private static final String INCOMING_CALL_TYPE = "02";
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int FETCH_SIZE = 10_000;
+    private static final int BYTES_PER_CALL = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES;
+    private static final int MERGE_RATIO = 2; // Серия сливается с более новой, если больше неё не более чем вдвое
+
+    private static final String SELECT_ALL_SQL =
+            "SELECT call_type, msisdn, other_msisdn, call_start_time, call_end_time FROM %s "
+                    + "ORDER BY call_start_time, id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CDRArchive cdrArchive;
+    private final CDRPartitions partitions;
+    private final boolean enabled;
+    private final Timer aggregationTimer;
+    private final Counter mergeCounter;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private String[] msisdns = new String[INITIAL_CAPACITY];
+    private int msisdnCount;
+    // Серии от самой старой к самой новой
+    private final List<Run> runs = new ArrayList<>();
+    private int size;
+
+    private volatile Columns columns = new Columns(msisdns, 0, new Segment[0], 0);
+
+    public CDRColumnStore(JdbcTemplate jdbcTemplate, CDRArchive cdrArchive, CDRPartitions partitions,
+                          @Value("${cdr.udr.store.enabled:false}") boolean enabled, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cdrArchive = cdrArchive;
+        this.partitions = partitions;
+        this.enabled = enabled;
+        this.aggregationTimer = Timer.builder("cdr.udr.aggregation")
+                .description("Время подсчёта UDR всех абонентов за месяц по этапам")
+                .tag("source", "store")
+                .tag("phase", "compute")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.mergeCounter = Counter.builder("cdr.udr.store.merges")
+                .description("Число слияний упорядоченных серий колоночного хранилища CDR")
+                .register(meterRegistry);
+        if (enabled) {
+            Gauge.builder("cdr.udr.store.calls", this, CDRColumnStore::size)
+                    .description("Число звонков в колоночном хранилище CDR")
+                    .register(meterRegistry);
+            Gauge.builder("cdr.udr.store.runs", this, CDRColumnStore::runs)
+                    .description("Число упорядоченных серий звонков в колоночном хранилище CDR")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Загружает звонки архива и секций таблицы {@code cdr}, если хранилище включено.
+     */
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        synchronized (this) {
+            Run loaded = new Run(INITIAL_CAPACITY);
+            for (CDRArchiveFile file : cdrArchive.find(LocalDateTime.MIN, LocalDateTime.MAX)) {
+                file.forEachCall(file.getStart(), file.getStart().plusMonths(1), cdr -> append(loaded, cdr.getCallType(),
+                        cdr.getMsisdn(), cdr.getOtherMsisdn(), cdr.getCallStartTime(), cdr.getCallEndTime()));
+            }
+            for (String table : partitions.tables()) {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(String.format(SELECT_ALL_SQL, table));
+                    ps.setFetchSize(FETCH_SIZE);
+                    return ps;
+                }, (ResultSet rs) -> {
+                    append(loaded, CallTypeConverter.toCallType(rs.getObject(1, Byte.class)),
+                            MsisdnConverter.toMsisdn(rs.getObject(2, Long.class)), MsisdnConverter.toMsisdn(rs.getObject(3, Long.class)),
+                            rs.getObject(4, LocalDateTime.class), rs.getObject(5, LocalDateTime.class));
+                });
+            }
+            addRun(loaded);
+            publish();
+        }
+        log.info("В колоночное хранилище загружено {} CDR (~{} КБ) за {} мс",
+                size, (long) size * BYTES_PER_CALL / 1024, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * @return true, если хранилище включено и может отвечать на запросы UDR.
+     */
+    public boolean isAvailable() {
+        return enabled;
+    }
+
+    /**
+     * @return Число звонков в хранилище.
+     */
+    public int size() {
+        return columns.size;
+    }
+
+    /**
+     * @return Число упорядоченных серий, в каждой из которых ищутся границы диапазона.
+     */
+    public int runs() {
+        return columns.segments.length;
+    }
+
+    /**
+     * Добавляет записанные звонки. Внутри транзакции звонки становятся видимыми после её фиксации —
+     * раньше, чем срабатывают слушатели {@link UDRRollupChangedEvent}, — и отбрасываются при откате.
+     */
+    public void addAll(List<CDR> cdrs) {
+        if (!enabled || cdrs.isEmpty()) {
+            return;
+        }
+        // Пакет копируется сразу: вызывающий код может переиспользовать список после записи
+        List<CDR> batch = new ArrayList<>(cdrs.size());
+        for (CDR cdr : cdrs) {
+            batch.add(CDR.builder()
+                    .callType(cdr.getCallType())
+                    .msisdn(cdr.getMsisdn())
+                    .otherMsisdn(cdr.getOtherMsisdn())
+                    .callStartTime(cdr.getCallStartTime())
+                    .callEndTime(cdr.getCallEndTime())
+                    .build());
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            appendAll(batch);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCommit() {
+                appendAll(batch);
+            }
+        });
+    }
+
+    /**
+     * Добавляет к {@code seconds} длительности звонков абонента за {@code [start, end)}:
+     * {@code seconds[0]} — входящие, {@code seconds[1]} — исходящие. Звонок абонента самому себе
+     * учитывается дважды, как в сумме по таблице {@code cdr}.
+     *
+     * @return true, если за этот период у абонента были звонки.
+     */
+    public boolean addSubscriberCallDurations(long[] seconds, String msisdn, LocalDateTime start, LocalDateTime end) {
+        Integer known = codes.get(msisdn);
+        if (known == null) {
+            return false;
+        }
+        int code = known;
+        Columns snapshot = columns;
+        long from = epochSecond(start);
+        long to = epochSecond(end);
+
+        long incoming = 0;
+        long outgoing = 0;
+        long calls = 0;
+        for (Segment segment : snapshot.segments) {
+            int first = segment.lowerBound(from);
+            int last = segment.lowerBound(to);
+            int[] callers = segment.callers;
+            int[] receivers = segment.receivers;
+            int[] durations = segment.durations;
+            byte[] types = segment.types;
+            for (int i = first; i < last; i++) {
+                int parties = (callers[i] == code ? 1 : 0) + (receivers[i] == code ? 1 : 0);
+                long weighted = (long) parties * durations[i];
+                incoming += types[i] == INCOMING ? weighted : 0;
+                outgoing += types[i] == OUTGOING ? weighted : 0;
+                calls += parties;
+            }
+        }
+        seconds[0] += incoming;
+        seconds[1] += outgoing;
+        return calls > 0;
+    }
+
+    /**
+     * Считает сводные записи UDR всех абонентов за {@code [start, end)}.
+     *
+     * @param month Первый день месяца для поля {@link UDRRollup#getMonthStart()} результата.
+     * @return Записи абонентов, у которых были входящие или исходящие звонки, по возрастанию номера.
+     */
+    public List<UDRRollup> aggregate(LocalDate month, LocalDateTime start, LocalDateTime end) {
+        long started = System.nanoTime();
+        Columns snapshot = columns;
+        long from = epochSecond(start);
+        long to = epochSecond(end);
+
+        // [0] — входящие, [1] — исходящие; по два счётчика на код абонента
+        long[] seconds = new long[2 * snapshot.msisdnCount];
+        long[] calls = new long[2 * snapshot.msisdnCount];
+        for (Segment segment : snapshot.segments) {
+            int last = segment.lowerBound(to);
+            for (int i = segment.lowerBound(from); i < last; i++) {
+                if (segment.types[i] == OTHER) {
+                    continue;
+                }
+                int type = segment.types[i] == OUTGOING ? 1 : 0;
+                int caller = 2 * segment.callers[i] + type;
+                int receiver = 2 * segment.receivers[i] + type;
+                seconds[caller] += segment.durations[i];
+                seconds[receiver] += segment.durations[i];
+                calls[caller]++;
+                calls[receiver]++;
+            }
+        }
+
+        List<UDRRollup> rollups = new ArrayList<>();
+        for (int code = 0; code < snapshot.msisdnCount; code++) {
+            if (calls[2 * code] + calls[2 * code + 1] > 0) {
+                rollups.add(new UDRRollup(snapshot.msisdns[code], month, seconds[2 * code], seconds[2 * code + 1],
+                        calls[2 * code], calls[2 * code + 1]));
+            }
+        }
+        rollups.sort(Comparator.comparing(UDRRollup::getMsisdn));
+        aggregationTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return rollups;
+    }
+
+    private synchronized void appendAll(List<CDR> cdrs) {
+        Run batch = new Run(cdrs.size());
+        for (CDR cdr : cdrs) {
+            append(batch, cdr.getCallType(), cdr.getMsisdn(), cdr.getOtherMsisdn(), cdr.getCallStartTime(), cdr.getCallEndTime());
+        }
+        addRun(batch);
+        publish();
+    }
+
+    /**
+     * Записывает звонок в неопубликованную серию. Звонки без участников или времени
+     * не учитываются в UDR и пропускаются.
+     */
+    private void append(Run run, String callType, String msisdn, String otherMsisdn, LocalDateTime start, LocalDateTime end) {
+        if (msisdn == null || otherMsisdn == null || start == null || end == null) {
+            return;
+        }
+        long startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        long duration = end.toEpochSecond(ZoneOffset.UTC) - startSecond;
+        run.add(code(msisdn), code(otherMsisdn), startSecond,
+                (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, duration)),
+                OUTGOING_CALL_TYPE.equals(callType) ? OUTGOING : INCOMING_CALL_TYPE.equals(callType) ? INCOMING : OTHER);
+    }
+
+    /**
+     * Добавляет неопубликованную серию: дописывает её в последнюю серию, если звонки идут не раньше
+     * её последнего звонка, иначе сортирует и ставит последней; затем сливает соседние серии сравнимого размера.
+     */
+    private void addRun(Run batch) {
+        if (batch.size == 0) {
+            return;
+        }
+        batch.sortByStart();
+        Run last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+        if (last != null && last.starts[last.size - 1] <= batch.starts[0]) {
+            last.append(batch);
+        } else {
+            runs.add(batch);
+        }
+        size += batch.size;
+        while (runs.size() > 1 && runs.get(runs.size() - 2).size <= MERGE_RATIO * runs.get(runs.size() - 1).size) {
+            Run newer = runs.remove(runs.size() - 1);
+            Run older = runs.remove(runs.size() - 1);
+            runs.add(Run.merge(older, newer));
+            mergeCounter.increment();
+        }
+    }
+
+    private int code(String msisdn) {
+        Integer code = codes.get(msisdn);
+        if (code == null) {
+            if (msisdnCount == msisdns.length) {
+                msisdns = Arrays.copyOf(msisdns, msisdnCount + (msisdnCount >> 1));
+            }
+            code = msisdnCount;
+            msisdns[msisdnCount++] = msisdn;
+            codes.put(msisdn, code);
+        }
+        return code;
+    }
+
+    private void publish() {
+        Segment[] segments = new Segment[runs.size()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = runs.get(i).segment();
+        }
+        columns = new Columns(msisdns, msisdnCount, segments, size);
+    }
+
+    /**
+     * Секунда эпохи, с которой начинается диапазон: звонки хранятся с точностью до секунды,
+     * поэтому граница с дробной частью округляется вверх.
+     */
+    private static long epochSecond(LocalDateTime time) {
+        long second = time.toEpochSecond(ZoneOffset.UTC);
+        return time.getNano() == 0 ? second : second + 1;
+    }
+
+    /**
+     * Серия звонков, изменяемая под блокировкой хранилища. В опубликованную серию звонки дописываются
+     * только за пределами опубликованного размера; сортировка и слияние записывают звонки в новые массивы.
+     */
+    private static final class Run {
+
+        private int[] callers;
+        private int[] receivers;
+        private long[] starts;
+        private int[] durations;
+        private byte[] types;
+        private int size;
+        private boolean sorted = true;
+
+        private Run(int capacity) {
+            int initialCapacity = Math.max(1, capacity);
+            callers = new int[initialCapacity];
+            receivers = new int[initialCapacity];
+            starts = new long[initialCapacity];
+            durations = new int[initialCapacity];
+            types = new byte[initialCapacity];
+        }
+
+        private void add(int caller, int receiver, long start, int duration, byte type) {
+            if (size == callers.length) {
+                grow(size + (size >> 1) + 1);
+            }
+            sorted &= size == 0 || starts[size - 1] <= start;
+            callers[size] = caller;
+            receivers[size] = receiver;
+            starts[size] = start;
+            durations[size] = duration;
+            types[size] = type;
+            size++;
+        }
+
+        /**
+         * Дописывает упорядоченную серию, звонки которой начинаются не раньше последнего звонка этой.
+         */
+        private void append(Run other) {
+            if (size + other.size > callers.length) {
+                grow(Math.max(size + other.size, size + (size >> 1)));
+            }
+            System.arraycopy(other.callers, 0, callers, size, other.size);
+            System.arraycopy(other.receivers, 0, receivers, size, other.size);
+            System.arraycopy(other.starts, 0, starts, size, other.size);
+            System.arraycopy(other.durations, 0, durations, size, other.size);
+            System.arraycopy(other.types, 0, types, size, other.size);
+            size += other.size;
+        }
+
+        private void grow(int capacity) {
+            callers = Arrays.copyOf(callers, capacity);
+            receivers = Arrays.copyOf(receivers, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+
+        /**
+         * Упорядочивает звонки по времени начала (стабильно). Ключ — смещение от самого раннего звонка
+         * и исходная позиция; если разброс времени в ключ не помещается, позиции сортируются сравнением.
+         */
+        private void sortByStart() {
+            if (sorted) {
+                return;
+            }
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, starts[i]);
+                max = Math.max(max, starts[i]);
+            }
+            int[] order = new int[size];
+            if (max - min <= Integer.MAX_VALUE) {
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = (starts[i] - min) << 32 | i;
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < size; i++) {
+                    order[i] = (int) keys[i];
+                }
+            } else {
+                Integer[] positions = new Integer[size];
+                Arrays.setAll(positions, i -> i);
+                Arrays.sort(positions, Comparator.comparingLong(i -> starts[i]));
+                Arrays.setAll(order, i -> positions[i]);
+            }
+            Run ordered = new Run(callers.length);
+            for (int from : order) {
+                ordered.add(callers[from], receivers[from], starts[from], durations[from], types[from]);
+            }
+            callers = ordered.callers;
+            receivers = ordered.receivers;
+            starts = ordered.starts;
+            durations = ordered.durations;
+            types = ordered.types;
+            sorted = true;
+        }
+
+        /**
+         * Сливает две упорядоченные серии в новые массивы; при равном времени начала первыми идут звонки более старой.
+         */
+        private static Run merge(Run older, Run newer) {
+            Run merged = new Run(older.size + newer.size);
+            int i = 0;
+            int j = 0;
+            while (i < older.size || j < newer.size) {
+                if (j == newer.size || i < older.size && older.starts[i] <= newer.starts[j]) {
+                    merged.add(older.callers[i], older.receivers[i], older.starts[i], older.durations[i], older.types[i]);
+                    i++;
+                } else {
+                    merged.add(newer.callers[j], newer.receivers[j], newer.starts[j], newer.durations[j], newer.types[j]);
+                    j++;
+                }
+            }
+            return merged;
+        }
+
+        private Segment segment() {
+            return new Segment(callers, receivers, starts, durations, types, size);
+        }
+    }
+
+    /**
+     * Опубликованный снимок серий. Элементы серий до их {@code size} после публикации не изменяются.
+     */
+    private record Columns(String[] msisdns, int msisdnCount, Segment[] segments, int size) {
+    }
+
+    /**
+     * Опубликованная серия звонков, упорядоченная по времени начала.
+     */
+    private record Segment(int[] callers, int[] receivers, long[] starts, int[] durations, byte[] types, int size) {
+
+        /**
+         * @return Позиция первого звонка, начавшегося не раньше {@code second}.
+         */
+        private int lowerBound(long second) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] < second) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
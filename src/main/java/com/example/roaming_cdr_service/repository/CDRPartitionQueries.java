@@ -0,0 +1,57 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.CallTypeTotal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Запросы {@link CDRRepository}, которые читают только помесячные секции ({@link CDRPartitions}),
+ * пересекающиеся с диапазоном, и секцию по умолчанию.
+ */
+public interface CDRPartitionQueries {
+
+    /**
+     * Вариант {@link CDRRepository#findSubscriberCalls(String, LocalDateTime, LocalDateTime)} по числовому ключу номера.
+     * Каждая ветка объединения читает свой составной индекс секции ({@code msisdn, call_start_time} или
+     * {@code other_msisdn, call_start_time}).
+     */
+    List<CDR> findSubscriberCalls(long msisdn, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Вариант {@link CDRRepository#streamSubscriberCalls(String, LocalDateTime, LocalDateTime)} по числовому ключу номера.
+     */
+    Stream<CDR> streamSubscriberCalls(long msisdn, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Вариант {@link CDRRepository#existsSubscriberCalls(String, LocalDateTime, LocalDateTime)} по числовому ключу номера.
+     */
+    boolean existsSubscriberCalls(long msisdn, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Вариант {@link CDRRepository#sumSubscriberCallDurations(String, LocalDateTime, LocalDateTime)} по числовому
+     * ключу номера. Код типа звонка возвращается двузначной строкой, как в модели.
+     */
+    List<CallTypeTotal> sumSubscriberCallDurations(long msisdn, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Читает курсором все CDR записи в заданном временном диапазоне по индексу времени начала,
+     * упорядоченные по времени начала звонка. Секции месяцев читаются по очереди, секция по умолчанию —
+     * одновременно с ними. Поток нужно закрыть и читать внутри транзакции.
+     *
+     * @param start Начальная дата диапазона.
+     * @param end   Конечная дата диапазона.
+     * @return Поток CDR записей.
+     */
+    Stream<CDR> streamByCallStartTimeBetween(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Находит все CDR записи в заданном временном диапазоне.
+     *
+     * @param start Начальная дата диапазона.
+     * @param end   Конечная дата диапазона.
+     * @return Список CDR записей, отсортированный по времени начала звонка.
+     */
+    List<CDR> findByCallStartTimeBetween(LocalDateTime start, LocalDateTime end);
+}
@@ -0,0 +1,265 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.CallTypeConverter;
+import com.example.roaming_cdr_service.model.CallTypeTotal;
+import com.example.roaming_cdr_service.model.MsisdnConverter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Реализация {@link CDRPartitionQueries}: нативные запросы, собранные из веток по секциям диапазона.
+ * Число строк каждого запроса записывается в метрику {@code cdr.repository.rows} с тегом {@code method}
+ * (у потоков — при закрытии); время вызова методов репозитория измеряет Spring Data
+ * ({@code spring.data.repository.invocations}).
+ */
+public class CDRPartitionQueriesImpl implements CDRPartitionQueries {
+
+    private static final int FETCH_SIZE = 5000;
+    private static final Comparator<CDR> START_ORDER = Comparator.comparing(CDR::getCallStartTime).thenComparing(CDR::getId);
+
+    // Порядок столбцов таблицы сущности задаёт Hibernate, поэтому ветки объединения перечисляют их явно
+    private static final String COLUMNS = "id, call_type, msisdn, other_msisdn, call_start_time, call_end_time";
+    private static final String SUBSCRIBER_CALLS_SQL =
+            "SELECT " + COLUMNS + " FROM %1$s WHERE msisdn = :msisdn AND call_start_time BETWEEN :start AND :end "
+                    + "UNION ALL "
+                    + "SELECT " + COLUMNS + " FROM %1$s WHERE other_msisdn = :msisdn AND call_start_time BETWEEN :start AND :end";
+    private static final String SUBSCRIBER_EXISTS_SQL =
+            "EXISTS(SELECT 1 FROM %1$s WHERE msisdn = :msisdn AND call_start_time BETWEEN :start AND :end) "
+                    + "OR EXISTS(SELECT 1 FROM %1$s WHERE other_msisdn = :msisdn AND call_start_time BETWEEN :start AND :end)";
+    private static final String SUBSCRIBER_DURATIONS_SQL =
+            "SELECT call_type, call_start_time, call_end_time FROM %1$s "
+                    + "WHERE msisdn = :msisdn AND call_start_time >= :start AND call_start_time < :end "
+                    + "UNION ALL "
+                    + "SELECT call_type, call_start_time, call_end_time FROM %1$s "
+                    + "WHERE other_msisdn = :msisdn AND call_start_time >= :start AND call_start_time < :end";
+    private static final String TIME_RANGE_SQL = "SELECT " + COLUMNS + " FROM %s WHERE call_start_time BETWEEN :start AND :end";
+    private static final String ORDER_BY_START = " ORDER BY call_start_time, id";
+
+    private final EntityManager entityManager;
+    private final CDRPartitions partitions;
+    private final DistributionSummary findSubscriberCallsRows;
+    private final DistributionSummary streamSubscriberCallsRows;
+    private final DistributionSummary sumSubscriberCallDurationsRows;
+    private final DistributionSummary streamByCallStartTimeBetweenRows;
+    private final DistributionSummary findByCallStartTimeBetweenRows;
+
+    public CDRPartitionQueriesImpl(EntityManager entityManager, CDRPartitions partitions, MeterRegistry meterRegistry) {
+        this.entityManager = entityManager;
+        this.partitions = partitions;
+        this.findSubscriberCallsRows = rows(meterRegistry, "findSubscriberCalls");
+        this.streamSubscriberCallsRows = rows(meterRegistry, "streamSubscriberCalls");
+        this.sumSubscriberCallDurationsRows = rows(meterRegistry, "sumSubscriberCallDurations");
+        this.streamByCallStartTimeBetweenRows = rows(meterRegistry, "streamByCallStartTimeBetween");
+        this.findByCallStartTimeBetweenRows = rows(meterRegistry, "findByCallStartTimeBetween");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<CDR> findSubscriberCalls(long msisdn, LocalDateTime start, LocalDateTime end) {
+        return counted(subscriberCallsQuery(msisdn, start, end).getResultList(), findSubscriberCallsRows);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Stream<CDR> streamSubscriberCalls(long msisdn, LocalDateTime start, LocalDateTime end) {
+        return counted(streaming(subscriberCallsQuery(msisdn, start, end)).getResultStream(), streamSubscriberCallsRows);
+    }
+
+    @Override
+    public boolean existsSubscriberCalls(long msisdn, LocalDateTime start, LocalDateTime end) {
+        String sql = "SELECT " + union(SUBSCRIBER_EXISTS_SQL, partitions.tables(start, end), " OR ");
+        return Boolean.TRUE.equals(bind(entityManager.createNativeQuery(sql), msisdn, start, end).getSingleResult());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<CallTypeTotal> sumSubscriberCallDurations(long msisdn, LocalDateTime start, LocalDateTime end) {
+        String sql = "SELECT call_type, CAST(SUM(DATEDIFF(SECOND, call_start_time, call_end_time)) AS BIGINT) FROM ("
+                + union(SUBSCRIBER_DURATIONS_SQL, partitions.tables(start, end.minusNanos(1)), " UNION ALL ")
+                + ") calls GROUP BY call_type";
+        String subscriber = MsisdnConverter.toMsisdn(msisdn);
+        List<Object[]> rows = bind(entityManager.createNativeQuery(sql), msisdn, start, end).getResultList();
+        sumSubscriberCallDurationsRows.record(rows.size());
+        return rows.stream()
+                .<CallTypeTotal>map(row -> new Total(subscriber,
+                        row[0] == null ? null : CallTypeConverter.toCallType(((Number) row[0]).byteValue()),
+                        ((Number) row[1]).longValue()))
+                .toList();
+    }
+
+    @Override
+    public Stream<CDR> streamByCallStartTimeBetween(LocalDateTime start, LocalDateTime end) {
+        List<String> tables = partitions.tables(start, end);
+        TimeOrderedCalls calls = new TimeOrderedCalls(tables.subList(0, tables.size() - 1), start, end);
+        return counted(StreamSupport.stream(Spliterators.spliteratorUnknownSize(calls, Spliterator.ORDERED | Spliterator.NONNULL),
+                false).onClose(calls::close), streamByCallStartTimeBetweenRows);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<CDR> findByCallStartTimeBetween(LocalDateTime start, LocalDateTime end) {
+        String sql = union(TIME_RANGE_SQL, partitions.tables(start, end), " UNION ALL ") + ORDER_BY_START;
+        return counted(entityManager.createNativeQuery(sql, CDR.class)
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .getResultList(), findByCallStartTimeBetweenRows);
+    }
+
+    private Query subscriberCallsQuery(long msisdn, LocalDateTime start, LocalDateTime end) {
+        String sql = union(SUBSCRIBER_CALLS_SQL, partitions.tables(start, end), " UNION ALL ") + ORDER_BY_START;
+        return bind(entityManager.createNativeQuery(sql, CDR.class), msisdn, start, end);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Stream<CDR> streamTimeRange(String table, LocalDateTime start, LocalDateTime end) {
+        return streaming(entityManager.createNativeQuery(String.format(TIME_RANGE_SQL, table) + ORDER_BY_START, CDR.class))
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .getResultStream();
+    }
+
+    private static Query bind(Query query, long msisdn, LocalDateTime start, LocalDateTime end) {
+        return query.setParameter("msisdn", msisdn)
+                .setParameter("start", start)
+                .setParameter("end", end);
+    }
+
+    private static Query streaming(Query query) {
+        return query.setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+    }
+
+    private static DistributionSummary rows(MeterRegistry meterRegistry, String method) {
+        return DistributionSummary.builder("cdr.repository.rows")
+                .description("Число строк, прочитанных запросом CDRRepository")
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static <T> List<T> counted(List<T> result, DistributionSummary rows) {
+        rows.record(result.size());
+        return result;
+    }
+
+    private static <T> Stream<T> counted(Stream<T> stream, DistributionSummary rows) {
+        long[] count = {0};
+        return stream.peek(row -> count[0]++).onClose(() -> rows.record(count[0]));
+    }
+
+    private static String union(String template, List<String> tables, String separator) {
+        return tables.stream().map(table -> String.format(template, table)).collect(Collectors.joining(separator));
+    }
+
+    private record Total(String msisdn, String callType, Long totalSeconds) implements CallTypeTotal {
+
+        @Override
+        public String getMsisdn() {
+            return msisdn;
+        }
+
+        @Override
+        public String getCallType() {
+            return callType;
+        }
+
+        @Override
+        public Long getTotalSeconds() {
+            return totalSeconds;
+        }
+    }
+
+    /**
+     * Слияние по времени начала: секции месяцев не пересекаются по времени и читаются курсором по очереди,
+     * секция по умолчанию читается одним курсором параллельно с ними.
+     */
+    private final class TimeOrderedCalls implements Iterator<CDR> {
+        private final Iterator<String> monthTables;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final Stream<CDR> defaultStream;
+        private final Iterator<CDR> defaultCalls;
+        private Stream<CDR> partitionStream;
+        private Iterator<CDR> partitionCalls = Collections.emptyIterator();
+        private CDR nextDefault;
+        private CDR nextPartition;
+
+        private TimeOrderedCalls(List<String> monthTables, LocalDateTime start, LocalDateTime end) {
+            this.monthTables = monthTables.iterator();
+            this.start = start;
+            this.end = end;
+            this.defaultStream = streamTimeRange(CDRPartitions.DEFAULT_TABLE, start, end);
+            this.defaultCalls = defaultStream.iterator();
+            try {
+                nextDefault = defaultCalls.hasNext() ? defaultCalls.next() : null;
+                nextPartition = readPartition();
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextDefault != null || nextPartition != null;
+        }
+
+        @Override
+        public CDR next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CDR next;
+            if (nextPartition == null || nextDefault != null && START_ORDER.compare(nextDefault, nextPartition) < 0) {
+                next = nextDefault;
+                nextDefault = defaultCalls.hasNext() ? defaultCalls.next() : null;
+            } else {
+                next = nextPartition;
+                nextPartition = readPartition();
+            }
+            return next;
+        }
+
+        private CDR readPartition() {
+            while (!partitionCalls.hasNext()) {
+                closePartition();
+                if (!monthTables.hasNext()) {
+                    return null;
+                }
+                partitionStream = streamTimeRange(monthTables.next(), start, end);
+                partitionCalls = partitionStream.iterator();
+            }
+            return partitionCalls.next();
+        }
+
+        private void closePartition() {
+            if (partitionStream != null) {
+                partitionStream.close();
+                partitionStream = null;
+            }
+        }
+
+        private void close() {
+            try {
+                defaultStream.close();
+            } finally {
+                closePartition();
+            }
+        }
+    }
+}
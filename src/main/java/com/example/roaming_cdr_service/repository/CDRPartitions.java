@@ -0,0 +1,174 @@
+package com.example.roaming_cdr_service.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Помесячные секции таблицы CDR.
+ * <p>
+ * Звонки, записанные {@link CDRBulkWriter}, хранятся в отдельной таблице на каждый месяц по времени начала
+ * ({@code cdr_2025_02} и т. д.) с теми же столбцами и индексами, что и {@code cdr}. Таблица {@code cdr}
+ * остаётся секцией по умолчанию: в неё попадают записи, сохранённые через JPA. Запросы за диапазон
+ * читают только секции пересекающихся месяцев и секцию по умолчанию, поэтому их стоимость зависит от
+ * объёма этих месяцев, а не от всей истории; месяц целиком удаляется {@code DROP TABLE} его секции.
+ * </p>
+ * <p>
+ * DDL в H2 фиксирует текущую транзакцию, поэтому секции создаются и удаляются через отдельное
+ * соединение, не связанное с транзакцией вызывающего кода.
+ * </p>
+ */
+@Slf4j
+@Repository
+public class CDRPartitions {
+
+    /**
+     * Секция по умолчанию — таблица сущности {@link com.example.roaming_cdr_service.model.CDR}.
+     */
+    public static final String DEFAULT_TABLE = "cdr";
+
+    private static final Pattern TABLE_NAME = Pattern.compile("CDR_(\\d{4})_(\\d{2})");
+    private static final String SELECT_TABLES_SQL =
+            "SELECT table_name FROM information_schema.tables WHERE table_schema = CURRENT_SCHEMA";
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS %1$s (id BIGINT NOT NULL PRIMARY KEY, "
+            + "call_type TINYINT, msisdn BIGINT, other_msisdn BIGINT, call_start_time TIMESTAMP(6), call_end_time TIMESTAMP(6), "
+            + "CONSTRAINT %1$s_month CHECK (call_start_time >= TIMESTAMP '%2$s 00:00:00' AND call_start_time < TIMESTAMP '%3$s 00:00:00'))";
+    private static final String CREATE_INDEX_SQL = "CREATE INDEX IF NOT EXISTS idx_%1$s_%2$s ON %1$s (%3$s)";
+    private static final String DROP_TABLE_SQL = "DROP TABLE IF EXISTS %s";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final NavigableMap<YearMonth, String> tables = new ConcurrentSkipListMap<>();
+
+    public CDRPartitions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = jdbcTemplate.getDataSource();
+    }
+
+    /**
+     * Находит секции, оставшиеся в базе с прошлого запуска.
+     */
+    @PostConstruct
+    public void init() {
+        for (String name : jdbcTemplate.queryForList(SELECT_TABLES_SQL, String.class)) {
+            Matcher matcher = TABLE_NAME.matcher(name);
+            if (matcher.matches()) {
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                tables.put(month, tableName(month));
+            }
+        }
+        if (!tables.isEmpty()) {
+            log.info("Найдено {} помесячных секций CDR: {} – {}", tables.size(), tables.firstKey(), tables.lastKey());
+        }
+    }
+
+    /**
+     * Возвращает секцию месяца, создавая её при первом обращении.
+     *
+     * @return Имя таблицы секции.
+     */
+    public String ensure(YearMonth month) {
+        String table = tables.get(month);
+        if (table != null) {
+            return table;
+        }
+        synchronized (this) {
+            table = tables.get(month);
+            if (table == null) {
+                table = tableName(month);
+                execute(List.of(
+                        String.format(CREATE_TABLE_SQL, table, month.atDay(1), month.plusMonths(1).atDay(1)),
+                        String.format(CREATE_INDEX_SQL, table, "msisdn_start", "msisdn, call_start_time"),
+                        String.format(CREATE_INDEX_SQL, table, "other_msisdn_start", "other_msisdn, call_start_time"),
+                        String.format(CREATE_INDEX_SQL, table, "start", "call_start_time")));
+                tables.put(month, table);
+                log.debug("Создана секция CDR {}", table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Удаляет секцию месяца целиком. Запросы перестают читать секцию до удаления таблицы.
+     * Не удаляет записи месяца из секции по умолчанию.
+     *
+     * @return true, если секция существовала.
+     */
+    public synchronized boolean drop(YearMonth month) {
+        String table = tables.remove(month);
+        if (table == null) {
+            return false;
+        }
+        execute(List.of(String.format(DROP_TABLE_SQL, table)));
+        log.info("Удалена секция CDR {}", table);
+        return true;
+    }
+
+    /**
+     * @return Секция месяца, если она существует.
+     */
+    public Optional<String> find(YearMonth month) {
+        return Optional.ofNullable(tables.get(month));
+    }
+
+    /**
+     * @return Месяцы, у которых есть секции, в хронологическом порядке.
+     */
+    public List<YearMonth> months() {
+        return List.copyOf(tables.keySet());
+    }
+
+    /**
+     * @return Секции месяцев в хронологическом порядке, затем секция по умолчанию.
+     */
+    public List<String> tables() {
+        List<String> result = new ArrayList<>(tables.values());
+        result.add(DEFAULT_TABLE);
+        return result;
+    }
+
+    /**
+     * Находит секции, которые могут содержать звонки, начавшиеся в {@code [start, end]}.
+     *
+     * @return Секции пересекающихся месяцев в хронологическом порядке, затем секция по умолчанию.
+     */
+    public List<String> tables(LocalDateTime start, LocalDateTime end) {
+        List<String> result = new ArrayList<>();
+        if (!end.isBefore(start)) {
+            result.addAll(tables.subMap(YearMonth.from(start), true, YearMonth.from(end), true).values());
+        }
+        result.add(DEFAULT_TABLE);
+        return result;
+    }
+
+    private static String tableName(YearMonth month) {
+        return String.format("cdr_%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private void execute(List<String> statements) {
+        String current = null;
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            for (String sql : statements) {
+                current = sql;
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            throw jdbcTemplate.getExceptionTranslator().translate("CDR partition DDL", current, e);
+        }
+    }
+}
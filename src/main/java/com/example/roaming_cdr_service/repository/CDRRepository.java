@@ -1,44 +1,91 @@
 package com.example.roaming_cdr_service.repository;
 
 import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.CallTypeTotal;
+import com.example.roaming_cdr_service.model.MsisdnConverter;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с CDR (Call Data Record) записями.
  * Предоставляет методы для поиска записей о звонках в базе данных.
+ * <p>
+ * Номера абонентов хранятся в таблице числами ({@link MsisdnConverter}): методы с номером-строкой
+ * переводят его в числовой ключ и вызывают запрос по ключу. Номер, который нельзя перевести в ключ,
+ * не может встретиться в таблице, поэтому для него запросы к базе не выполняются.
+ * </p>
+ * <p>
+ * Запросы по диапазону времени ({@link CDRPartitionQueries}) читают только помесячные секции
+ * ({@link CDRPartitions}), пересекающиеся с диапазоном, и секцию по умолчанию {@code cdr}.
+ * </p>
  */
 @Repository
-public interface CDRRepository extends JpaRepository<CDR, Long> {
+public interface CDRRepository extends JpaRepository<CDR, Long>, CDRPartitionQueries {
 
     /**
-     * Находит все CDR записи для указанного абонента (msisdn) в заданном временном диапазоне.
+     * Находит все CDR записи указанного абонента в заданном временном диапазоне — и те, где он звонил,
+     * и те, где он принимал звонок, — упорядоченные по времени начала звонка.
+     * <p>
+     * Каждая ветка объединения читает свой составной индекс ({@code msisdn, call_start_time} или
+     * {@code other_msisdn, call_start_time}) в секциях диапазона, поэтому запрос не сканирует таблицу целиком.
+     * </p>
      *
      * @param msisdn Номер абонента.
      * @param start  Начальная дата диапазона.
      * @param end    Конечная дата диапазона.
-     * @return Список CDR записей.
+     * @return Список CDR записей, отсортированный по времени начала звонка.
      */
-    List<CDR> findByMsisdnAndCallStartTimeBetween(String msisdn, LocalDateTime start, LocalDateTime end);
+    default List<CDR> findSubscriberCalls(String msisdn, LocalDateTime start, LocalDateTime end) {
+        return MsisdnConverter.isValid(msisdn)
+                ? findSubscriberCalls(MsisdnConverter.toKey(msisdn), start, end)
+                : List.of();
+    }
 
     /**
-     * Находит все CDR записи, где указанный абонент (otherMsisdn) был получателем звонка в заданном временном диапазоне.
+     * Потоковый вариант {@link #findSubscriberCalls(String, LocalDateTime, LocalDateTime)}: записи читаются
+     * курсором порциями по 5000 строк, а не собираются в список.
+     * Поток нужно закрыть и читать внутри транзакции.
      *
-     * @param otherMsisdn Номер абонента-получателя.
-     * @param start       Начальная дата диапазона.
-     * @param end         Конечная дата диапазона.
-     * @return Список CDR записей.
+     * @param msisdn Номер абонента.
+     * @param start  Начальная дата диапазона.
+     * @param end    Конечная дата диапазона.
+     * @return Поток CDR записей, отсортированный по времени начала звонка.
      */
-    List<CDR> findByOtherMsisdnAndCallStartTimeBetween(String otherMsisdn, LocalDateTime start, LocalDateTime end);
+    default Stream<CDR> streamSubscriberCalls(String msisdn, LocalDateTime start, LocalDateTime end) {
+        return MsisdnConverter.isValid(msisdn)
+                ? streamSubscriberCalls(MsisdnConverter.toKey(msisdn), start, end)
+                : Stream.empty();
+    }
 
     /**
-     * Находит все CDR записи в заданном временном диапазоне.
+     * Проверяет, есть ли у абонента звонки в заданном временном диапазоне (в любом направлении).
+     * Читает не более одной строки каждого составного индекса в каждой секции диапазона.
      *
-     * @param start Начальная дата диапазона.
-     * @param end   Конечная дата диапазона.
-     * @return Список CDR записей.
+     * @param msisdn Номер абонента.
+     * @param start  Начальная дата диапазона.
+     * @param end    Конечная дата диапазона.
+     * @return true, если найден хотя бы один звонок.
+     */
+    default boolean existsSubscriberCalls(String msisdn, LocalDateTime start, LocalDateTime end) {
+        return MsisdnConverter.isValid(msisdn) && existsSubscriberCalls(MsisdnConverter.toKey(msisdn), start, end);
+    }
+
+    /**
+     * Суммирует длительность звонков указанного абонента по типам звонка в заданном временном диапазоне.
+     * Учитываются звонки, где абонент был как инициатором, так и получателем; тип звонка берётся из записи.
+     * Диапазон полуоткрытый, чтобы соседние диапазоны и месяцы сводной таблицы не пересекались.
+     *
+     * @param msisdn Номер абонента.
+     * @param start  Начало диапазона (включительно).
+     * @param end    Конец диапазона (не включительно).
+     * @return По одной строке на каждый встретившийся тип звонка; пустой список, если звонков нет.
      */
-    List<CDR> findByCallStartTimeBetween(LocalDateTime start, LocalDateTime end);
-}
\ No newline at end of file
+    default List<CallTypeTotal> sumSubscriberCallDurations(String msisdn, LocalDateTime start, LocalDateTime end) {
+        return MsisdnConverter.isValid(msisdn)
+                ? sumSubscriberCallDurations(MsisdnConverter.toKey(msisdn), start, end)
+                : List.of();
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CallTypeConverter;
+import com.example.roaming_cdr_service.model.MsisdnConverter;
+import com.example.roaming_cdr_service.model.UDRRollup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import java.sql.PreparedStatement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Однопроходный параллельный подсчёт UDR всех абонентов за месяц по таблице {@code cdr}.
+ * <p>
+ * Звонки месяца читаются одним курсором из секции месяца ({@link CDRPartitions}) целиком, без условия
+ * на время, и затем из секции по умолчанию по индексу времени начала. Читающий поток только переводит числовые ключи номеров
+ * ({@link MsisdnConverter}) в индексы абонентов
+ * и складывает строки в примитивные блоки по {@code chunkSize} строк; блоки суммируются в пуле потоков
+ * в примитивные счётчики по абонентам. Каждый звонок учитывается сразу у инициатора и у получателя,
+ * промежуточных списков записей не создаётся. У каждого потока свой набор счётчиков, они складываются
+ * один раз в конце, поэтому память зависит от числа абонентов, а не от числа звонков.
+ * </p>
+ * <p>
+ * Время подсчёта записывается в метрику {@code cdr.udr.aggregation} ({@code source=table}) по этапам: {@code phase=fetch} —
+ * чтение курсора без ожидания свободного блока, {@code phase=compute} — суммарное время суммирования
+ * блоков во всех потоках и слияния счётчиков.
+ * </p>
+ */
+@Repository
+public class UDRAggregator {
+
+    private static final int DEFAULT_CHUNK_SIZE = 16_384;
+    private static final byte OUTGOING_CALL_CODE = CallTypeConverter.toCode("01");
+    private static final byte INCOMING_CALL_CODE = CallTypeConverter.toCode("02");
+    private static final byte OUTGOING = 1;
+    private static final byte INCOMING = 2;
+    private static final byte OTHER = 0;
+    private static final int FETCH_SIZE = 10_000;
+
+    private static final String SELECT_PARTITION_SQL =
+            "SELECT msisdn, other_msisdn, call_type, DATEDIFF(SECOND, call_start_time, call_end_time) FROM %s";
+    private static final String SELECT_MONTH_SQL =
+            "SELECT msisdn, other_msisdn, call_type, DATEDIFF(SECOND, call_start_time, call_end_time) "
+                    + "FROM cdr WHERE call_start_time >= ? AND call_start_time < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CDRPartitions partitions;
+    private final int parallelism;
+    private final int chunkSize;
+    private final Timer fetchTimer;
+    private final Timer computeTimer;
+
+    @Autowired
+    public UDRAggregator(JdbcTemplate jdbcTemplate, CDRPartitions partitions, MeterRegistry meterRegistry,
+                         @Value("${cdr.udr.aggregation.parallelism:0}") int parallelism) {
+        this(jdbcTemplate, partitions, meterRegistry, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    UDRAggregator(JdbcTemplate jdbcTemplate, CDRPartitions partitions, MeterRegistry meterRegistry,
+                  int parallelism, int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitions = partitions;
+        this.fetchTimer = aggregationTimer(meterRegistry, "fetch");
+        this.computeTimer = aggregationTimer(meterRegistry, "compute");
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Подсчитывает UDR всех абонентов, участвовавших в звонках за месяц.
+     *
+     * @param month Месяц (по времени начала звонка).
+     * @return Сводные записи месяца, по одной на абонента, в порядке первого появления абонента.
+     */
+    public List<UDRRollup> aggregate(YearMonth month) {
+        Map<Long, Integer> indexes = new HashMap<>();
+        List<String> msisdns = new ArrayList<>();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        BlockingQueue<Totals> accumulators = new ArrayBlockingQueue<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            accumulators.add(new Totals());
+        }
+        // Ограничивает число прочитанных, но ещё не просуммированных блоков
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        LongAdder blockedNanos = new LongAdder();
+        LongAdder computeNanos = new LongAdder();
+        long fetchStarted = System.nanoTime();
+
+        try {
+            Chunk[] current = {new Chunk(chunkSize)};
+            RowCallbackHandler handler = rs -> {
+                Chunk chunk = current[0];
+                chunk.add(index(rs.getLong(1), indexes, msisdns), index(rs.getLong(2), indexes, msisdns),
+                        callType(rs.getByte(3)), rs.getLong(4));
+                if (chunk.size == chunkSize) {
+                    tasks.add(submit(pool, chunk, accumulators, inFlight, blockedNanos, computeNanos));
+                    current[0] = new Chunk(chunkSize);
+                }
+            };
+            partitions.find(month).ifPresent(table -> jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(String.format(SELECT_PARTITION_SQL, table));
+                ps.setFetchSize(FETCH_SIZE);
+                return ps;
+            }, handler));
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(SELECT_MONTH_SQL);
+                ps.setFetchSize(FETCH_SIZE);
+                ps.setObject(1, month.atDay(1).atStartOfDay());
+                ps.setObject(2, month.plusMonths(1).atDay(1).atStartOfDay());
+                return ps;
+            }, handler);
+            if (current[0].size > 0) {
+                tasks.add(submit(pool, current[0], accumulators, inFlight, blockedNanos, computeNanos));
+            }
+            fetchTimer.record(System.nanoTime() - fetchStarted - blockedNanos.sum(), TimeUnit.NANOSECONDS);
+            tasks.forEach(ForkJoinTask::join);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long mergeStarted = System.nanoTime();
+        Totals total = new Totals();
+        total.ensureCapacity(msisdns.size());
+        accumulators.forEach(total::merge);
+        List<UDRRollup> rollups = total.toRollups(month, msisdns);
+        computeTimer.record(computeNanos.sum() + System.nanoTime() - mergeStarted, TimeUnit.NANOSECONDS);
+        return rollups;
+    }
+
+    private static Timer aggregationTimer(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("cdr.udr.aggregation")
+                .description("Время подсчёта UDR всех абонентов за месяц по этапам")
+                .tag("source", "table")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static ForkJoinTask<?> submit(ForkJoinPool pool, Chunk chunk, BlockingQueue<Totals> accumulators,
+                                          Semaphore inFlight, LongAdder blockedNanos, LongAdder computeNanos) {
+        long waitStarted = System.nanoTime();
+        inFlight.acquireUninterruptibly();
+        blockedNanos.add(System.nanoTime() - waitStarted);
+        return pool.submit(() -> {
+            try {
+                Totals totals = accumulators.take();
+                long started = System.nanoTime();
+                try {
+                    totals.accumulate(chunk);
+                } finally {
+                    computeNanos.add(System.nanoTime() - started);
+                    accumulators.add(totals);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static int index(long key, Map<Long, Integer> indexes, List<String> msisdns) {
+        Integer index = indexes.get(key);
+        if (index == null) {
+            index = msisdns.size();
+            indexes.put(key, index);
+            msisdns.add(MsisdnConverter.toMsisdn(key));
+        }
+        return index;
+    }
+
+    private static byte callType(byte code) {
+        if (code == OUTGOING_CALL_CODE) {
+            return OUTGOING;
+        }
+        return code == INCOMING_CALL_CODE ? INCOMING : OTHER;
+    }
+
+    /**
+     * Блок прочитанных звонков в виде параллельных примитивных массивов.
+     */
+    private static final class Chunk {
+        private final int[] callers;
+        private final int[] receivers;
+        private final byte[] types;
+        private final long[] seconds;
+        private int size;
+        private int maxIndex;
+
+        private Chunk(int capacity) {
+            callers = new int[capacity];
+            receivers = new int[capacity];
+            types = new byte[capacity];
+            seconds = new long[capacity];
+        }
+
+        private void add(int caller, int receiver, byte type, long duration) {
+            callers[size] = caller;
+            receivers[size] = receiver;
+            types[size] = type;
+            seconds[size] = duration;
+            size++;
+            maxIndex = Math.max(maxIndex, Math.max(caller, receiver));
+        }
+    }
+
+    /**
+     * Примитивные счётчики по индексам абонентов.
+     */
+    private static final class Totals {
+        private long[] incomingSeconds = new long[0];
+        private long[] outgoingSeconds = new long[0];
+        private long[] incomingCalls = new long[0];
+        private long[] outgoingCalls = new long[0];
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > incomingSeconds.length) {
+                int length = Math.max(capacity, incomingSeconds.length * 2);
+                incomingSeconds = Arrays.copyOf(incomingSeconds, length);
+                outgoingSeconds = Arrays.copyOf(outgoingSeconds, length);
+                incomingCalls = Arrays.copyOf(incomingCalls, length);
+                outgoingCalls = Arrays.copyOf(outgoingCalls, length);
+            }
+        }
+
+        private void accumulate(Chunk chunk) {
+            ensureCapacity(chunk.maxIndex + 1);
+            for (int i = 0; i < chunk.size; i++) {
+                long duration = chunk.seconds[i];
+                if (chunk.types[i] == INCOMING) {
+                    incomingSeconds[chunk.callers[i]] += duration;
+                    incomingCalls[chunk.callers[i]]++;
+                    incomingSeconds[chunk.receivers[i]] += duration;
+                    incomingCalls[chunk.receivers[i]]++;
+                } else if (chunk.types[i] == OUTGOING) {
+                    outgoingSeconds[chunk.callers[i]] += duration;
+                    outgoingCalls[chunk.callers[i]]++;
+                    outgoingSeconds[chunk.receivers[i]] += duration;
+                    outgoingCalls[chunk.receivers[i]]++;
+                }
+            }
+        }
+
+        private void merge(Totals other) {
+            int length = Math.min(incomingSeconds.length, other.incomingSeconds.length);
+            for (int i = 0; i < length; i++) {
+                incomingSeconds[i] += other.incomingSeconds[i];
+                outgoingSeconds[i] += other.outgoingSeconds[i];
+                incomingCalls[i] += other.incomingCalls[i];
+                outgoingCalls[i] += other.outgoingCalls[i];
+            }
+        }
+
+        private List<UDRRollup> toRollups(YearMonth month, List<String> msisdns) {
+            List<UDRRollup> rollups = new ArrayList<>(msisdns.size());
+            for (int i = 0; i < msisdns.size(); i++) {
+                rollups.add(UDRRollup.builder()
+                        .msisdn(msisdns.get(i))
+                        .monthStart(month.atDay(1))
+                        .incomingSeconds(incomingSeconds[i])
+                        .outgoingSeconds(outgoingSeconds[i])
+                        .incomingCalls(incomingCalls[i])
+                        .outgoingCalls(outgoingCalls[i])
+                        .build());
+            }
+            return rollups;
+        }
+    }
+}
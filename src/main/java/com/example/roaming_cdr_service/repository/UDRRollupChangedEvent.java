@@ -0,0 +1,46 @@
+package com.example.roaming_cdr_service.repository;
+
+import java.time.YearMonth;
+import java.util.Set;
+
+/**
+ * Событие об изменении сводной таблицы UDR.
+ * Публикуется {@link UDRRollupWriter} внутри транзакции записи; слушатели получают его после фиксации.
+ */
+public class UDRRollupChangedEvent {
+
+    private final Set<YearMonth> months;
+
+    private UDRRollupChangedEvent(Set<YearMonth> months) {
+        this.months = months;
+    }
+
+    /**
+     * @param months Месяцы, в которые были записаны звонки.
+     * @return Событие об изменении указанных месяцев.
+     */
+    public static UDRRollupChangedEvent forMonths(Set<YearMonth> months) {
+        return new UDRRollupChangedEvent(Set.copyOf(months));
+    }
+
+    /**
+     * @return Событие о пересчёте всей сводной таблицы.
+     */
+    public static UDRRollupChangedEvent forAllMonths() {
+        return new UDRRollupChangedEvent(null);
+    }
+
+    /**
+     * @return true, если изменились все месяцы (сводная таблица пересчитана целиком).
+     */
+    public boolean isAllMonths() {
+        return months == null;
+    }
+
+    /**
+     * @return Изменившиеся месяцы; пустое множество, если изменились все месяцы.
+     */
+    public Set<YearMonth> getMonths() {
+        return months == null ? Set.of() : months;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.UDRRollup;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий для чтения сводных записей UDR по месяцам.
+ * Записи обновляются через {@link UDRRollupWriter}.
+ */
+@Repository
+public interface UDRRollupRepository extends JpaRepository<UDRRollup, UDRRollup.Key> {
+
+    /**
+     * Находит сводные записи всех абонентов за указанный месяц.
+     *
+     * @param monthStart Первый день месяца.
+     * @return Список сводных записей, упорядоченный по номеру абонента.
+     */
+    List<UDRRollup> findByMonthStartOrderByMsisdn(LocalDate monthStart);
+
+    /**
+     * Находит сводные записи абонента за диапазон месяцев.
+     *
+     * @param msisdn Номер абонента.
+     * @param from   Первый день первого месяца (включительно).
+     * @param to     Первый день последнего месяца (включительно).
+     * @return Список сводных записей, по одной на месяц, в котором у абонента были звонки.
+     */
+    List<UDRRollup> findByMsisdnAndMonthStartBetween(String msisdn, LocalDate from, LocalDate to);
+
+    /**
+     * Читает сводные записи всех абонентов за месяц курсором, не загружая их в память целиком.
+     * Поток нужно потреблять и закрывать внутри транзакции.
+     *
+     * @param monthStart Первый день месяца.
+     * @return Поток сводных записей, упорядоченный по номеру абонента.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r FROM UDRRollup r WHERE r.monthStart = :monthStart ORDER BY r.msisdn")
+    Stream<UDRRollup> streamByMonthStart(LocalDate monthStart);
+}
@@ -0,0 +1,186 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.UDRRollup;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Поддержка сводной таблицы {@code udr_rollup} через JDBC.
+ * <p>
+ * Звонок учитывается у обоих участников — инициатора и получателя — по типу звонка из записи,
+ * в месяце, на который приходится время начала звонка. Это совпадает с тем, как
+ * {@link CDRRepository#sumSubscriberCallDurations} считает UDR абонента.
+ * </p>
+ */
+@Slf4j
+@Repository
+public class UDRRollupWriter {
+
+    private static final String OUTGOING_CALL_TYPE = "01";
+    private static final String INCOMING_CALL_TYPE = "02";
+
+    private static final String MERGE_SQL =
+            "MERGE INTO udr_rollup r USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS DATE), "
+                    + "CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT))) "
+                    + "s (msisdn, month_start, incoming_seconds, outgoing_seconds, incoming_calls, outgoing_calls) "
+                    + "ON r.msisdn = s.msisdn AND r.month_start = s.month_start "
+                    + "WHEN MATCHED THEN UPDATE SET incoming_seconds = r.incoming_seconds + s.incoming_seconds, "
+                    + "outgoing_seconds = r.outgoing_seconds + s.outgoing_seconds, "
+                    + "incoming_calls = r.incoming_calls + s.incoming_calls, "
+                    + "outgoing_calls = r.outgoing_calls + s.outgoing_calls "
+                    + "WHEN NOT MATCHED THEN INSERT (msisdn, month_start, incoming_seconds, outgoing_seconds, "
+                    + "incoming_calls, outgoing_calls) VALUES (s.msisdn, s.month_start, s.incoming_seconds, "
+                    + "s.outgoing_seconds, s.incoming_calls, s.outgoing_calls)";
+
+    private static final String DELETE_ALL_SQL = "DELETE FROM udr_rollup";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO udr_rollup (msisdn, month_start, incoming_seconds, outgoing_seconds, incoming_calls, outgoing_calls) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_PERIOD_SQL = "SELECT MIN(call_start_time), MAX(call_start_time) FROM cdr";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UDRAggregator aggregator;
+    private final CDRArchive archive;
+    private final CDRPartitions partitions;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UDRRollupWriter(JdbcTemplate jdbcTemplate, UDRAggregator aggregator, CDRArchive archive,
+                           CDRPartitions partitions, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.aggregator = aggregator;
+        this.archive = archive;
+        this.partitions = partitions;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Добавляет звонки к сводной таблице.
+     * Вызывается в транзакции записи самих CDR, поэтому сводка и звонки фиксируются вместе.
+     * Публикует {@link UDRRollupChangedEvent} с затронутыми месяцами.
+     *
+     * @param cdrs Записанные CDR записи.
+     */
+    public void addAll(List<CDR> cdrs) {
+        if (cdrs.isEmpty()) {
+            return;
+        }
+        Map<UDRRollup.Key, UDRRollup> rollups = new HashMap<>();
+        Set<YearMonth> months = new HashSet<>();
+        for (CDR cdr : cdrs) {
+            LocalDate monthStart = cdr.getCallStartTime().toLocalDate().withDayOfMonth(1);
+            long seconds = Duration.between(cdr.getCallStartTime(), cdr.getCallEndTime()).getSeconds();
+            credit(rollups, cdr.getMsisdn(), monthStart, cdr.getCallType(), seconds);
+            credit(rollups, cdr.getOtherMsisdn(), monthStart, cdr.getCallType(), seconds);
+            months.add(YearMonth.from(monthStart));
+        }
+
+        List<Object[]> rows = new ArrayList<>(rollups.size());
+        for (UDRRollup rollup : rollups.values()) {
+            rows.add(new Object[]{rollup.getMsisdn(), rollup.getMonthStart(), rollup.getIncomingSeconds(),
+                    rollup.getOutgoingSeconds(), rollup.getIncomingCalls(), rollup.getOutgoingCalls()});
+        }
+        jdbcTemplate.batchUpdate(MERGE_SQL, rows);
+        eventPublisher.publishEvent(UDRRollupChangedEvent.forMonths(months));
+    }
+
+    /**
+     * Полностью пересчитывает сводную таблицу по секциям таблицы {@code cdr} и архиву.
+     * Используется для заполнения сводки по данным, записанным до её появления.
+     * Каждый месяц считается за один параллельный проход {@link UDRAggregator}, архивные месяцы —
+     * за один проход по колонкам файла архива.
+     * Публикует {@link UDRRollupChangedEvent} обо всех месяцах.
+     *
+     * @return Число строк сводной таблицы после пересчёта.
+     */
+    @Transactional
+    public int rebuild() {
+        jdbcTemplate.update(DELETE_ALL_SQL);
+
+        int rows = 0;
+        List<LocalDateTime[]> period = jdbcTemplate.query(SELECT_PERIOD_SQL, (rs, rowNum) -> new LocalDateTime[]{
+                rs.getObject(1, LocalDateTime.class), rs.getObject(2, LocalDateTime.class)});
+        YearMonth first = period.get(0)[0] != null ? YearMonth.from(period.get(0)[0]) : null;
+        YearMonth last = period.get(0)[1] != null ? YearMonth.from(period.get(0)[1]) : null;
+        List<YearMonth> months = new ArrayList<>(partitions.months());
+        archive.findAll().forEach(archivedMonth -> months.add(YearMonth.from(archivedMonth.getMonthStart())));
+        for (YearMonth month : months) {
+            first = first == null || month.isBefore(first) ? month : first;
+            last = last == null || month.isAfter(last) ? month : last;
+        }
+        if (first != null) {
+            for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                rows += insert(aggregate(month));
+            }
+        }
+
+        eventPublisher.publishEvent(UDRRollupChangedEvent.forAllMonths());
+        log.info("Сводная таблица UDR пересчитана: {} строк", rows);
+        return rows;
+    }
+
+    /**
+     * Подсчитывает сводные записи месяца по таблице {@code cdr} и, если месяц в архиве, по файлу архива.
+     */
+    private List<UDRRollup> aggregate(YearMonth month) {
+        List<UDRRollup> rollups = aggregator.aggregate(month);
+        Optional<CDRArchiveFile> archived = archive.find(month);
+        if (archived.isEmpty()) {
+            return rollups;
+        }
+        Map<String, UDRRollup> merged = new LinkedHashMap<>();
+        for (UDRRollup rollup : archived.get().aggregate()) {
+            merged.put(rollup.getMsisdn(), rollup);
+        }
+        for (UDRRollup rollup : rollups) {
+            merged.merge(rollup.getMsisdn(), rollup, (a, b) -> {
+                a.setIncomingSeconds(a.getIncomingSeconds() + b.getIncomingSeconds());
+                a.setOutgoingSeconds(a.getOutgoingSeconds() + b.getOutgoingSeconds());
+                a.setIncomingCalls(a.getIncomingCalls() + b.getIncomingCalls());
+                a.setOutgoingCalls(a.getOutgoingCalls() + b.getOutgoingCalls());
+                return a;
+            });
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private int insert(List<UDRRollup> rollups) {
+        List<Object[]> rows = new ArrayList<>(rollups.size());
+        for (UDRRollup rollup : rollups) {
+            rows.add(new Object[]{rollup.getMsisdn(), rollup.getMonthStart(), rollup.getIncomingSeconds(),
+                    rollup.getOutgoingSeconds(), rollup.getIncomingCalls(), rollup.getOutgoingCalls()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        return rows.size();
+    }
+
+    private static void credit(Map<UDRRollup.Key, UDRRollup> rollups, String msisdn, LocalDate monthStart,
+                               String callType, long seconds) {
+        UDRRollup rollup = rollups.computeIfAbsent(new UDRRollup.Key(msisdn, monthStart),
+                key -> UDRRollup.builder().msisdn(msisdn).monthStart(monthStart).build());
+        if (INCOMING_CALL_TYPE.equals(callType)) {
+            rollup.setIncomingSeconds(rollup.getIncomingSeconds() + seconds);
+            rollup.setIncomingCalls(rollup.getIncomingCalls() + 1);
+        } else if (OUTGOING_CALL_TYPE.equals(callType)) {
+            rollup.setOutgoingSeconds(rollup.getOutgoingSeconds() + seconds);
+            rollup.setOutgoingCalls(rollup.getOutgoingCalls() + 1);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.roaming_cdr_service.service;
+
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.model.ArchivedMonth;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Интерфейс сервиса архивации CDR: перенос закрытых месяцев из таблицы {@code cdr} в колоночные файлы.
+ * Звонки архивных месяцев остаются доступны CDR-отчётам и UDR.
+ */
+public interface CDRArchiveService {
+
+    /**
+     * Переносит звонки закрытого месяца в архив и удаляет их из таблицы {@code cdr}.
+     *
+     * @param month Месяц (по времени начала звонка).
+     * @return Запись каталога архива.
+     * @throws IllegalArgumentException                    если месяц ещё не закончился.
+     * @throws ConflictException                           если идёт генерация CDR или месяц уже в архиве.
+     * @throws jakarta.persistence.EntityNotFoundException если за месяц нет звонков.
+     */
+    ArchivedMonth archiveMonth(YearMonth month);
+
+    /**
+     * @return Архивные месяцы в хронологическом порядке.
+     */
+    List<ArchivedMonth> getArchivedMonths();
+}
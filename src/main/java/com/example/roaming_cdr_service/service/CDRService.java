@@ -3,10 +3,11 @@ package com.example.roaming_cdr_service.service;
 import com.example.roaming_cdr_service.model.CDR;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс сервиса для работы с CDR (Call Data Record) записями.
- * Предоставляет метод для получения CDR-записей абонента за определённый период.
+ * Предоставляет методы для получения CDR-записей абонента за определённый период.
  */
 public interface CDRService {
 
@@ -19,4 +20,35 @@ public interface CDRService {
      * @return Список CDR-записей, соответствующих указанному абоненту и временному интервалу.
      */
     List<CDR> getCDRsForSubscriber(String msisdn, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Передаёт CDR-записи абонента за заданный временной диапазон по одной, по мере чтения из базы.
+     * В отличие от {@link #getCDRsForSubscriber(String, LocalDateTime, LocalDateTime)} не собирает
+     * записи в памяти, поэтому потребление памяти не зависит от числа звонков.
+     *
+     * @param msisdn Номер абонента в формате строки (MSISDN).
+     * @param start  Дата и время начала периода выборки.
+     * @param end    Дата и время окончания периода выборки.
+     * @param sink   Получатель записей в порядке времени начала звонка.
+     */
+    void streamCDRsForSubscriber(String msisdn, LocalDateTime start, LocalDateTime end, Consumer<CDR> sink);
+
+    /**
+     * Передаёт все CDR-записи за заданный временной диапазон по одной в порядке времени начала звонка.
+     *
+     * @param start Дата и время начала периода выборки.
+     * @param end   Дата и время окончания периода выборки.
+     * @param sink  Получатель записей.
+     */
+    void streamCDRs(LocalDateTime start, LocalDateTime end, Consumer<CDR> sink);
+
+    /**
+     * Проверяет, есть ли у абонента CDR-записи за заданный временной диапазон.
+     *
+     * @param msisdn Номер абонента в формате строки (MSISDN).
+     * @param start  Дата и время начала периода выборки.
+     * @param end    Дата и время окончания периода выборки.
+     * @return true, если найдена хотя бы одна запись.
+     */
+    boolean hasCDRsForSubscriber(String msisdn, LocalDateTime start, LocalDateTime end);
 }
@@ -0,0 +1,18 @@
+package com.example.roaming_cdr_service.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Слушатель хода генерации CDR записей.
+ */
+@FunctionalInterface
+public interface GenerationListener {
+
+    /**
+     * Вызывается после сохранения очередного пакета CDR записей.
+     *
+     * @param records       Число записей в сохранённом пакете.
+     * @param simulatedTime Время начала последнего звонка пакета (до какого момента дошла генерация).
+     */
+    void onBatchSaved(int records, LocalDateTime simulatedTime);
+}
@@ -0,0 +1,62 @@
+package com.example.roaming_cdr_service.service;
+
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.model.UDR;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Интерфейс сервиса для построения UDR (Usage Data Report) отчётов.
+ * Звонок учитывается у обоих участников — инициатора и получателя — по типу звонка из записи.
+ */
+public interface UDRService {
+
+    /**
+     * Строит UDR отчёт для указанного абонента за календарный месяц по сводной таблице.
+     *
+     * @param msisdn Номер абонента.
+     * @param month  Месяц.
+     * @return UDR отчёт абонента.
+     * @throws jakarta.persistence.EntityNotFoundException если за месяц нет ни одного звонка абонента.
+     */
+    UDR getUDR(String msisdn, YearMonth month);
+
+    /**
+     * Строит UDR отчёт для указанного абонента за произвольный временной диапазон.
+     * Полные месяцы диапазона берутся из сводной таблицы, неполные месяцы на краях — из CDR записей.
+     *
+     * @param msisdn Номер абонента.
+     * @param start  Дата и время начала периода (включительно).
+     * @param end    Дата и время окончания периода (не включительно).
+     * @return UDR отчёт абонента.
+     * @throws jakarta.persistence.EntityNotFoundException если за период нет ни одного звонка абонента.
+     */
+    UDR getUDR(String msisdn, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Строит UDR отчёты для всех абонентов, участвовавших в звонках за календарный месяц, по сводной таблице.
+     *
+     * @param month Месяц.
+     * @return Map, где ключ — номер абонента, значение — UDR отчёт.
+     */
+    Map<String, UDR> getAllUDRs(YearMonth month);
+
+    /**
+     * Передаёт UDR всех абонентов за календарный месяц по одному, по мере чтения сводной таблицы.
+     * В отличие от {@link #getAllUDRs(YearMonth)} не собирает результат в памяти и не использует кэш.
+     *
+     * @param month Месяц.
+     * @param sink  Получатель UDR отчётов в порядке номеров абонентов.
+     */
+    void streamAllUDRs(YearMonth month, Consumer<UDR> sink);
+
+    /**
+     * Пересчитывает сводную таблицу UDR по всем CDR записям.
+     *
+     * @return Число строк сводной таблицы.
+     * @throws ConflictException если в это время идёт генерация CDR.
+     */
+    int rebuildRollup();
+}
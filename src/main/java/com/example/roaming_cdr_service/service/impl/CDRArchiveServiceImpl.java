@@ -0,0 +1,46 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.model.ArchivedMonth;
+import com.example.roaming_cdr_service.repository.CDRArchive;
+import com.example.roaming_cdr_service.service.CDRArchiveService;
+import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Сервис архивации CDR.
+ * Месяц переносится в архив, только когда он закончился и генерация CDR не идёт, поэтому
+ * в архивный месяц больше не записываются звонки.
+ */
+@Service
+public class CDRArchiveServiceImpl implements CDRArchiveService {
+
+    private static final String ERROR_MONTH_NOT_CLOSED = "Месяц %s ещё не закончился, перенос в архив невозможен.";
+    private static final String ERROR_GENERATION_RUNNING = "Генерация CDR ещё не завершена, перенос месяца в архив невозможен.";
+
+    private final CDRArchive cdrArchive;
+    private final CDRGenerationJob generationJob;
+
+    public CDRArchiveServiceImpl(CDRArchive cdrArchive, CDRGenerationJob generationJob) {
+        this.cdrArchive = cdrArchive;
+        this.generationJob = generationJob;
+    }
+
+    @Override
+    public ArchivedMonth archiveMonth(YearMonth month) {
+        if (month.plusMonths(1).atDay(1).atStartOfDay().isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException(String.format(ERROR_MONTH_NOT_CLOSED, month));
+        }
+        if (generationJob.isRunning()) {
+            throw new ConflictException(ERROR_GENERATION_RUNNING);
+        }
+        return cdrArchive.archive(month);
+    }
+
+    @Override
+    public List<ArchivedMonth> getArchivedMonths() {
+        return cdrArchive.findAll();
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.CDR;
+import org.apache.commons.csv.CSVFormat;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Запись строк CDR-отчёта в CSV файл без {@link org.apache.commons.csv.CSVPrinter} и форматирования дат на каждую строку.
+ * <p>
+ * Строка {@code callType,msisdn,otherMsisdn,callStartTime,callEndTime} кодируется сразу в байты ASCII
+ * в переиспользуемом буфере, который сбрасывается в {@link FileChannel} по мере заполнения.
+ * Дата ({@code yyyy-MM-dd'T'}) форматируется только при смене суток, время собирается из цифр.
+ * </p>
+ * <p>
+ * Вывод совпадает с выводом {@code CSVPrinter} с {@link CSVFormat#DEFAULT}: значения из букв, цифр
+ * и символов {@code + - . : _} пишутся как есть, а строки с любыми другими значениями (пустыми, с
+ * разделителями, кавычками и т. п.) форматируются через {@link CSVFormat#DEFAULT}, чтобы правила
+ * экранирования не расходились.
+ * </p>
+ */
+class CDRCsvWriter implements Closeable {
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'");
+    private static final int MAX_TIMESTAMP_LENGTH = 32;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private LocalDate cachedDate;
+    private byte[] cachedDateBytes;
+
+    /**
+     * Открывает файл отчёта на запись.
+     *
+     * @param file       Файл отчёта.
+     * @param append     Дописывать в конец файла; иначе содержимое файла перезаписывается.
+     * @param bufferSize Размер буфера записи в байтах.
+     */
+    CDRCsvWriter(Path file, boolean append, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Дописывает строку отчёта.
+     */
+    void write(CDR cdr) throws IOException {
+        String callType = cdr.getCallType();
+        String msisdn = cdr.getMsisdn();
+        String otherMsisdn = cdr.getOtherMsisdn();
+        int maxLength = length(callType) + length(msisdn) + length(otherMsisdn)
+                + 2 * MAX_TIMESTAMP_LENGTH + 4 + CRLF.length;
+        if (maxLength > buffer.capacity()) {
+            writeFormatted(cdr);
+            return;
+        }
+        if (buffer.remaining() < maxLength) {
+            flushBuffer();
+        }
+
+        int start = buffer.position();
+        boolean encoded = putValue(callType) && putComma()
+                && putValue(msisdn) && putComma()
+                && putValue(otherMsisdn) && putComma()
+                && putTimestamp(cdr.getCallStartTime()) && putComma()
+                && putTimestamp(cdr.getCallEndTime());
+        if (!encoded) {
+            buffer.position(start);
+            writeFormatted(cdr);
+            return;
+        }
+        buffer.put(CRLF);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Пишет значение как есть, если {@code CSVFormat.DEFAULT} не стал бы его экранировать.
+     *
+     * @return false, если значение требует экранирования; буфер при этом может содержать часть значения.
+     */
+    private boolean putValue(String value) {
+        if (value == null || value.isEmpty() || !Character.isLetterOrDigit(value.charAt(0))) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!isPlain(c)) {
+                return false;
+            }
+            buffer.put((byte) c);
+        }
+        return true;
+    }
+
+    private boolean putTimestamp(LocalDateTime time) {
+        LocalDate date = time.toLocalDate();
+        if (!date.equals(cachedDate)) {
+            cachedDateBytes = DATE_FORMATTER.format(date).getBytes(StandardCharsets.US_ASCII);
+            cachedDate = date;
+        }
+        // Годы вне 0000–9999 форматируются со знаком, такие строки проходят через CSVFormat
+        if (cachedDateBytes[0] < '0' || cachedDateBytes[0] > '9') {
+            return false;
+        }
+        buffer.put(cachedDateBytes);
+        putTwoDigits(time.getHour());
+        buffer.put((byte) ':');
+        putTwoDigits(time.getMinute());
+        buffer.put((byte) ':');
+        putTwoDigits(time.getSecond());
+        return true;
+    }
+
+    private boolean putComma() {
+        buffer.put((byte) ',');
+        return true;
+    }
+
+    private void putTwoDigits(int value) {
+        buffer.put((byte) ('0' + value / 10)).put((byte) ('0' + value % 10));
+    }
+
+    private void writeFormatted(CDR cdr) throws IOException {
+        String record = CSVFormat.DEFAULT.format(
+                cdr.getCallType(),
+                cdr.getMsisdn(),
+                cdr.getOtherMsisdn(),
+                cdr.getCallStartTime().format(DATE_TIME_FORMATTER),
+                cdr.getCallEndTime().format(DATE_TIME_FORMATTER)) + CSVFormat.DEFAULT.getRecordSeparator();
+        ByteBuffer bytes = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int length = Math.min(bytes.remaining(), buffer.remaining());
+            buffer.put(bytes.array(), bytes.position(), length);
+            bytes.position(bytes.position() + length);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static boolean isPlain(char c) {
+        return c >= '0' && c <= '9' || c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z'
+                || c == '+' || c == '-' || c == '.' || c == ':' || c == '_';
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
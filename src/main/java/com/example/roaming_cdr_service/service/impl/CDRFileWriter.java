@@ -0,0 +1,184 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая запись сгенерированных звонков в файл через буферизованный {@link FileChannel}.
+ * <p>
+ * Поддерживаются два формата:
+ * <ul>
+ *   <li>{@link Format#CSV} — строки {@code callType,msisdn,otherMsisdn,callStartTime,callEndTime}
+ *   в том же виде, что и CDR-отчёт ({@code yyyy-MM-dd'T'HH:mm:ss}, разделитель строк {@code \r\n});</li>
+ *   <li>{@link Format#BINARY} — заголовок {@value #BINARY_MAGIC} и записи по {@value #BINARY_RECORD_SIZE} байт
+ *   (big-endian): номер абонента ({@code long}), номер второго абонента ({@code long}),
+ *   начало звонка в секундах эпохи UTC ({@code long}), длительность в секундах ({@code int}), тип звонка ({@code byte}).</li>
+ * </ul>
+ * Записи кодируются прямо в байтовый буфер, поэтому потребление памяти не зависит от объёма файла.
+ * </p>
+ */
+public class CDRFileWriter implements Consumer<GeneratedCalls>, Closeable {
+
+    /**
+     * Формат выходного файла.
+     */
+    public enum Format {
+        CSV, BINARY
+    }
+
+    /**
+     * Сигнатура двоичного файла ("CDR1").
+     */
+    public static final int BINARY_MAGIC = 0x43445231;
+
+    /**
+     * Размер одной записи двоичного файла в байтах.
+     */
+    public static final int BINARY_RECORD_SIZE = 8 + 8 + 8 + 4 + 1;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int TIMESTAMP_LENGTH = 19; // yyyy-MM-ddTHH:mm:ss
+    private static final int SECONDS_IN_DAY = 86_400;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Format format;
+    private final byte[][] msisdnBytes;
+    private final long[] msisdnNumbers;
+    private final int maxRecordSize;
+
+    private long cachedDay = Long.MIN_VALUE;
+    private final byte[] cachedDate = new byte[11]; // yyyy-MM-ddT
+    private long recordsWritten;
+
+    /**
+     * Открывает файл на запись, перезаписывая его содержимое.
+     *
+     * @param path    Путь к выходному файлу.
+     * @param format  Формат файла.
+     * @param msisdns Номера абонентов в порядке индексов генератора.
+     */
+    public CDRFileWriter(Path path, Format format, List<String> msisdns) throws IOException {
+        this.format = format;
+
+        int maxMsisdnLength = 0;
+        this.msisdnBytes = new byte[msisdns.size()][];
+        this.msisdnNumbers = new long[msisdns.size()];
+        for (int i = 0; i < msisdns.size(); i++) {
+            msisdnBytes[i] = msisdns.get(i).getBytes(StandardCharsets.US_ASCII);
+            maxMsisdnLength = Math.max(maxMsisdnLength, msisdnBytes[i].length);
+            if (format == Format.BINARY) {
+                msisdnNumbers[i] = Long.parseLong(msisdns.get(i));
+            }
+        }
+        this.maxRecordSize = format == Format.BINARY
+                ? BINARY_RECORD_SIZE
+                : 2 + 2 * maxMsisdnLength + 2 * TIMESTAMP_LENGTH + 4 + CRLF.length;
+
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (format == Format.BINARY) {
+            buffer.putInt(BINARY_MAGIC);
+        }
+    }
+
+    /**
+     * Записывает звонки окна в буфер, сбрасывая его в файл по мере заполнения.
+     */
+    @Override
+    public void accept(GeneratedCalls calls) {
+        for (int i = 0; i < calls.size(); i++) {
+            if (buffer.remaining() < maxRecordSize) {
+                flushBuffer();
+            }
+            if (format == Format.BINARY) {
+                writeBinary(calls, i);
+            } else {
+                writeCsv(calls, i);
+            }
+        }
+        recordsWritten += calls.size();
+    }
+
+    /**
+     * @return Число записанных звонков.
+     */
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBinary(GeneratedCalls calls, int i) {
+        buffer.putLong(msisdnNumbers[calls.caller(i)]);
+        buffer.putLong(msisdnNumbers[calls.receiver(i)]);
+        buffer.putLong(calls.startSecond(i));
+        buffer.putInt((int) (calls.endSecond(i) - calls.startSecond(i)));
+        buffer.put(calls.callType(i));
+    }
+
+    private void writeCsv(GeneratedCalls calls, int i) {
+        buffer.put((byte) '0').put((byte) ('0' + calls.callType(i))).put((byte) ',');
+        buffer.put(msisdnBytes[calls.caller(i)]).put((byte) ',');
+        buffer.put(msisdnBytes[calls.receiver(i)]).put((byte) ',');
+        putTimestamp(calls.startSecond(i));
+        buffer.put((byte) ',');
+        putTimestamp(calls.endSecond(i));
+        buffer.put(CRLF);
+    }
+
+    /**
+     * Записывает время в формате {@code yyyy-MM-dd'T'HH:mm:ss}; дата пересчитывается только при смене суток.
+     */
+    private void putTimestamp(long epochSecond) {
+        long day = Math.floorDiv(epochSecond, SECONDS_IN_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_IN_DAY);
+        if (day != cachedDay) {
+            byte[] date = (LocalDate.ofEpochDay(day) + "T").getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(date, 0, cachedDate, 0, cachedDate.length);
+            cachedDay = day;
+        }
+        buffer.put(cachedDate);
+        putTwoDigits(secondOfDay / 3600);
+        buffer.put((byte) ':');
+        putTwoDigits(secondOfDay / 60 % 60);
+        buffer.put((byte) ':');
+        putTwoDigits(secondOfDay % 60);
+    }
+
+    private void putTwoDigits(int value) {
+        buffer.put((byte) ('0' + value / 10)).put((byte) ('0' + value % 10));
+    }
+
+    private void flushBuffer() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.GenerationStatus;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Индикатор готовности, входящий в группу {@code readiness}.
+ * Сообщает {@code UP} только после полного завершения генерации CDR записей,
+ * {@code OUT_OF_SERVICE} — пока генерация идёт, {@code DOWN} — если она завершилась ошибкой.
+ */
+@Component("cdrGenerationHealthIndicator")
+public class CDRGenerationHealthIndicator implements HealthIndicator {
+
+    private final CDRGenerationJob generationJob;
+
+    public CDRGenerationHealthIndicator(CDRGenerationJob generationJob) {
+        this.generationJob = generationJob;
+    }
+
+    @Override
+    public Health health() {
+        GenerationStatus status = generationJob.getStatus();
+        Health.Builder builder = switch (status.getState()) {
+            case COMPLETED -> Health.up();
+            case FAILED -> Health.down().withDetail("error", String.valueOf(status.getError()));
+            default -> Health.outOfService();
+        };
+        builder.withDetail("state", status.getState())
+                .withDetail("recordsWritten", status.getRecordsWritten());
+        if (status.getSimulatedTime() != null) {
+            builder.withDetail("simulatedTime", status.getSimulatedTime());
+        }
+        return builder.build();
+    }
+}
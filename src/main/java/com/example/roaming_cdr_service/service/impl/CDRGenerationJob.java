@@ -0,0 +1,129 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.GenerationStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import java.time.LocalDateTime;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновое задание генерации CDR записей.
+ * <p>
+ * Генерация выполняется в отдельном потоке, поэтому приложение начинает обслуживать HTTP сразу после старта.
+ * Ход генерации доступен через {@link #getStatus()}, а готовность приложения к обслуживанию
+ * запросов — через {@link CDRGenerationHealthIndicator}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class CDRGenerationJob {
+
+    private static final String THREAD_NAME = "cdr-generation";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final CDRServiceImpl cdrServiceImpl;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, THREAD_NAME));
+
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private volatile GenerationStatus.State state = GenerationStatus.State.PENDING;
+    private volatile LocalDateTime simulatedTime;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile String error;
+
+    public CDRGenerationJob(CDRServiceImpl cdrServiceImpl) {
+        this.cdrServiceImpl = cdrServiceImpl;
+    }
+
+    /**
+     * Запускает генерацию в фоне. Повторные вызовы игнорируются.
+     */
+    public synchronized void start() {
+        if (state != GenerationStatus.State.PENDING) {
+            return;
+        }
+        startedAt = LocalDateTime.now();
+        startedNanos = System.nanoTime();
+        state = GenerationStatus.State.RUNNING;
+        executor.execute(this::generate);
+    }
+
+    /**
+     * @return Текущее состояние генерации.
+     */
+    public GenerationStatus getStatus() {
+        // Состояние читается первым: завершённое задание должно отдавать итоговые значения счётчиков
+        GenerationStatus.State currentState = state;
+        long written = recordsWritten.get();
+        long elapsedNanos = (finishedNanos != 0 ? finishedNanos : System.nanoTime()) - startedNanos;
+        return GenerationStatus.builder()
+                .state(currentState)
+                .recordsWritten(written)
+                .simulatedTime(simulatedTime)
+                .recordsPerSecond(startedAt == null || elapsedNanos <= 0 ? 0 : written * 1_000_000_000L / elapsedNanos)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+
+    /**
+     * @return true, если генерация успешно завершена и данные полны.
+     */
+    public boolean isCompleted() {
+        return state == GenerationStatus.State.COMPLETED;
+    }
+
+    /**
+     * @return true, если генерация запущена и ещё не завершена.
+     */
+    public boolean isRunning() {
+        return state == GenerationStatus.State.RUNNING;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void generate() {
+        try {
+            cdrServiceImpl.generateCDRs((records, time) -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException();
+                }
+                recordsWritten.addAndGet(records);
+                simulatedTime = time;
+            });
+            finish(GenerationStatus.State.COMPLETED);
+        } catch (Throwable e) {
+            // Остановка приложения прерывает поток генерации: это не ошибка генерации
+            if (e instanceof CancellationException || executor.isShutdown()) {
+                finish(GenerationStatus.State.CANCELLED);
+                log.info("Генерация CDR остановлена при завершении приложения, сохранено {} записей", recordsWritten.get());
+                return;
+            }
+            // Любая ошибка, включая Error, завершает задание, иначе оно навсегда осталось бы в состоянии RUNNING
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            finish(GenerationStatus.State.FAILED);
+            log.error("Ошибка генерации CDR", e);
+            if (e instanceof Error fatal) {
+                throw fatal;
+            }
+        }
+    }
+
+    private void finish(GenerationStatus.State finalState) {
+        finishedNanos = System.nanoTime();
+        finishedAt = LocalDateTime.now();
+        state = finalState;
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Генератор CDR записей с разбиением периода на временные окна (партиции).
+ * <p>
+ * Каждое окно моделируется независимо со своим генератором случайных чисел, зерно которого
+ * выводится из общего зерна и номера окна. Поэтому при одинаковых зерне, числе окон и периоде
+ * результат не зависит от числа потоков и всегда один и тот же.
+ * </p>
+ * <p>
+ * Окон не меньше заданного числа партиций; если ожидаемое число звонков окна больше бюджета
+ * (по умолчанию {@value #DEFAULT_MAX_WINDOW_CALLS}), окна дробятся дальше. Так память на окна в работе
+ * ограничена бюджетом и числом потоков и не растёт с объёмом данных.
+ * </p>
+ * <p>
+ * Окна передаются потребителю строго по порядку и в вызывающем потоке. Звонки окна, которые
+ * пересекаются со звонками предыдущих окон, отбрасываются, так что правило
+ * «абонент разговаривает только по одной линии» соблюдается и на границах окон.
+ * </p>
+ * <p>
+ * Объём данных задаётся средним числом звонков, которые абонент начинает за сутки: интенсивность
+ * звонков всей сети пропорциональна числу абонентов, так что число записей растёт с ним линейно.
+ * Попытки звонков к занятым абонентам отбрасываются.
+ * </p>
+ * <p>
+ * Внутри моделирования время хранится в секундах эпохи (UTC), абоненты — индексами
+ * в списке номеров, занятость — массивом {@code long[]}; в цикле генерации объекты не создаются.
+ * </p>
+ */
+public class CDRGenerator {
+
+    /**
+     * Среднее число звонков абонента в сутки по умолчанию: для 10 абонентов — звонок в среднем раз в 2 часа.
+     */
+    public static final double DEFAULT_CALLS_PER_SUBSCRIBER_PER_DAY = 1.2;
+
+    /**
+     * Ожидаемое число звонков окна по умолчанию, сверх которого период делится на большее число окон.
+     */
+    public static final int DEFAULT_MAX_WINDOW_CALLS = 1_000_000;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int CALL_DURATION_SECONDS = 600; // Средняя длительность звонка — 10 минут
+    private static final double LAMBDA_CALL_DURATION = 1.0 / CALL_DURATION_SECONDS;
+    private static final long PARTITION_SEED_STEP = 0x9E3779B97F4A7C15L;
+    private static final long NOT_BUSY = Long.MIN_VALUE;
+    private static final String ERROR_INVALID_PARTITIONS = "Число партиций должно быть положительным.";
+    private static final String ERROR_INVALID_CALL_RATE = "Число звонков абонента в сутки должно быть положительным.";
+
+    private final List<String> msisdns;
+    private final int subscribers;
+    private final long seed;
+    private final int partitions;
+    // Интенсивность шага моделирования: между звонками сети два экспоненциальных шага
+    private final double lambdaCallStep;
+    private final int maxWindowCalls;
+
+    /**
+     * @param msisdns                  Номера абонентов, между которыми моделируются звонки (минимум 2).
+     * @param seed                     Зерно генератора случайных чисел.
+     * @param partitions               Число временных окон, на которые делится период.
+     * @param callsPerSubscriberPerDay Среднее число звонков, которые абонент начинает за сутки.
+     */
+    public CDRGenerator(List<String> msisdns, long seed, int partitions, double callsPerSubscriberPerDay) {
+        this(msisdns, seed, partitions, callsPerSubscriberPerDay, DEFAULT_MAX_WINDOW_CALLS);
+    }
+
+    /**
+     * @param maxWindowCalls Ожидаемое число звонков окна, сверх которого период делится на большее число окон.
+     */
+    CDRGenerator(List<String> msisdns, long seed, int partitions, double callsPerSubscriberPerDay, int maxWindowCalls) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException(ERROR_INVALID_PARTITIONS);
+        }
+        if (!(callsPerSubscriberPerDay > 0)) {
+            throw new IllegalArgumentException(ERROR_INVALID_CALL_RATE);
+        }
+        this.msisdns = List.copyOf(msisdns);
+        this.subscribers = this.msisdns.size();
+        this.seed = seed;
+        this.partitions = partitions;
+        this.lambdaCallStep = 2 * callsPerSubscriberPerDay * subscribers / SECONDS_PER_DAY;
+        this.maxWindowCalls = maxWindowCalls;
+    }
+
+    /**
+     * Моделирует звонки за период {@code [start, end)} и передаёт их потребителю по окнам
+     * в порядке возрастания времени. Одновременно в работе находится не более
+     * {@code parallelism} окон с ограниченным числом звонков, поэтому память не зависит от длины периода
+     * и объёма данных.
+     *
+     * @param start       Начало периода.
+     * @param end         Конец периода.
+     * @param parallelism Число потоков для моделирования окон.
+     * @param sink        Потребитель звонков очередного окна; вызывается в текущем потоке.
+     */
+    public void generate(LocalDateTime start, LocalDateTime end, int parallelism, Consumer<GeneratedCalls> sink) {
+        long startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        long endSecond = end.toEpochSecond(ZoneOffset.UTC);
+        int windows = windows(endSecond - startSecond);
+        long windowSeconds = Math.max(1, (endSecond - startSecond) / windows);
+
+        long[] carriedBusy = new long[subscribers];
+        Arrays.fill(carriedBusy, NOT_BUSY);
+
+        if (parallelism <= 1 || windows == 1) {
+            for (int i = 0; i < windows; i++) {
+                sink.accept(reconcile(simulate(i, windowStart(startSecond, endSecond, windowSeconds, windows, i),
+                        windowStart(startSecond, endSecond, windowSeconds, windows, i + 1)), carriedBusy));
+            }
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Deque<ForkJoinTask<Window>> inFlight = new ArrayDeque<>();
+            int submitted = 0;
+            for (int i = 0; i < windows; i++) {
+                while (submitted < windows && submitted < i + parallelism) {
+                    int index = submitted++;
+                    long from = windowStart(startSecond, endSecond, windowSeconds, windows, index);
+                    long to = windowStart(startSecond, endSecond, windowSeconds, windows, index + 1);
+                    inFlight.addLast(pool.submit(() -> simulate(index, from, to)));
+                }
+                sink.accept(reconcile(inFlight.removeFirst().join(), carriedBusy));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Число окон периода: не меньше числа партиций и столько, чтобы в окне ожидалось
+     * не больше {@code maxWindowCalls} звонков.
+     */
+    private int windows(long periodSeconds) {
+        double expectedCalls = periodSeconds * lambdaCallStep / 2;
+        long byBudget = (long) Math.ceil(expectedCalls / maxWindowCalls);
+        return (int) Math.max(partitions, Math.min(byBudget, Math.min(periodSeconds, Integer.MAX_VALUE)));
+    }
+
+    private long windowStart(long startSecond, long endSecond, long windowSeconds, int windows, int index) {
+        return index >= windows ? endSecond : startSecond + windowSeconds * index;
+    }
+
+    /**
+     * Моделирует звонки одного окна {@code [from, to)} без учёта соседних окон.
+     */
+    private Window simulate(int index, long from, long to) {
+        SplittableRandom random = new SplittableRandom(seed + index * PARTITION_SEED_STEP);
+
+        // Отслеживание занятости абонентов (одновременно можно разговаривать только по 1 линии)
+        long[] busyUntil = new long[subscribers];
+        Arrays.fill(busyUntil, NOT_BUSY);
+        GeneratedCalls calls = new GeneratedCalls(msisdns,
+                (int) Math.min(Integer.MAX_VALUE, (to - from) * lambdaCallStep / 2));
+
+        long current = from;
+        while (true) {
+            current += Math.max(1, getExponentialRandom(random, lambdaCallStep)); // Гарантируем шаг > 0
+            if (current >= to) {
+                break;
+            }
+            generateCall(random, busyUntil, current, calls);
+            current += getExponentialRandom(random, lambdaCallStep);
+        }
+        return new Window(calls, busyUntil);
+    }
+
+    /**
+     * Отбрасывает звонки окна, пересекающиеся со звонками предыдущих окон,
+     * и переносит занятость абонентов на следующее окно.
+     */
+    private GeneratedCalls reconcile(Window window, long[] carriedBusy) {
+        long horizon = NOT_BUSY;
+        for (long busyUntil : carriedBusy) {
+            horizon = Math.max(horizon, busyUntil);
+        }
+
+        GeneratedCalls calls = window.calls();
+        int size = calls.size();
+        int kept = 0;
+        int i = 0;
+        for (; i < size && calls.startSecond(i) < horizon; i++) {
+            long start = calls.startSecond(i);
+            if (start >= carriedBusy[calls.caller(i)] && start >= carriedBusy[calls.receiver(i)]) {
+                calls.move(i, kept++);
+            }
+        }
+        if (kept < i) {
+            for (; i < size; i++) {
+                calls.move(i, kept++);
+            }
+            calls.truncate(kept);
+        }
+
+        long[] windowBusy = window.busyUntil();
+        for (int s = 0; s < subscribers; s++) {
+            carriedBusy[s] = Math.max(carriedBusy[s], windowBusy[s]);
+        }
+        return calls;
+    }
+
+    /**
+     * Генерирует звонок между случайными свободными абонентами.
+     */
+    private void generateCall(SplittableRandom random, long[] busyUntil, long current, GeneratedCalls calls) {
+        int caller = random.nextInt(subscribers);
+        int receiver;
+        do {
+            receiver = random.nextInt(subscribers);
+        } while (caller == receiver);
+
+        if (current < busyUntil[caller] || current < busyUntil[receiver]) {
+            return;
+        }
+
+        long callEnd = current + getExponentialRandom(random, LAMBDA_CALL_DURATION);
+
+        busyUntil[caller] = callEnd;
+        busyUntil[receiver] = callEnd;
+
+        calls.add(caller, receiver, current, callEnd,
+                random.nextBoolean() ? GeneratedCalls.OUTGOING : GeneratedCalls.INCOMING);
+    }
+
+    /**
+     * Генерирует случайное число по экспоненциальному закону
+     * @param random — генератор случайных чисел окна
+     * @param lambda — интенсивность событий
+     * @return случайное число
+     */
+    private long getExponentialRandom(SplittableRandom random, double lambda) {
+        return (long) (-Math.log(1 - random.nextDouble()) / lambda);
+    }
+
+    /**
+     * Результат моделирования одного окна: звонки в порядке начала и занятость абонентов на конец окна.
+     */
+    private record Window(GeneratedCalls calls, long[] busyUntil) {
+    }
+}
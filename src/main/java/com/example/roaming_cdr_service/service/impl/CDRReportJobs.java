@@ -0,0 +1,634 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.config.CDRReportProperties;
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.exception.ReportQueueFullException;
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.ReportStatus;
+import com.example.roaming_cdr_service.repository.UDRRollupChangedEvent;
+import com.example.roaming_cdr_service.service.CDRService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Асинхронное построение CDR-отчётов.
+ * <p>
+ * Задания выполняются в отдельном пуле из {@code cdr.report.workers} потоков с очередью на
+ * {@code cdr.report.queue-capacity} заданий, поэтому всплеск запросов отчётов не занимает потоки
+ * HTTP-сервера, обслуживающие UDR. Если очередь заполнена, новое задание отклоняется
+ * ({@link ReportQueueFullException}), а не накапливается в памяти.
+ * </p>
+ * <p>
+ * Пакетное задание строит отчёты всех абонентов за период за один проход по звонкам периода:
+ * каждая строка дописывается в файл инициатора и в файл получателя, одновременно открыто не более
+ * {@code cdr.report.bulk.max-open-files} файлов. Файлы совпадают с файлами одиночных отчётов,
+ * у каждого абонента свой UUID.
+ * </p>
+ * <p>
+ * Отчёт за закончившийся период после завершения генерации CDR строится один раз: повторный запрос
+ * с тем же абонентом и периодом возвращает UUID уже построенного или строящегося отчёта, пока данные
+ * периода не изменились. Отчёт помнит версию данных своих месяцев, которая увеличивается при записи звонков
+ * в месяц ({@link UDRRollupChangedEvent}); версия читается до построения, поэтому отчёт, построенный
+ * параллельно с записью, не переиспользуется.
+ * Раз в {@code cdr.report.cleanup-interval} в отдельном потоке файлы отчётов, не скачивавшиеся дольше
+ * {@code cdr.report.retention}, удаляются, а при превышении {@code cdr.report.max-total-size} удаляются
+ * давно не скачивавшиеся (LRU).
+ * </p>
+ * <p>
+ * Каждое задание записывает метрики с тегом {@code type} ({@code single} или {@code bulk}):
+ * {@code cdr.report.duration} (ещё и с тегом {@code outcome}), а для построенных отчётов —
+ * {@code cdr.report.rows} и {@code cdr.report.bytes} (у пакетного — сумма по файлам абонентов).
+ * </p>
+ */
+@Slf4j
+@Component
+public class CDRReportJobs {
+
+    private static final String THREAD_NAME_PREFIX = "cdr-report-";
+    private static final String CLEANUP_THREAD_NAME = "cdr-report-cleanup";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BULK_BUFFER_SIZE = 1 << 13;
+    private static final String REPORT_FILE_EXTENSION = ".csv";
+    private static final String ERROR_QUEUE_FULL = "Очередь построения отчётов заполнена, повторите запрос позже.";
+    private static final String ERROR_REPORT_NOT_FOUND = "Отчёт с UUID %s не найден.";
+    private static final String ERROR_REPORT_NOT_READY = "Отчёт с UUID %s ещё не готов (состояние %s).";
+    private static final String ERROR_BULK_REPORT = "Отчёт с UUID %s пакетный: скачивайте отчёты абонентов по UUID из поля reports.";
+
+    private final CDRService cdrService;
+    private final CDRGenerationJob generationJob;
+    private final Path reportsDirectory;
+    private final int maxOpenFiles;
+    private final long retentionMillis;
+    private final long maxTotalBytes;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService cleaner =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, CLEANUP_THREAD_NAME));
+    private final long cleanupIntervalMillis;
+    private final Map<YearMonth, AtomicLong> monthVersions = new ConcurrentHashMap<>();
+    private final AtomicLong allMonthsVersion = new AtomicLong();
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<ReportKey, Job> reusableReports = new ConcurrentHashMap<>();
+    private final Meter.MeterProvider<Timer> reportDuration;
+    private final Meter.MeterProvider<DistributionSummary> reportRows;
+    private final Meter.MeterProvider<DistributionSummary> reportBytes;
+
+    public CDRReportJobs(CDRService cdrService, CDRGenerationJob generationJob, CDRReportProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.cdrService = cdrService;
+        this.generationJob = generationJob;
+        this.reportsDirectory = Path.of(properties.getDirectory());
+        this.maxOpenFiles = properties.getBulk().getMaxOpenFiles();
+        this.retentionMillis = properties.getRetention().toMillis();
+        this.maxTotalBytes = properties.getMaxTotalSize().toBytes();
+        this.cleanupIntervalMillis = properties.getCleanupInterval().toMillis();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getWorkers(), properties.getWorkers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                r -> new Thread(r, THREAD_NAME_PREFIX + threads.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.reportDuration = Timer.builder("cdr.report.duration")
+                .description("Время построения CDR-отчёта")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+        this.reportRows = DistributionSummary.builder("cdr.report.rows")
+                .description("Число строк построенного CDR-отчёта")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+        this.reportBytes = DistributionSummary.builder("cdr.report.bytes")
+                .description("Размер файлов построенного CDR-отчёта")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+    }
+
+    /**
+     * Ставит построение отчёта в очередь. Для неизменяемого периода возвращает уже построенный
+     * или строящийся отчёт с тем же абонентом и периодом, если он есть.
+     *
+     * @param msisdn Номер абонента.
+     * @param start  Начальная дата периода.
+     * @param end    Конечная дата периода.
+     * @return Состояние созданного или найденного задания с UUID отчёта.
+     * @throws ReportQueueFullException если очередь заданий заполнена.
+     */
+    public ReportStatus submit(String msisdn, LocalDateTime start, LocalDateTime end) {
+        if (!isImmutable(end)) {
+            Job job = new Job(UUID.randomUUID().toString(), msisdn, start, end);
+            return enqueue(job, () -> writeReport(job));
+        }
+        ReportKey key = new ReportKey(msisdn, start, end);
+        long version = dataVersion(start, end);
+        Job[] created = new Job[1];
+        Job job = reusableReports.compute(key, (k, existing) -> {
+            if (isReusable(existing)) {
+                return existing;
+            }
+            created[0] = new Job(UUID.randomUUID().toString(), msisdn, start, end);
+            created[0].dataVersion = version;
+            return created[0];
+        });
+        if (created[0] == null) {
+            job.touch();
+            return job.toStatus();
+        }
+        try {
+            return enqueue(job, () -> writeReport(job));
+        } catch (RejectedExecutionException e) {
+            reusableReports.remove(key, job);
+            throw e;
+        }
+    }
+
+    /**
+     * Ищет отчёт, который можно вернуть вместо построения нового.
+     *
+     * @param msisdn Номер абонента.
+     * @param start  Начальная дата периода.
+     * @param end    Конечная дата периода.
+     * @return Состояние построенного или строящегося отчёта за неизменяемый период, если он есть.
+     */
+    public Optional<ReportStatus> findReusable(String msisdn, LocalDateTime start, LocalDateTime end) {
+        if (!isImmutable(end)) {
+            return Optional.empty();
+        }
+        Job job = reusableReports.get(new ReportKey(msisdn, start, end));
+        if (!isReusable(job)) {
+            return Optional.empty();
+        }
+        job.touch();
+        return Optional.of(job.toStatus());
+    }
+
+    /**
+     * Ставит в очередь построение отчётов всех абонентов за период одним проходом по звонкам.
+     * После завершения поле {@code reports} состояния содержит UUID отчёта каждого абонента,
+     * у которого были звонки за период.
+     *
+     * @param start Начальная дата периода.
+     * @param end   Конечная дата периода.
+     * @return Состояние созданного пакетного задания.
+     * @throws ReportQueueFullException если очередь заданий заполнена.
+     */
+    public ReportStatus submitBulk(LocalDateTime start, LocalDateTime end) {
+        Job job = new Job(UUID.randomUUID().toString(), null, start, end);
+        return enqueue(job, () -> writeBulkReport(job));
+    }
+
+    /**
+     * @param id UUID отчёта.
+     * @return Текущее состояние задания.
+     * @throws EntityNotFoundException если задание с таким UUID неизвестно.
+     */
+    public ReportStatus getStatus(String id) {
+        return getJob(id).toStatus();
+    }
+
+    /**
+     * Возвращает файл готового отчёта. Отчёты, построенные до перезапуска приложения,
+     * ищутся в директории отчётов по UUID в имени файла.
+     *
+     * @param id UUID отчёта.
+     * @return Путь к CSV файлу отчёта.
+     * @throws EntityNotFoundException если отчёт с таким UUID неизвестен.
+     * @throws ConflictException       если отчёт ещё не построен или построение завершилось ошибкой.
+     */
+    public Path getReportFile(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return findReportFile(id);
+        }
+        if (job.file == null) {
+            throw new IllegalArgumentException(String.format(ERROR_BULK_REPORT, id));
+        }
+        ReportStatus.State state = job.state;
+        if (state != ReportStatus.State.DONE) {
+            throw new ConflictException(String.format(ERROR_REPORT_NOT_READY, id, state));
+        }
+        job.touch();
+        return job.file;
+    }
+
+    /**
+     * Удаляет отчёты прошлых запусков, срок хранения которых истёк, и запускает периодическую очистку.
+     */
+    @PostConstruct
+    public void init() {
+        cleanUp();
+        cleaner.scheduleWithFixedDelay(this::scheduledCleanUp, cleanupIntervalMillis, cleanupIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Увеличивает версию данных изменившихся месяцев и забывает отчёты, построенные по прежним данным.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRollupChanged(UDRRollupChangedEvent event) {
+        if (event.isAllMonths()) {
+            allMonthsVersion.incrementAndGet();
+        } else {
+            for (YearMonth month : event.getMonths()) {
+                monthVersions.computeIfAbsent(month, m -> new AtomicLong()).incrementAndGet();
+            }
+        }
+        reusableReports.values().removeIf(job -> !isReusable(job));
+    }
+
+    /**
+     * Применяет политику хранения к директории отчётов: удаляет файлы, не использовавшиеся дольше срока
+     * хранения, затем — давно не использовавшиеся, пока суммарный размер больше предельного.
+     * Файлы строящихся отчётов не удаляются. Вместе с файлом забывается и задание.
+     */
+    synchronized void cleanUp() {
+        List<ReportFile> files = new ArrayList<>();
+        long totalBytes = 0;
+        try (Stream<Path> paths = Files.list(reportsDirectory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(REPORT_FILE_EXTENSION) || name.indexOf('_') < 0) {
+                    continue;
+                }
+                Job job = jobs.get(name.substring(name.lastIndexOf('_') + 1, name.length() - REPORT_FILE_EXTENSION.length()));
+                if (job != null && !job.isFinished()) {
+                    continue;
+                }
+                long size = Files.size(path);
+                long lastUsed = job != null ? job.lastUsed : Files.getLastModifiedTime(path).toMillis();
+                files.add(new ReportFile(path, job, size, lastUsed));
+                totalBytes += size;
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать директорию отчётов {}", reportsDirectory, e);
+            return;
+        }
+
+        long expiredBefore = System.currentTimeMillis() - retentionMillis;
+        files.sort(Comparator.comparingLong(ReportFile::lastUsed));
+        int deleted = 0;
+        for (ReportFile file : files) {
+            if (file.lastUsed() >= expiredBefore && totalBytes <= maxTotalBytes) {
+                break;
+            }
+            if (delete(file)) {
+                totalBytes -= file.size();
+                deleted++;
+            }
+        }
+        // Задания без файлов (пакетные и завершившиеся ошибкой) забываются по сроку хранения
+        jobs.values().removeIf(job -> job.isFinished()
+                && (job.file == null || job.state == ReportStatus.State.FAILED) && job.lastUsed < expiredBefore);
+        if (deleted > 0) {
+            log.info("Удалено отчётов: {}, занято {} байт", deleted, totalBytes);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        cleaner.shutdownNow();
+        executor.shutdownNow();
+        executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void scheduledCleanUp() {
+        try {
+            cleanUp();
+        } catch (RuntimeException e) {
+            // Исключение отменило бы следующие запуски
+            log.warn("Ошибка очистки директории отчётов {}", reportsDirectory, e);
+        }
+    }
+
+    /**
+     * @return Версия данных месяцев периода: сумма версий, меняется при записи в любой из них.
+     */
+    private long dataVersion(LocalDateTime start, LocalDateTime end) {
+        long version = allMonthsVersion.get();
+        for (YearMonth month = YearMonth.from(start); !month.isAfter(YearMonth.from(end)); month = month.plusMonths(1)) {
+            AtomicLong monthVersion = monthVersions.get(month);
+            version += monthVersion == null ? 0 : monthVersion.get();
+        }
+        return version;
+    }
+
+    private Job getJob(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            throw new EntityNotFoundException(String.format(ERROR_REPORT_NOT_FOUND, id));
+        }
+        return job;
+    }
+
+    private Path findReportFile(String id) {
+        // Имена сравниваются со списком файлов директории, поэтому UUID не может указать путь за её пределами
+        String suffix = "_" + id + REPORT_FILE_EXTENSION;
+        try (Stream<Path> files = Files.list(reportsDirectory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix))
+                    .findFirst()
+                    .orElseThrow(() -> new EntityNotFoundException(String.format(ERROR_REPORT_NOT_FOUND, id)));
+        } catch (NoSuchFileException e) {
+            throw new EntityNotFoundException(String.format(ERROR_REPORT_NOT_FOUND, id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isImmutable(LocalDateTime end) {
+        // После завершения генерации звонки не добавляются, а закончившийся период не пополняется
+        return generationJob.isCompleted() && end.isBefore(LocalDateTime.now());
+    }
+
+    private boolean isReusable(Job job) {
+        return job != null && job.state != ReportStatus.State.FAILED && jobs.get(job.id) == job
+                && job.dataVersion == dataVersion(job.start, job.end);
+    }
+
+    private boolean delete(ReportFile file) {
+        try {
+            Files.deleteIfExists(file.path());
+        } catch (IOException e) {
+            log.warn("Не удалось удалить отчёт {}", file.path(), e);
+            return false;
+        }
+        if (file.job() != null) {
+            jobs.remove(file.job().id, file.job());
+            reusableReports.values().remove(file.job());
+        }
+        return true;
+    }
+
+    private ReportStatus enqueue(Job job, ReportWriter writer) {
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, writer));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            if (executor.isShutdown()) {
+                throw e;
+            }
+            throw new ReportQueueFullException(ERROR_QUEUE_FULL, e);
+        }
+        return job.toStatus();
+    }
+
+    private void run(Job job, ReportWriter writer) {
+        job.startedAt = LocalDateTime.now();
+        job.state = ReportStatus.State.RUNNING;
+        String type = job.msisdn == null ? "bulk" : "single";
+        long started = System.nanoTime();
+        ReportStatus.State finalState = ReportStatus.State.DONE;
+        try {
+            Files.createDirectories(reportsDirectory);
+            writer.write();
+            reportRows.withTags("type", type).record(job.rowsWritten);
+            reportBytes.withTags("type", type).record(fileSize(job));
+        } catch (IOException | RuntimeException e) {
+            job.error = e.getMessage();
+            finalState = ReportStatus.State.FAILED;
+            log.error("Ошибка построения отчёта {}", job.id, e);
+        }
+        // Метрики записываются до смены состояния, чтобы клиент, дождавшийся завершения, их уже видел
+        reportDuration.withTags("type", type, "outcome", finalState.name().toLowerCase())
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        job.finish(finalState);
+    }
+
+    private static long fileSize(Job job) throws IOException {
+        if (job.file != null) {
+            return Files.size(job.file);
+        }
+        long size = 0;
+        for (Job part : job.parts) {
+            size += Files.size(part.file);
+        }
+        return size;
+    }
+
+    /**
+     * Пишет отчёт по мере чтения записей из базы: в памяти одновременно находятся только порция строк
+     * курсора и буфер записи, поэтому пик потребления памяти не зависит от числа звонков в отчёте.
+     */
+    private void writeReport(Job job) throws IOException {
+        try (CDRCsvWriter writer = new CDRCsvWriter(job.file, false, BUFFER_SIZE)) {
+            cdrService.streamCDRsForSubscriber(job.msisdn, job.start, job.end, cdr -> {
+                writeRow(writer, cdr);
+                job.rowsWritten++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Раскладывает звонки периода, прочитанные в порядке времени начала, по отчётам инициатора и получателя.
+     * Порядок строк в каждом файле совпадает с порядком одиночного отчёта абонента.
+     */
+    private void writeBulkReport(Job bulk) throws IOException {
+        try (ReportFanout fanout = new ReportFanout(bulk)) {
+            cdrService.streamCDRs(bulk.start, bulk.end, cdr -> {
+                fanout.write(cdr.getMsisdn(), cdr);
+                fanout.write(cdr.getOtherMsisdn(), cdr);
+                bulk.rowsWritten++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeRow(CDRCsvWriter writer, CDR cdr) {
+        try {
+            writer.write(cdr);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record ReportKey(String msisdn, LocalDateTime start, LocalDateTime end) {
+    }
+
+    private record ReportFile(Path path, Job job, long size, long lastUsed) {
+    }
+
+    @FunctionalInterface
+    private interface ReportWriter {
+        void write() throws IOException;
+    }
+
+    /**
+     * Файлы отчётов абонентов пакетного задания. Открытые файлы вытесняются в порядке давности
+     * использования (LRU) и при следующей строке абонента открываются на дозапись.
+     */
+    private final class ReportFanout implements Closeable {
+        private final Job bulk;
+        private final Map<String, Job> parts = new HashMap<>();
+        private final LinkedHashMap<String, CDRCsvWriter> open = new LinkedHashMap<>(16, 0.75f, true);
+
+        private ReportFanout(Job bulk) {
+            this.bulk = bulk;
+        }
+
+        private void write(String msisdn, CDR cdr) {
+            CDRCsvWriter writer = open.get(msisdn);
+            if (writer == null) {
+                writer = open(msisdn);
+            }
+            writeRow(writer, cdr);
+            parts.get(msisdn).rowsWritten++;
+        }
+
+        private CDRCsvWriter open(String msisdn) {
+            try {
+                if (open.size() >= maxOpenFiles) {
+                    Iterator<CDRCsvWriter> eldest = open.values().iterator();
+                    CDRCsvWriter evicted = eldest.next();
+                    eldest.remove();
+                    evicted.close();
+                }
+                Job part = parts.get(msisdn);
+                boolean append = part != null;
+                if (part == null) {
+                    part = new Job(UUID.randomUUID().toString(), msisdn, bulk.start, bulk.end);
+                    part.startedAt = bulk.startedAt;
+                    part.state = ReportStatus.State.RUNNING;
+                    parts.put(msisdn, part);
+                    bulk.parts.add(part);
+                    jobs.put(part.id, part);
+                }
+                CDRCsvWriter writer = new CDRCsvWriter(part.file, append, BULK_BUFFER_SIZE);
+                open.put(msisdn, writer);
+                return writer;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (CDRCsvWriter writer : open.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            open.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Задание на построение отчёта. Поля изменяет только поток пула, читают — потоки HTTP-сервера.
+     */
+    private final class Job {
+        private final String id;
+        private final String msisdn;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final Path file;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile ReportStatus.State state = ReportStatus.State.QUEUED;
+        private volatile long rowsWritten;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+        private final List<Job> parts = new ArrayList<>();
+        private volatile Map<String, String> reports;
+        private volatile long lastUsed = System.currentTimeMillis();
+        // Задаётся до публикации задания в reusableReports
+        private long dataVersion;
+
+        /**
+         * @param msisdn Номер абонента; {@code null} — пакетное задание по всем абонентам.
+         */
+        private Job(String id, String msisdn, LocalDateTime start, LocalDateTime end) {
+            this.id = id;
+            this.msisdn = msisdn;
+            this.start = start;
+            this.end = end;
+            this.file = msisdn == null ? null : reportsDirectory.resolve(msisdn + "_" + id + REPORT_FILE_EXTENSION);
+        }
+
+        /**
+         * Завершает задание; отчёты абонентов пакетного задания завершаются вместе с ним.
+         */
+        private void finish(ReportStatus.State finalState) {
+            if (msisdn == null) {
+                Map<String, String> ids = new TreeMap<>();
+                for (Job part : parts) {
+                    part.error = error;
+                    part.finish(finalState);
+                    ids.put(part.msisdn, part.id);
+                }
+                reports = Collections.unmodifiableMap(ids);
+            }
+            finishedAt = LocalDateTime.now();
+            lastUsed = System.currentTimeMillis();
+            state = finalState;
+        }
+
+        private void touch() {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private boolean isFinished() {
+            return state == ReportStatus.State.DONE || state == ReportStatus.State.FAILED;
+        }
+
+        private ReportStatus toStatus() {
+            // Состояние читается первым: завершённое задание должно отдавать итоговое число строк
+            ReportStatus.State currentState = state;
+            return ReportStatus.builder()
+                    .id(id)
+                    .msisdn(msisdn)
+                    .state(currentState)
+                    .rowsWritten(rowsWritten)
+                    .createdAt(createdAt)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .reports(reports)
+                    .build();
+        }
+    }
+}
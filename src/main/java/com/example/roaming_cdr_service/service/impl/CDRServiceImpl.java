@@ -1,51 +1,133 @@
 package com.example.roaming_cdr_service.service.impl;
 
+import com.example.roaming_cdr_service.config.CDRGeneratorProperties;
 import com.example.roaming_cdr_service.model.CDR;
 import com.example.roaming_cdr_service.model.Subscriber;
+import com.example.roaming_cdr_service.repository.CDRArchive;
+import com.example.roaming_cdr_service.repository.CDRArchiveFile;
+import com.example.roaming_cdr_service.repository.CDRBulkWriter;
 import com.example.roaming_cdr_service.repository.CDRRepository;
 import com.example.roaming_cdr_service.repository.SubscriberRepository;
 import com.example.roaming_cdr_service.service.CDRService;
+import com.example.roaming_cdr_service.service.GenerationListener;
 import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Сервис для генерации CDR (Call Data Record) записей.
  * Генерирует тестовые данные о звонках и сохраняет их в базу данных.
+ * Звонки месяцев, перенесённых в {@link CDRArchive}, читаются из файлов архива и выдаются
+ * вперемешку с записями таблицы {@code cdr} в порядке времени начала.
+ * <p>
+ * Метрики генерации: {@code cdr.generation.records} — число сохранённых записей (скорость генерации —
+ * её производная), {@code cdr.generation.batch} — время сохранения одного пакета.
+ * </p>
  */
+@Slf4j
 @Service
 public class CDRServiceImpl implements CDRService {
 
-    private static final int BATCH_SIZE = 100;
-    private static final int CALL_INTERVAL_SECONDS = 3600; // Средний интервал между звонками — 1 час
-    private static final int CALL_DURATION_SECONDS = 600; // Средняя длительность звонка — 10 минут
-    private static final double LAMBDA_CALL_INTERVAL = 1.0 / CALL_INTERVAL_SECONDS;
-    private static final double LAMBDA_CALL_DURATION = 1.0 / CALL_DURATION_SECONDS;
     private static final String ERROR_EMPTY_SUBSCRIBERS = "Список абонентов пуст, невозможно сгенерировать CDR!";
     private static final String ERROR_INSUFFICIENT_SUBSCRIBERS = "Недостаточно абонентов для генерации звонков (нужно минимум 2).";
 
     private final CDRRepository cdrRepository;
     private final SubscriberRepository subscriberRepository;
-
-    public CDRServiceImpl(CDRRepository cdrRepository, SubscriberRepository subscriberRepository) {
+    private final CDRBulkWriter cdrBulkWriter;
+    private final CDRArchive cdrArchive;
+    private final CDRGeneratorProperties generatorProperties;
+    private final EntityManager entityManager;
+    private final Timer batchTimer;
+    private final Counter generatedRecords;
+
+    public CDRServiceImpl(CDRRepository cdrRepository, SubscriberRepository subscriberRepository,
+                          CDRBulkWriter cdrBulkWriter, CDRArchive cdrArchive,
+                          CDRGeneratorProperties generatorProperties, EntityManager entityManager,
+                          MeterRegistry meterRegistry) {
         this.cdrRepository = cdrRepository;
         this.subscriberRepository = subscriberRepository;
+        this.cdrBulkWriter = cdrBulkWriter;
+        this.cdrArchive = cdrArchive;
+        this.generatorProperties = generatorProperties;
+        this.entityManager = entityManager;
+        this.batchTimer = Timer.builder("cdr.generation.batch")
+                .description("Время сохранения пакета сгенерированных CDR")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.generatedRecords = Counter.builder("cdr.generation.records")
+                .description("Число сохранённых сгенерированных CDR")
+                .register(meterRegistry);
     }
 
     @Override
     public List<CDR> getCDRsForSubscriber(String msisdn, LocalDateTime start, LocalDateTime end) {
-        List<CDR> cdrsAsCaller = cdrRepository.findByMsisdnAndCallStartTimeBetween(msisdn, start, end);
-        List<CDR> cdrsAsReceiver = cdrRepository.findByOtherMsisdnAndCallStartTimeBetween(msisdn, start, end);
+        List<CDR> cdrs = cdrRepository.findSubscriberCalls(msisdn, start, end);
+        List<CDRArchiveFile> archived = cdrArchive.find(start, end);
+        if (archived.isEmpty()) {
+            return cdrs;
+        }
+        List<CDR> merged = new ArrayList<>(cdrs.size());
+        ArchivedCalls archivedCalls = new ArchivedCalls(archived,
+                (file, sink) -> file.forEachSubscriberCall(msisdn, start, end, sink), merged::add);
+        for (CDR cdr : cdrs) {
+            archivedCalls.readBefore(cdr.getCallStartTime());
+            merged.add(cdr);
+        }
+        archivedCalls.readRemaining();
+        return merged;
+    }
 
-        List<CDR> allCdrs = new ArrayList<>(cdrsAsCaller);
-        allCdrs.addAll(cdrsAsReceiver);
-        return allCdrs;
+    @Override
+    @Transactional(readOnly = true)
+    public void streamCDRsForSubscriber(String msisdn, LocalDateTime start, LocalDateTime end, Consumer<CDR> sink) {
+        ArchivedCalls archivedCalls = new ArchivedCalls(cdrArchive.find(start, end),
+                (file, archivedSink) -> file.forEachSubscriberCall(msisdn, start, end, archivedSink), sink);
+        try (Stream<CDR> cdrs = cdrRepository.streamSubscriberCalls(msisdn, start, end)) {
+            cdrs.forEach(cdr -> {
+                archivedCalls.readBefore(cdr.getCallStartTime());
+                sink.accept(cdr);
+                // Отсоединяем прочитанную запись, чтобы контекст персистентности не рос с числом звонков
+                entityManager.detach(cdr);
+            });
+        }
+        archivedCalls.readRemaining();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamCDRs(LocalDateTime start, LocalDateTime end, Consumer<CDR> sink) {
+        ArchivedCalls archivedCalls = new ArchivedCalls(cdrArchive.find(start, end),
+                (file, archivedSink) -> file.forEachCall(start, end, archivedSink), sink);
+        try (Stream<CDR> cdrs = cdrRepository.streamByCallStartTimeBetween(start, end)) {
+            cdrs.forEach(cdr -> {
+                archivedCalls.readBefore(cdr.getCallStartTime());
+                sink.accept(cdr);
+                entityManager.detach(cdr);
+            });
+        }
+        archivedCalls.readRemaining();
+    }
+
+    @Override
+    public boolean hasCDRsForSubscriber(String msisdn, LocalDateTime start, LocalDateTime end) {
+        for (CDRArchiveFile file : cdrArchive.find(start, end)) {
+            if (file.hasSubscriberCalls(msisdn, start, end)) {
+                return true;
+            }
+        }
+        return cdrRepository.existsSubscriberCalls(msisdn, start, end);
     }
 
     @PostConstruct
@@ -64,9 +146,20 @@ public class CDRServiceImpl implements CDRService {
 
     /**
      * Генерирует CDR записи за один год для всех абонентов.
+     * Период делится на {@link CDRGeneratorProperties#getPartitions()} временных окон,
+     * которые моделируются параллельно и сохраняются по порядку.
+     * Каждый пакет записывается в отдельной транзакции, чтобы объём незафиксированных данных не рос с периодом.
      */
-    @Transactional
     public void generateCDRs() {
+        generateCDRs((records, simulatedTime) -> { });
+    }
+
+    /**
+     * Генерирует CDR записи за один год для всех абонентов, сообщая о ходе генерации.
+     *
+     * @param listener Слушатель, вызываемый после сохранения каждого пакета.
+     */
+    public void generateCDRs(GenerationListener listener) {
         List<Subscriber> subscribers = subscriberRepository.findAll();
         if (subscribers.isEmpty()) {
             throw new IllegalStateException(ERROR_EMPTY_SUBSCRIBERS);
@@ -76,88 +169,83 @@ public class CDRServiceImpl implements CDRService {
             throw new IllegalStateException(ERROR_INSUFFICIENT_SUBSCRIBERS);
         }
 
-        LocalDateTime startDate = LocalDateTime.now().minusYears(1); // Начало периода генерации (год назад)
-        LocalDateTime endDate = LocalDateTime.now(); // Конец периода генерации (текущее время)
-
-        // Отслеживание занятости абонентов (одновременно можно разговаривать только по 1 линии)
-        Map<String, LocalDateTime> busySubscribers = new HashMap<>();
-        List<CDR> batch = new ArrayList<>();
-
-        for (LocalDateTime currentDate = startDate; currentDate.isBefore(endDate); currentDate = currentDate.plusSeconds(getExponentialRandom(1.0 / CALL_INTERVAL_SECONDS))) {
-            long step = Math.max(1, getExponentialRandom(LAMBDA_CALL_INTERVAL)); // Гарантируем шаг > 0
-            currentDate = currentDate.plusSeconds(step);
-
-            CDR cdr = generateCDR(subscribers, busySubscribers, currentDate);
-            if (cdr != null) {
-                batch.add(cdr);
-            }
-
-            // Сохраняем пакет, если накопилось достаточно данных
-            if (batch.size() >= BATCH_SIZE) {
-                saveCDRBatch(batch);
+        LocalDateTime endDate = generatorProperties.getPeriodEnd() != null
+                ? generatorProperties.getPeriodEnd()
+                : LocalDateTime.now(); // Конец периода генерации (текущее время)
+        LocalDateTime startDate = endDate.minusYears(1); // Начало периода генерации (год назад)
+
+        long seed = generatorProperties.getSeed() != null
+                ? generatorProperties.getSeed()
+                : ThreadLocalRandom.current().nextLong();
+        int parallelism = generatorProperties.getParallelism() > 0
+                ? generatorProperties.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+
+        CDRGenerator generator = new CDRGenerator(
+                subscribers.stream().map(Subscriber::getMsisdn).toList(), seed, generatorProperties.getPartitions(),
+                generatorProperties.getCallsPerSubscriberPerDay());
+
+        int batchSize = cdrBulkWriter.getBatchSize();
+        List<CDR> batch = new ArrayList<>(batchSize);
+        long started = System.nanoTime();
+        long[] generated = {0};
+        generator.generate(startDate, endDate, parallelism, window -> {
+            generated[0] += window.size();
+            for (int i = 0; i < window.size(); i++) {
+                batch.add(window.toCDR(i));
+
+                // Сохраняем пакет, если накопилось достаточно данных
+                if (batch.size() >= batchSize) {
+                    saveCDRBatch(batch, listener);
+                }
             }
-        }
-        saveCDRBatch(batch);
-    }
-
-    /**
-     * Генерирует CDR для случайных абонентов.
-     */
-    private CDR generateCDR(List<Subscriber> subscribers, Map<String, LocalDateTime> busySubscribers, LocalDateTime currentDate) {
-        Subscriber caller = subscribers.get(ThreadLocalRandom.current().nextInt(subscribers.size()));
-        Subscriber receiver;
-        do {
-            receiver = subscribers.get(ThreadLocalRandom.current().nextInt(subscribers.size()));
-        } while (caller.getMsisdn().equals(receiver.getMsisdn()));
-
-        if (isBusy(busySubscribers, caller.getMsisdn(), currentDate) ||
-                isBusy(busySubscribers, receiver.getMsisdn(), currentDate)) {
-            return null;
-        }
-
-        LocalDateTime callEndTime = currentDate.plusSeconds(getExponentialRandom(LAMBDA_CALL_DURATION));
+        });
+        saveCDRBatch(batch, listener);
 
-        busySubscribers.put(caller.getMsisdn(), callEndTime);
-        busySubscribers.put(receiver.getMsisdn(), callEndTime);
-
-        return CDR.builder()
-                .callType(ThreadLocalRandom.current().nextBoolean() ? "01" : "02")
-                .msisdn(caller.getMsisdn())
-                .otherMsisdn(receiver.getMsisdn())
-                .callStartTime(currentDate)
-                .callEndTime(callEndTime)
-                .build();
+        long seconds = Math.max(1, (System.nanoTime() - started) / 1_000_000_000L);
+        log.info("Сгенерировано {} CDR за {} с ({} записей/с, вставка {} строк/с)",
+                generated[0], seconds, generated[0] / seconds, cdrBulkWriter.getRowsPerSecond());
     }
 
     /**
-     * Сохраняет CDR пакетами.
+     * Сохраняет CDR пакетами через {@link CDRBulkWriter}.
      */
-    private void saveCDRBatch(List<CDR> batch) {
+    private void saveCDRBatch(List<CDR> batch, GenerationListener listener) {
         if (!batch.isEmpty()) {
-            cdrRepository.saveAll(batch);
-            cdrRepository.flush();
+            batchTimer.record(() -> cdrBulkWriter.insertAll(batch));
+            generatedRecords.increment(batch.size());
+            listener.onBatchSaved(batch.size(), batch.get(batch.size() - 1).getCallStartTime());
             batch.clear();
         }
     }
 
     /**
-     * Проверяет, занят ли абонент в указанное время
-     * @param busySubscribers — мапа занятости абонентов
-     * @param msisdn — номер абонента
-     * @param currentDate — текущее время
-     * @return true, если абонент занят, иначе false
+     * Звонки архивных месяцев, выдаваемые между записями таблицы {@code cdr}: архивный месяц выдаётся целиком
+     * перед первой записью таблицы, начавшейся не раньше его начала, поэтому общий порядок по времени сохраняется.
      */
-    private boolean isBusy(Map<String, LocalDateTime> busySubscribers, String msisdn, LocalDateTime currentDate) {
-        LocalDateTime busyUntil = busySubscribers.get(msisdn);
-        return busyUntil != null && currentDate.isBefore(busyUntil);
-    }
+    private static final class ArchivedCalls {
+        private final List<CDRArchiveFile> files;
+        private final BiConsumer<CDRArchiveFile, Consumer<CDR>> reader;
+        private final Consumer<CDR> sink;
+        private int next;
+
+        private ArchivedCalls(List<CDRArchiveFile> files, BiConsumer<CDRArchiveFile, Consumer<CDR>> reader,
+                              Consumer<CDR> sink) {
+            this.files = files;
+            this.reader = reader;
+            this.sink = sink;
+        }
 
-    /**
-     * Генерирует случайное число по экспоненциальному закону
-     * @param lambda — интенсивность событий
-     * @return случайное число
-     */
-    private long getExponentialRandom(double lambda) {
-        return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / lambda);
+        private void readBefore(LocalDateTime callStartTime) {
+            while (next < files.size() && !callStartTime.isBefore(files.get(next).getStart())) {
+                reader.accept(files.get(next++), sink);
+            }
+        }
+
+        private void readRemaining() {
+            while (next < files.size()) {
+                reader.accept(files.get(next++), sink);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,154 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.CDR;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Звонки, сгенерированные {@link CDRGenerator}, в виде параллельных примитивных массивов.
+ * <p>
+ * Абоненты представлены индексами в списке номеров генератора, время — секундами эпохи (UTC),
+ * тип звонка — байтом {@link #OUTGOING} или {@link #INCOMING}. Объекты {@link CDR} создаются
+ * только при выдаче записей потребителю через {@link #toCDR(int)}.
+ * </p>
+ */
+public final class GeneratedCalls {
+
+    /**
+     * Код исходящего звонка ("01").
+     */
+    public static final byte OUTGOING = 1;
+
+    /**
+     * Код входящего звонка ("02").
+     */
+    public static final byte INCOMING = 2;
+
+    private static final String OUTGOING_CALL_TYPE = "01";
+    private static final String INCOMING_CALL_TYPE = "02";
+
+    private final List<String> msisdns;
+    private int[] callers;
+    private int[] receivers;
+    private long[] startSeconds;
+    private long[] endSeconds;
+    private byte[] callTypes;
+    private int size;
+
+    GeneratedCalls(List<String> msisdns, int capacity) {
+        this.msisdns = msisdns;
+        int initialCapacity = Math.max(16, capacity);
+        this.callers = new int[initialCapacity];
+        this.receivers = new int[initialCapacity];
+        this.startSeconds = new long[initialCapacity];
+        this.endSeconds = new long[initialCapacity];
+        this.callTypes = new byte[initialCapacity];
+    }
+
+    /**
+     * @return Число звонков.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Индекс абонента {@code msisdn} звонка {@code i}.
+     */
+    public int caller(int i) {
+        return callers[i];
+    }
+
+    /**
+     * @return Индекс абонента {@code otherMsisdn} звонка {@code i}.
+     */
+    public int receiver(int i) {
+        return receivers[i];
+    }
+
+    /**
+     * @return Время начала звонка {@code i} в секундах эпохи (UTC).
+     */
+    public long startSecond(int i) {
+        return startSeconds[i];
+    }
+
+    /**
+     * @return Время окончания звонка {@code i} в секундах эпохи (UTC).
+     */
+    public long endSecond(int i) {
+        return endSeconds[i];
+    }
+
+    /**
+     * @return Код типа звонка {@code i}: {@link #OUTGOING} или {@link #INCOMING}.
+     */
+    public byte callType(int i) {
+        return callTypes[i];
+    }
+
+    /**
+     * @return Номер абонента по его индексу.
+     */
+    public String msisdn(int subscriberIndex) {
+        return msisdns.get(subscriberIndex);
+    }
+
+    /**
+     * @return Строковое представление кода типа звонка, как в {@link CDR#getCallType()}.
+     */
+    public static String callTypeCode(byte callType) {
+        return callType == OUTGOING ? OUTGOING_CALL_TYPE : INCOMING_CALL_TYPE;
+    }
+
+    /**
+     * Создаёт доменный объект для звонка {@code i}.
+     */
+    public CDR toCDR(int i) {
+        return CDR.builder()
+                .callType(callTypeCode(callTypes[i]))
+                .msisdn(msisdns.get(callers[i]))
+                .otherMsisdn(msisdns.get(receivers[i]))
+                .callStartTime(LocalDateTime.ofEpochSecond(startSeconds[i], 0, ZoneOffset.UTC))
+                .callEndTime(LocalDateTime.ofEpochSecond(endSeconds[i], 0, ZoneOffset.UTC))
+                .build();
+    }
+
+    void add(int caller, int receiver, long startSecond, long endSecond, byte callType) {
+        if (size == callers.length) {
+            grow();
+        }
+        callers[size] = caller;
+        receivers[size] = receiver;
+        startSeconds[size] = startSecond;
+        endSeconds[size] = endSecond;
+        callTypes[size] = callType;
+        size++;
+    }
+
+    /**
+     * Переносит звонок {@code from} на позицию {@code to}; используется для сжатия массивов на месте.
+     */
+    void move(int from, int to) {
+        callers[to] = callers[from];
+        receivers[to] = receivers[from];
+        startSeconds[to] = startSeconds[from];
+        endSeconds[to] = endSeconds[from];
+        callTypes[to] = callTypes[from];
+    }
+
+    void truncate(int newSize) {
+        size = newSize;
+    }
+
+    private void grow() {
+        int capacity = callers.length + (callers.length >> 1);
+        callers = Arrays.copyOf(callers, capacity);
+        receivers = Arrays.copyOf(receivers, capacity);
+        startSeconds = Arrays.copyOf(startSeconds, capacity);
+        endSeconds = Arrays.copyOf(endSeconds, capacity);
+        callTypes = Arrays.copyOf(callTypes, capacity);
+    }
+}
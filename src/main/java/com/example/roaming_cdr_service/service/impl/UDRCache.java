@@ -0,0 +1,186 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.UDR;
+import com.example.roaming_cdr_service.repository.UDRRollupChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш UDR отчётов за календарные месяцы.
+ * <p>
+ * Хранит UDR абонента за месяц и UDR всех абонентов за месяц. Размер ограничен суммарным весом записей:
+ * UDR абонента весит 1, UDR всех абонентов — число абонентов; при превышении вытесняются давно
+ * не использованные записи (LRU).
+ * </p>
+ * <p>
+ * У каждого месяца есть счётчик поколений, который увеличивается после фиксации записи звонков в этот
+ * месяц ({@link UDRRollupChangedEvent}). Запись кэша помнит поколение, при котором она была вычислена,
+ * и считается устаревшей, если поколение месяца изменилось. Поколение читается до обращения к базе,
+ * поэтому результат, вычисленный параллельно с записью, не переживёт её.
+ * </p>
+ */
+@Component
+public class UDRCache {
+
+    private static final String CACHE_NAME = "udr";
+
+    private final long maxWeight;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final Map<YearMonth, AtomicLong> monthGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong allMonthsGeneration = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public UDRCache(@Value("${cdr.udr.cache.max-weight:100000}") long maxWeight, MeterRegistry meterRegistry) {
+        this.maxWeight = maxWeight;
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+                .tag("cache", CACHE_NAME).tag("result", "hit")
+                .description("Число обращений к кэшу UDR, обслуженных из кэша")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tag("cache", CACHE_NAME).tag("result", "miss")
+                .description("Число обращений к кэшу UDR, потребовавших расчёта")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, AtomicLong::get)
+                .tag("cache", CACHE_NAME)
+                .description("Число записей, вытесненных из кэша UDR")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, UDRCache::size)
+                .tag("cache", CACHE_NAME)
+                .description("Число записей в кэше UDR")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает UDR абонента за месяц из кэша или вычисляет его.
+     *
+     * @param msisdn Номер абонента.
+     * @param month  Месяц.
+     * @param loader Расчёт UDR при промахе; исключения передаются вызывающему и не кэшируются.
+     * @return UDR абонента за месяц.
+     */
+    public UDR getUDR(String msisdn, YearMonth month, Supplier<UDR> loader) {
+        return get(new Key(msisdn, month), loader, 1);
+    }
+
+    /**
+     * Возвращает UDR всех абонентов за месяц из кэша или вычисляет их.
+     *
+     * @param month  Месяц.
+     * @param loader Расчёт UDR при промахе.
+     * @return Неизменяемая Map, где ключ — номер абонента, значение — UDR отчёт.
+     */
+    public Map<String, UDR> getAllUDRs(YearMonth month, Supplier<Map<String, UDR>> loader) {
+        Supplier<Map<String, UDR>> unmodifiable = () -> Collections.unmodifiableMap(loader.get());
+        return get(new Key(null, month), unmodifiable, -1);
+    }
+
+    /**
+     * Помечает устаревшими записи месяцев, в которые были записаны звонки.
+     * Вызывается после фиксации транзакции записи (или сразу, если транзакции нет).
+     *
+     * @param event Событие об изменении сводной таблицы.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRollupChanged(UDRRollupChangedEvent event) {
+        if (event.isAllMonths()) {
+            allMonthsGeneration.incrementAndGet();
+            return;
+        }
+        for (YearMonth month : event.getMonths()) {
+            monthGenerations.computeIfAbsent(month, m -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * @return Число обращений, обслуженных из кэша.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Число обращений, потребовавших расчёта.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Число записей в кэше.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, Supplier<T> loader, int fixedWeight) {
+        long generation = generation(key.month());
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.generation() == generation) {
+                hits.incrementAndGet();
+                return (T) entry.value();
+            }
+        }
+        misses.incrementAndGet();
+
+        // Расчёт выполняется вне блокировки, чтобы медленный запрос не задерживал обращения к другим ключам
+        T value = loader.get();
+        if (maxWeight > 0) {
+            int entryWeight = fixedWeight > 0 ? fixedWeight : Math.max(1, ((Map<?, ?>) value).size());
+            put(key, new Entry(value, generation, entryWeight));
+        }
+        return value;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        if (entry.weight() > maxWeight) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        weight += entry.weight() - (previous == null ? 0 : previous.weight());
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (weight > maxWeight) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            weight -= evicted.weight();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Поколение месяца: сумма счётчика месяца и счётчика пересчётов всей таблицы.
+     * Оба счётчика только растут, поэтому сумма меняется при изменении любого из них.
+     */
+    private long generation(YearMonth month) {
+        AtomicLong monthGeneration = monthGenerations.get(month);
+        return allMonthsGeneration.get() + (monthGeneration == null ? 0 : monthGeneration.get());
+    }
+
+    /**
+     * Ключ кэша: абонент и месяц; {@code msisdn == null} — UDR всех абонентов за месяц.
+     */
+    private record Key(String msisdn, YearMonth month) {
+    }
+
+    private record Entry(Object value, long generation, int weight) {
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.model.CallDuration;
+import com.example.roaming_cdr_service.model.CallTypeTotal;
+import com.example.roaming_cdr_service.model.UDR;
+import com.example.roaming_cdr_service.model.UDRRollup;
+import com.example.roaming_cdr_service.repository.CDRArchive;
+import com.example.roaming_cdr_service.repository.CDRArchiveFile;
+import com.example.roaming_cdr_service.repository.CDRColumnStore;
+import com.example.roaming_cdr_service.repository.CDRRepository;
+import com.example.roaming_cdr_service.repository.UDRRollupRepository;
+import com.example.roaming_cdr_service.repository.UDRRollupWriter;
+import com.example.roaming_cdr_service.service.UDRService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Сервис для построения UDR отчётов.
+ * <p>
+ * UDR за календарный месяц читаются из сводной таблицы {@code udr_rollup} — по одной строке на абонента.
+ * UDR за произвольный диапазон складываются из сводных записей полных месяцев и сумм по CDR записям
+ * только для неполных месяцев на краях диапазона, поэтому время ответа почти не зависит от длины диапазона.
+ * Звонки неполных месяцев, перенесённых в {@link CDRArchive}, суммируются по файлам архива.
+ * Если включено колоночное хранилище {@link CDRColumnStore}, все UDR считаются по нему в памяти,
+ * без запросов к базе.
+ * UDR за месяц кэшируются в {@link UDRCache} до записи новых звонков в этот месяц.
+ * </p>
+ */
+@Service
+public class UDRServiceImpl implements UDRService {
+
+    private static final String OUTGOING_CALL_TYPE = "01";
+    private static final String INCOMING_CALL_TYPE = "02";
+    private static final String ERROR_NO_DATA_FOUND = "Для абонента с номером %s не найдены записи за указанный период.";
+    private static final String ERROR_GENERATION_RUNNING = "Генерация CDR ещё не завершена, пересчёт сводной таблицы невозможен.";
+
+    private final CDRRepository cdrRepository;
+    private final CDRArchive cdrArchive;
+    private final CDRColumnStore columnStore;
+    private final UDRRollupRepository rollupRepository;
+    private final UDRRollupWriter rollupWriter;
+    private final CDRGenerationJob generationJob;
+    private final UDRCache udrCache;
+    private final EntityManager entityManager;
+
+    public UDRServiceImpl(CDRRepository cdrRepository, CDRArchive cdrArchive, CDRColumnStore columnStore,
+                          UDRRollupRepository rollupRepository, UDRRollupWriter rollupWriter,
+                          CDRGenerationJob generationJob, UDRCache udrCache, EntityManager entityManager) {
+        this.cdrRepository = cdrRepository;
+        this.cdrArchive = cdrArchive;
+        this.columnStore = columnStore;
+        this.rollupRepository = rollupRepository;
+        this.rollupWriter = rollupWriter;
+        this.generationJob = generationJob;
+        this.udrCache = udrCache;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public UDR getUDR(String msisdn, YearMonth month) {
+        if (columnStore.isAvailable()) {
+            return udrCache.getUDR(msisdn, month, () -> getStoredUDR(msisdn,
+                    month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay()));
+        }
+        return udrCache.getUDR(msisdn, month, () -> rollupRepository.findById(new UDRRollup.Key(msisdn, month.atDay(1)))
+                .map(UDRServiceImpl::createUDR)
+                .orElseThrow(() -> new EntityNotFoundException(String.format(ERROR_NO_DATA_FOUND, msisdn))));
+    }
+
+    @Override
+    public UDR getUDR(String msisdn, LocalDateTime start, LocalDateTime end) {
+        if (columnStore.isAvailable()) {
+            return getStoredUDR(msisdn, start, end);
+        }
+        LocalDateTime firstFullMonth = start.equals(monthStart(start)) ? start : monthStart(start).plusMonths(1);
+        LocalDateTime lastFullMonthEnd = monthStart(end);
+
+        long[] seconds = new long[2];
+        boolean found;
+        if (!firstFullMonth.isBefore(lastFullMonthEnd)) {
+            // Диапазон не содержит ни одного полного месяца
+            found = addCallTotals(seconds, msisdn, start, end);
+        } else {
+            found = addCallTotals(seconds, msisdn, start, firstFullMonth);
+            found |= addRollups(seconds, msisdn, firstFullMonth, lastFullMonthEnd);
+            found |= addCallTotals(seconds, msisdn, lastFullMonthEnd, end);
+        }
+
+        // Нет ни одного звонка — ни в полных месяцах, ни на краях диапазона
+        if (!found) {
+            throw new EntityNotFoundException(String.format(ERROR_NO_DATA_FOUND, msisdn));
+        }
+        return createUDR(msisdn, seconds[0], seconds[1]);
+    }
+
+    @Override
+    public Map<String, UDR> getAllUDRs(YearMonth month) {
+        return udrCache.getAllUDRs(month, () -> {
+            Map<String, UDR> udrs = new LinkedHashMap<>();
+            List<UDRRollup> rollups = columnStore.isAvailable()
+                    ? aggregateStored(month)
+                    : rollupRepository.findByMonthStartOrderByMsisdn(month.atDay(1));
+            for (UDRRollup rollup : rollups) {
+                udrs.put(rollup.getMsisdn(), createUDR(rollup));
+            }
+            return udrs;
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllUDRs(YearMonth month, Consumer<UDR> sink) {
+        if (columnStore.isAvailable()) {
+            // В памяти хранятся только суммы по абонентам месяца, а не сами звонки
+            aggregateStored(month).forEach(rollup -> sink.accept(createUDR(rollup)));
+            return;
+        }
+        try (Stream<UDRRollup> rollups = rollupRepository.streamByMonthStart(month.atDay(1))) {
+            rollups.forEach(rollup -> {
+                sink.accept(createUDR(rollup));
+                // Отсоединяем прочитанную запись, чтобы контекст персистентности не рос с числом абонентов
+                entityManager.detach(rollup);
+            });
+        }
+    }
+
+    @Override
+    public int rebuildRollup() {
+        // Пересчёт во время генерации разошёлся бы с пакетами, которые ещё не зафиксированы
+        if (generationJob.isRunning()) {
+            throw new ConflictException(ERROR_GENERATION_RUNNING);
+        }
+        return rollupWriter.rebuild();
+    }
+
+    /**
+     * Считает UDR абонента за {@code [start, end)} одним проходом по колоночному хранилищу.
+     */
+    private UDR getStoredUDR(String msisdn, LocalDateTime start, LocalDateTime end) {
+        long[] seconds = new long[2];
+        if (!columnStore.addSubscriberCallDurations(seconds, msisdn, start, end)) {
+            throw new EntityNotFoundException(String.format(ERROR_NO_DATA_FOUND, msisdn));
+        }
+        return createUDR(msisdn, seconds[0], seconds[1]);
+    }
+
+    private List<UDRRollup> aggregateStored(YearMonth month) {
+        return columnStore.aggregate(month.atDay(1), month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    /**
+     * Добавляет к {@code seconds} длительности звонков абонента за полные месяцы {@code [from, to)}
+     * по сводной таблице: по одной строке на месяц, независимо от числа звонков.
+     *
+     * @return true, если за эти месяцы у абонента были звонки.
+     */
+    private boolean addRollups(long[] seconds, String msisdn, LocalDateTime from, LocalDateTime to) {
+        List<UDRRollup> rollups = rollupRepository.findByMsisdnAndMonthStartBetween(
+                msisdn, from.toLocalDate(), to.minusMonths(1).toLocalDate());
+        for (UDRRollup rollup : rollups) {
+            seconds[0] += rollup.getIncomingSeconds();
+            seconds[1] += rollup.getOutgoingSeconds();
+        }
+        return !rollups.isEmpty();
+    }
+
+    /**
+     * Добавляет к {@code seconds} длительности звонков абонента за {@code [from, to)} по CDR записям
+     * и архиву. Используется для неполных месяцев на краях диапазона.
+     *
+     * @return true, если за этот период у абонента были звонки.
+     */
+    private boolean addCallTotals(long[] seconds, String msisdn, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return false;
+        }
+        boolean found = false;
+        for (CDRArchiveFile file : cdrArchive.find(from, to)) {
+            found |= file.addSubscriberCallDurations(seconds, msisdn, from, to);
+        }
+        List<CallTypeTotal> totals = cdrRepository.sumSubscriberCallDurations(msisdn, from, to);
+        for (CallTypeTotal total : totals) {
+            if (INCOMING_CALL_TYPE.equals(total.getCallType())) {
+                seconds[0] += total.getTotalSeconds();
+            } else if (OUTGOING_CALL_TYPE.equals(total.getCallType())) {
+                seconds[1] += total.getTotalSeconds();
+            }
+        }
+        return found || !totals.isEmpty();
+    }
+
+    private static LocalDateTime monthStart(LocalDateTime time) {
+        return time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+    }
+
+    private static UDR createUDR(UDRRollup rollup) {
+        return createUDR(rollup.getMsisdn(), rollup.getIncomingSeconds(), rollup.getOutgoingSeconds());
+    }
+
+    private static UDR createUDR(String msisdn, long incomingSeconds, long outgoingSeconds) {
+        return UDR.builder()
+                .msisdn(msisdn)
+                .incomingCall(new CallDuration(incomingSeconds))
+                .outcomingCall(new CallDuration(outgoingSeconds))
+                .build();
+    }
+}
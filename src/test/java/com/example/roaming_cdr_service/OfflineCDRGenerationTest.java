@@ -0,0 +1,71 @@
+package com.example.roaming_cdr_service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link OfflineCDRGeneration}.
+ */
+class OfflineCDRGenerationTest {
+
+    private static final String PERIOD_END = "--period-end=2025-03-01T00:00:00";
+    private static final String SEED = "--seed=7";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Проверяет распознавание офлайн-режима по аргументам.
+     */
+    @Test
+    void testIsRequested() {
+        assertTrue(OfflineCDRGeneration.isRequested("--offline", "--output=cdr.csv"));
+        assertFalse(OfflineCDRGeneration.isRequested("--server.port=8080"));
+    }
+
+    /**
+     * Проверяет, что одинаковые аргументы дают одинаковый файл.
+     */
+    @Test
+    void testRun_DeterministicOutput() throws Exception {
+        Path first = tempDir.resolve("first.csv");
+        Path second = tempDir.resolve("second.csv");
+
+        long written = OfflineCDRGeneration.run("--offline", "--output=" + first, SEED, PERIOD_END,
+                "--partitions=8", "--parallelism=4");
+        OfflineCDRGeneration.run("--offline", "--output=" + second, SEED, PERIOD_END,
+                "--partitions=8", "--parallelism=2");
+
+        assertTrue(written > 0);
+        assertEquals(written, Files.readAllLines(first).size());
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+    }
+
+    /**
+     * Проверяет, что объём файла растёт с числом абонентов и числом звонков абонента в сутки.
+     */
+    @Test
+    void testRun_VolumeScalesWithOptions() throws Exception {
+        long base = OfflineCDRGeneration.run("--offline", "--output=" + tempDir.resolve("base.csv"), SEED, PERIOD_END,
+                "--subscribers=100", "--calls-per-subscriber-per-day=0.5");
+        long denser = OfflineCDRGeneration.run("--offline", "--output=" + tempDir.resolve("denser.csv"), SEED, PERIOD_END,
+                "--subscribers=100", "--calls-per-subscriber-per-day=2");
+        long wider = OfflineCDRGeneration.run("--offline", "--output=" + tempDir.resolve("wider.csv"), SEED, PERIOD_END,
+                "--subscribers=1000", "--calls-per-subscriber-per-day=0.5");
+
+        assertEquals(100 * 0.5 * 365, base, 100 * 0.5 * 365 * 0.1);
+        assertEquals(4 * base, denser, 4 * base * 0.1);
+        assertEquals(10 * base, wider, 10 * base * 0.1);
+    }
+
+    /**
+     * Проверяет обработку отсутствующего выходного файла.
+     */
+    @Test
+    void testRun_NoOutput() {
+        assertThrows(IllegalArgumentException.class, () -> OfflineCDRGeneration.run("--offline"));
+    }
+}
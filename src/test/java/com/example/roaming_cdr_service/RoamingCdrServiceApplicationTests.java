@@ -1,6 +1,6 @@
 package com.example.roaming_cdr_service;
 
-import com.example.roaming_cdr_service.service.impl.CDRServiceImpl;
+import com.example.roaming_cdr_service.service.impl.CDRGenerationJob;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -25,7 +25,7 @@ class RoamingCdrServiceApplicationTests {
 	private static final String ERROR_GENERATING_CDR = "Ошибка генерации CDR";
 
 	@Mock
-	private CDRServiceImpl cdrServiceImpl; // Используем @Mock вместо @MockBean
+	private CDRGenerationJob generationJob; // Используем @Mock вместо @MockBean
 
 	@InjectMocks
 	private RoamingCdrServiceApplication application; // Внедряем моки в тестируемый класс
@@ -42,25 +42,25 @@ class RoamingCdrServiceApplicationTests {
 
 	/**
 	 * Тест для метода {@link RoamingCdrServiceApplication#run(String...)}.
-	 * Проверяет, что метод {@link CDRServiceImpl#generateCDRs()} вызывается при запуске приложения.
+	 * Проверяет, что фоновая генерация {@link CDRGenerationJob#start()} запускается при запуске приложения.
 	 */
 	@Test
 	void testRun() throws Exception {
 		// Вызов метода run
 		application.run();
 
-		// Проверка, что метод generateCDRs был вызван
-		verify(cdrServiceImpl, times(1)).generateCDRs();
+		// Проверка, что генерация была запущена
+		verify(generationJob, times(1)).start();
 	}
 
 	/**
 	 * Тест для метода {@link RoamingCdrServiceApplication#run(String...)}.
-	 * Проверяет обработку исключения, если {@link CDRServiceImpl#generateCDRs()} выбрасывает исключение.
+	 * Проверяет обработку исключения, если {@link CDRGenerationJob#start()} выбрасывает исключение.
 	 */
 	@Test
 	void testRun_Exception() throws Exception {
 		// Настройка mock-объекта для выбрасывания исключения
-		doThrow(new RuntimeException(ERROR_GENERATING_CDR)).when(cdrServiceImpl).generateCDRs();
+		doThrow(new RuntimeException(ERROR_GENERATING_CDR)).when(generationJob).start();
 
 		// Вызов метода run и проверка исключения
 		Exception exception = assertThrows(RuntimeException.class, () -> application.run());
@@ -68,7 +68,7 @@ class RoamingCdrServiceApplicationTests {
 		// Проверка сообщения об ошибке
 		assertEquals(ERROR_GENERATING_CDR, exception.getMessage());
 
-		// Проверка, что метод generateCDRs был вызван
-		verify(cdrServiceImpl, times(1)).generateCDRs();
+		// Проверка, что генерация была запущена
+		verify(generationJob, times(1)).start();
 	}
 }
\ No newline at end of file
@@ -1,18 +1,29 @@
 package com.example.roaming_cdr_service.controller;
 
-import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.exception.ReportQueueFullException;
+import com.example.roaming_cdr_service.model.ReportStatus;
 import com.example.roaming_cdr_service.service.CDRService;
+import com.example.roaming_cdr_service.service.impl.CDRReportJobs;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -28,48 +39,68 @@ class CDRControllerTest {
     private static final String END_DATE = "2025-02-28T23:59:59";
     private static final String INVALID_DATE = "invalid-date";
     private static final String DATE_FORMAT_ERROR = "Неверный формат даты. Используйте yyyy-MM-dd'T'HH:mm:ss.";
-    private static final String REPORT_SUCCESS_MESSAGE = "Отчет успешно создан";
+    private static final String REPORT_ID = "0b6a3c1e-5f7d-4d7e-9a53-2f1c8e6b4a10";
+    private static final String REPORT_CONTENT = "01,79991112233,79992223344,2025-02-01T00:00:00,2025-02-01T00:05:00\r\n";
+    private static final String REPORT_ACCEPTED_MESSAGE = "Отчет поставлен в очередь. UUID: " + REPORT_ID;
     private static final String NO_DATA_ERROR_MESSAGE = "не найдены записи";
 
 
     @Mock
     private CDRService cdrService;
 
-    @InjectMocks
+    @Mock
+    private CDRReportJobs reportJobs;
+
     private CDRController cdrController;
 
+    @TempDir
+    private Path tempDir;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        cdrController = new CDRController(cdrService, reportJobs, true);
     }
 
     /**
      * Тест для метода {@link CDRController#generateCDRReport(String, String, String)}.
-     * Проверяет успешную генерацию отчёта.
-     * Ожидается, что метод вернет статус 200 и сообщение об успешном создании отчёта.
+     * Проверяет постановку отчёта в очередь.
+     * Ожидается, что метод сразу вернет статус 202, UUID отчёта и ссылку на его состояние.
      */
     @Test
-    void testGenerateCDRReport_Success() {
+    void testGenerateCDRReport_Accepted() {
         // Подготовка данных
         LocalDateTime start = LocalDateTime.parse(START_DATE);
         LocalDateTime end = LocalDateTime.parse(END_DATE);
 
-        CDR cdr = CDR.builder()
-                .callType("01")
-                .msisdn(VALID_MSISDN)
-                .otherMsisdn(OTHER_MSISDN)
-                .callStartTime(LocalDateTime.now())
-                .callEndTime(LocalDateTime.now().plusMinutes(5))
-                .build();
-
-        when(cdrService.getCDRsForSubscriber(eq(VALID_MSISDN), any(), any())).thenReturn(List.of(cdr));
+        when(cdrService.hasCDRsForSubscriber(VALID_MSISDN, start, end)).thenReturn(true);
+        when(reportJobs.submit(VALID_MSISDN, start, end)).thenReturn(status(ReportStatus.State.QUEUED));
 
         // Вызов метода
         ResponseEntity<String> response = cdrController.generateCDRReport(VALID_MSISDN, START_DATE, END_DATE);
 
         // Проверка результата
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals(REPORT_ACCEPTED_MESSAGE, response.getBody());
+        assertEquals("/cdr/reports/" + REPORT_ID, response.getHeaders().getLocation().toString());
+    }
+
+    /**
+     * Тест для метода {@link CDRController#generateCDRReport(String, String, String)}.
+     * Проверяет, что повторный запрос за неизменяемый период возвращает прежний UUID без запросов к базе.
+     */
+    @Test
+    void testGenerateCDRReport_Reused() {
+        LocalDateTime start = LocalDateTime.parse(START_DATE);
+        LocalDateTime end = LocalDateTime.parse(END_DATE);
+        when(reportJobs.findReusable(VALID_MSISDN, start, end)).thenReturn(Optional.of(status(ReportStatus.State.DONE)));
+
+        ResponseEntity<String> response = cdrController.generateCDRReport(VALID_MSISDN, START_DATE, END_DATE);
+
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertTrue(response.getBody().contains("Отчет успешно создан"));
+        assertEquals("Отчет уже построен. UUID: " + REPORT_ID, response.getBody());
+        verifyNoInteractions(cdrService);
+        verify(reportJobs, never()).submit(any(), any(), any());
     }
 
     /**
@@ -87,17 +118,18 @@ class CDRControllerTest {
 
         // Проверка сообщения об ошибке
         assertEquals(DATE_FORMAT_ERROR, exception.getMessage());
+        verifyNoInteractions(reportJobs);
     }
 
     /**
      * Тест для метода {@link CDRController#generateCDRReport(String, String, String)}.
      * Проверяет обработку ошибки при отсутствии данных в БД.
-     * Ожидается, что метод вернет статус 404, так как отсутствие данных является ошибкой.
+     * Ожидается, что метод вернет статус 404, так как отсутствие данных является ошибкой, и не поставит задание в очередь.
      */
     @Test
     void testGenerateCDRReport_NoDataFound() {
 
-        when(cdrService.getCDRsForSubscriber(eq(VALID_MSISDN), any(), any())).thenReturn(Collections.emptyList());
+        when(cdrService.hasCDRsForSubscriber(eq(VALID_MSISDN), any(), any())).thenReturn(false);
 
         // Вызов метода и проверка исключения
         Exception exception = assertThrows(EntityNotFoundException.class, () ->
@@ -106,5 +138,87 @@ class CDRControllerTest {
 
         // Проверка сообщения об ошибке
         assertTrue(exception.getMessage().contains(NO_DATA_ERROR_MESSAGE));
+        verify(reportJobs, never()).submit(any(), any(), any());
+    }
+
+    /**
+     * Тест для метода {@link CDRController#generateCDRReport(String, String, String)}.
+     * Проверяет, что отказ переполненной очереди передаётся обработчику ошибок (статус 429).
+     */
+    @Test
+    void testGenerateCDRReport_QueueFull() {
+        when(cdrService.hasCDRsForSubscriber(eq(VALID_MSISDN), any(), any())).thenReturn(true);
+        when(reportJobs.submit(eq(VALID_MSISDN), any(), any()))
+                .thenThrow(new ReportQueueFullException("Очередь заполнена", new RejectedExecutionException()));
+
+        assertThrows(ReportQueueFullException.class, () ->
+                cdrController.generateCDRReport(VALID_MSISDN, START_DATE, END_DATE));
+    }
+
+    /**
+     * Тест для метода {@link CDRController#generateCDRReports(String, String)}.
+     * Проверяет постановку пакетного отчёта в очередь.
+     */
+    @Test
+    void testGenerateCDRReports_Accepted() {
+        LocalDateTime start = LocalDateTime.parse(START_DATE);
+        LocalDateTime end = LocalDateTime.parse(END_DATE);
+        when(reportJobs.submitBulk(start, end)).thenReturn(status(ReportStatus.State.QUEUED));
+
+        ResponseEntity<String> response = cdrController.generateCDRReports(START_DATE, END_DATE);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("Пакетный отчет поставлен в очередь. UUID: " + REPORT_ID, response.getBody());
+        assertEquals("/cdr/reports/" + REPORT_ID, response.getHeaders().getLocation().toString());
+        assertThrows(IllegalArgumentException.class, () -> cdrController.generateCDRReports(INVALID_DATE, END_DATE));
+    }
+
+    /**
+     * Тест для метода {@link CDRController#getReportStatus(String)}.
+     */
+    @Test
+    void testGetReportStatus() {
+        ReportStatus status = status(ReportStatus.State.RUNNING);
+        when(reportJobs.getStatus(REPORT_ID)).thenReturn(status);
+
+        assertSame(status, cdrController.getReportStatus(REPORT_ID));
+    }
+
+    /**
+     * Тест для метода {@link CDRController#downloadReport(String, HttpServletRequest, HttpServletResponse)}.
+     * Проверяет, что готовый отчёт отдаётся как CSV вложение.
+     */
+    @Test
+    void testDownloadReport() throws Exception {
+        Path file = Files.writeString(tempDir.resolve(VALID_MSISDN + "_" + REPORT_ID + ".csv"), REPORT_CONTENT);
+        when(reportJobs.getReportFile(REPORT_ID)).thenReturn(file);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        cdrController.downloadReport(REPORT_ID, new MockHttpServletRequest(), response);
+
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals("text/csv", response.getContentType());
+        assertTrue(response.getHeader(HttpHeaders.CONTENT_DISPOSITION).contains(file.getFileName().toString()));
+        assertEquals(REPORT_CONTENT, response.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Тест для метода {@link CDRController#downloadReport(String, HttpServletRequest, HttpServletResponse)}.
+     * Проверяет, что неготовый отчёт отклоняется (статус 409).
+     */
+    @Test
+    void testDownloadReport_NotReady() {
+        when(reportJobs.getReportFile(REPORT_ID)).thenThrow(new ConflictException("not ready"));
+
+        assertThrows(ConflictException.class, () ->
+                cdrController.downloadReport(REPORT_ID, new MockHttpServletRequest(), new MockHttpServletResponse()));
+    }
+
+    private static ReportStatus status(ReportStatus.State state) {
+        return ReportStatus.builder()
+                .id(REPORT_ID)
+                .msisdn(VALID_MSISDN)
+                .state(state)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package com.example.roaming_cdr_service.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link FileDownloads}.
+ */
+class FileDownloadsTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+    @TempDir
+    private Path tempDir;
+
+    private Path file;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.writeString(tempDir.resolve("report.csv"), CONTENT);
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+    }
+
+    /**
+     * Проверяет отдачу целого файла через {@code transferTo}.
+     */
+    @Test
+    void testSend_WholeFile() throws Exception {
+        FileDownloads.send(file, CSV, true, request, response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT.length(), response.getContentLengthLong());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("attachment; filename=\"report.csv\"", response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    /**
+     * Проверяет отдачу одного диапазона со статусом 206.
+     */
+    @Test
+    void testSend_Range() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        FileDownloads.send(file, CSV, true, request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 5-9/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(5, response.getContentLengthLong());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("56789", response.getContentAsString());
+    }
+
+    /**
+     * Проверяет диапазоны с открытым концом и суффиксный диапазон.
+     */
+    @Test
+    void testSend_OpenAndSuffixRanges() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=15-");
+        FileDownloads.send(file, CSV, true, request, response);
+        assertEquals("fghij", response.getContentAsString());
+
+        MockHttpServletRequest suffixRequest = new MockHttpServletRequest();
+        MockHttpServletResponse suffixResponse = new MockHttpServletResponse();
+        suffixRequest.addHeader(HttpHeaders.RANGE, "bytes=-3");
+        FileDownloads.send(file, CSV, true, suffixRequest, suffixResponse);
+        assertEquals("bytes 17-19/20", suffixResponse.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("hij", suffixResponse.getContentAsString());
+    }
+
+    /**
+     * Проверяет ответ 416 на диапазон за пределами файла.
+     */
+    @Test
+    void testSend_UnsatisfiableRange() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+
+        FileDownloads.send(file, CSV, true, request, response);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    /**
+     * Проверяет, что передача поручается контейнеру, если он поддерживает sendfile.
+     */
+    @Test
+    void testSend_Sendfile() throws Exception {
+        request.setAttribute(FileDownloads.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-4");
+
+        FileDownloads.send(file, CSV, true, request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute(FileDownloads.SENDFILE_FILENAME_ATTR));
+        assertEquals(2L, request.getAttribute(FileDownloads.SENDFILE_START_ATTR));
+        assertEquals(5L, request.getAttribute(FileDownloads.SENDFILE_END_ATTR));
+        assertEquals(3, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    /**
+     * Проверяет сжатие целого файла, если клиент принимает gzip, и отказ от сжатия, если оно запрещено.
+     */
+    @Test
+    void testSend_Gzip() throws Exception {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8");
+
+        FileDownloads.send(file, CSV, true, request, response);
+
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals(CONTENT, new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+
+        MockHttpServletResponse plain = new MockHttpServletResponse();
+        FileDownloads.send(file, CSV, false, request, plain);
+        assertNull(plain.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(CONTENT, plain.getContentAsString());
+    }
+
+    /**
+     * Проверяет, что {@code gzip;q=0} запрещает сжатие.
+     */
+    @Test
+    void testSend_GzipRefused() throws Exception {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0");
+
+        FileDownloads.send(file, CSV, true, request, response);
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+}
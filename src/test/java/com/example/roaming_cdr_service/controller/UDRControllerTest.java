@@ -1,17 +1,25 @@
 package com.example.roaming_cdr_service.controller;
 
-import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.CallDuration;
 import com.example.roaming_cdr_service.model.UDR;
-import com.example.roaming_cdr_service.repository.CDRRepository;
+import com.example.roaming_cdr_service.service.UDRService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.time.YearMonth;
 import java.util.Map;
+import java.util.function.Consumer;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -26,7 +34,10 @@ class UDRControllerTest {
     private static final String VALID_MONTH = "2025-02";
     private static final String INVALID_MONTH = "invalid-month";
     @Mock
-    private CDRRepository cdrRepository;
+    private UDRService udrService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
 
     @InjectMocks
     private UDRController udrController;
@@ -44,16 +55,8 @@ class UDRControllerTest {
     @Test
     void testGetUDR_Success() {
         // Подготовка данных
-        CDR cdr = CDR.builder()
-                .callType("01")
-                .msisdn(VALID_MSISDN)
-                .otherMsisdn(OTHER_MSISDN)
-                .callStartTime(LocalDateTime.now())
-                .callEndTime(LocalDateTime.now().plusMinutes(5))
-                .build();
-
-        when(cdrRepository.findByMsisdnAndCallStartTimeBetween(any(), any(), any())).thenReturn(Collections.singletonList(cdr));
-        when(cdrRepository.findByOtherMsisdnAndCallStartTimeBetween(any(), any(), any())).thenReturn(Collections.emptyList());
+        UDR expected = createUDR(VALID_MSISDN);
+        when(udrService.getUDR(VALID_MSISDN, YearMonth.of(2025, 2))).thenReturn(expected);
 
         // Вызов метода
         UDR udr = udrController.getUDR(VALID_MSISDN, VALID_MONTH);
@@ -65,6 +68,19 @@ class UDRControllerTest {
         assertNotNull(udr.getOutcomingCall());
     }
 
+    /**
+     * Тест для метода {@link UDRController#getUDR(String, String)}.
+     * Проверяет, что без месяца UDR строится по CDR записям за последний год.
+     */
+    @Test
+    void testGetUDR_WithoutMonth() {
+        UDR expected = createUDR(VALID_MSISDN);
+        when(udrService.getUDR(eq(VALID_MSISDN), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(expected);
+
+        assertSame(expected, udrController.getUDR(VALID_MSISDN, null));
+        verify(udrService, never()).getUDR(any(), any(YearMonth.class));
+    }
+
     /**
      * Тест для метода {@link UDRController#getUDR(String, String)}.
      * Проверяет обработку ошибки при неверном формате месяца.
@@ -84,13 +100,38 @@ class UDRControllerTest {
      */
     @Test
     void testGetUDR_NoDataFound() {
-        when(cdrRepository.findByMsisdnAndCallStartTimeBetween(any(), any(), any())).thenReturn(Collections.emptyList());
-        when(cdrRepository.findByOtherMsisdnAndCallStartTimeBetween(any(), any(), any())).thenReturn(Collections.emptyList());
+        when(udrService.getUDR(eq(VALID_MSISDN), any(YearMonth.class))).thenThrow(new EntityNotFoundException(VALID_MSISDN));
 
         assertThrows(EntityNotFoundException.class, () ->
                 udrController.getUDR(VALID_MSISDN, VALID_MONTH)
         );
     }
+    /**
+     * Тест для метода {@link UDRController#getUDRForRange(String, String, String)}.
+     * Проверяет, что последний день диапазона включается в период.
+     */
+    @Test
+    void testGetUDRForRange_Success() {
+        UDR expected = createUDR(VALID_MSISDN);
+        when(udrService.getUDR(VALID_MSISDN, LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 4, 1, 0, 0)))
+                .thenReturn(expected);
+
+        assertSame(expected, udrController.getUDRForRange(VALID_MSISDN, "2025-01-01", "2025-03-31"));
+    }
+
+    /**
+     * Тест для метода {@link UDRController#getUDRForRange(String, String, String)}.
+     * Проверяет обработку неверного формата даты и перевёрнутого диапазона.
+     */
+    @Test
+    void testGetUDRForRange_Invalid() {
+        assertThrows(IllegalArgumentException.class, () ->
+                udrController.getUDRForRange(VALID_MSISDN, "2025-01", "2025-03-31"));
+        assertThrows(IllegalArgumentException.class, () ->
+                udrController.getUDRForRange(VALID_MSISDN, "2025-04-01", "2025-03-31"));
+        verifyNoInteractions(udrService);
+    }
+
     /**
      * Тест для метода {@link UDRController#getAllUDRs(String)}.
      * Проверяет успешное получение UDR для всех абонентов.
@@ -98,15 +139,7 @@ class UDRControllerTest {
      */
     @Test
     void testGetAllUDRs_Success() {
-        CDR cdr = CDR.builder()
-                .callType("01")
-                .msisdn(VALID_MSISDN)
-                .otherMsisdn(OTHER_MSISDN)
-                .callStartTime(LocalDateTime.now())
-                .callEndTime(LocalDateTime.now().plusMinutes(5))
-                .build();
-
-        when(cdrRepository.findByCallStartTimeBetween(any(), any())).thenReturn(Collections.singletonList(cdr));
+        when(udrService.getAllUDRs(YearMonth.of(2025, 2))).thenReturn(Map.of(VALID_MSISDN, createUDR(VALID_MSISDN)));
 
         // Вызов метода
         Map<String, UDR> udrMap = udrController.getAllUDRs(VALID_MONTH);
@@ -116,4 +149,67 @@ class UDRControllerTest {
         assertFalse(udrMap.isEmpty());
         assertTrue(udrMap.containsKey(VALID_MSISDN));
     }
-}
\ No newline at end of file
+
+    /**
+     * Тест для метода {@link UDRController#streamAllUDRs(String)}.
+     * Проверяет, что каждый UDR записывается отдельной строкой JSON.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamAllUDRs_WritesOneUDRPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<UDR> sink = invocation.getArgument(1);
+            sink.accept(createUDR(VALID_MSISDN));
+            sink.accept(createUDR(OTHER_MSISDN));
+            return null;
+        }).when(udrService).streamAllUDRs(eq(YearMonth.of(2025, 2)), any(Consumer.class));
+
+        ResponseEntity<StreamingResponseBody> response = udrController.streamAllUDRs(VALID_MONTH);
+        int[] flushes = {0};
+        ByteArrayOutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        response.getBody().writeTo(output);
+
+        assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+        assertEquals(objectMapper.writeValueAsString(createUDR(VALID_MSISDN)) + "\n"
+                        + objectMapper.writeValueAsString(createUDR(OTHER_MSISDN)) + "\n",
+                output.toString(StandardCharsets.UTF_8));
+        // Поток сбрасывается один раз при закрытии генератора, а не после каждого UDR
+        assertTrue(flushes[0] <= 1, "Сбросов потока: " + flushes[0]);
+    }
+
+    /**
+     * Тест для метода {@link UDRController#streamAllUDRs(String)}.
+     * Проверяет, что неверный формат месяца отклоняется до начала потока.
+     */
+    @Test
+    void testStreamAllUDRs_InvalidMonthFormat() {
+        assertThrows(IllegalArgumentException.class, () -> udrController.streamAllUDRs(INVALID_MONTH));
+    }
+
+    /**
+     * Тест для метода {@link UDRController#rebuildRollup()}.
+     * Проверяет, что ответ содержит число строк пересчитанной сводной таблицы.
+     */
+    @Test
+    void testRebuildRollup() {
+        when(udrService.rebuildRollup()).thenReturn(42);
+
+        ResponseEntity<String> response = udrController.rebuildRollup();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("42"));
+    }
+
+    private static UDR createUDR(String msisdn) {
+        return UDR.builder()
+                .msisdn(msisdn)
+                .incomingCall(new CallDuration(0))
+                .outcomingCall(new CallDuration(300))
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.roaming_cdr_service.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для классов {@link MsisdnConverter} и {@link CallTypeConverter}.
+ */
+class MsisdnConverterTest {
+
+    /**
+     * Проверяет, что номер восстанавливается из числового ключа без изменений.
+     */
+    @Test
+    void testMsisdn_RoundTrip() {
+        MsisdnConverter converter = new MsisdnConverter();
+
+        assertEquals(79991112233L, converter.convertToDatabaseColumn("79991112233"));
+        assertEquals("79991112233", converter.convertToEntityAttribute(79991112233L));
+        assertEquals("999999999999999999", MsisdnConverter.toMsisdn(MsisdnConverter.toKey("999999999999999999")));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+
+    /**
+     * Проверяет, что номера, которые нельзя восстановить из числа, отклоняются.
+     */
+    @Test
+    void testMsisdn_RejectsLossyValues() {
+        for (String msisdn : new String[]{"", "0791112233", "+79991112233", "7999111223a", "9999999999999999999"}) {
+            assertFalse(MsisdnConverter.isValid(msisdn), msisdn);
+            assertThrows(IllegalArgumentException.class, () -> MsisdnConverter.toKey(msisdn));
+        }
+    }
+
+    /**
+     * Проверяет преобразование типа звонка в байт и обратно с ведущим нулём.
+     */
+    @Test
+    void testCallType_RoundTrip() {
+        CallTypeConverter converter = new CallTypeConverter();
+
+        assertEquals((byte) 1, converter.convertToDatabaseColumn("01"));
+        assertEquals("02", converter.convertToEntityAttribute((byte) 2));
+        assertEquals("99", CallTypeConverter.toCallType(CallTypeConverter.toCode("99")));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertThrows(IllegalArgumentException.class, () -> CallTypeConverter.toCode("1"));
+        assertThrows(IllegalArgumentException.class, () -> CallTypeConverter.toCode("0x"));
+        assertThrows(IllegalArgumentException.class, () -> CallTypeConverter.toCallType((byte) -1));
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.UDRRollup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для классов {@link CDRArchiveWriter} и {@link CDRArchiveFile}.
+ */
+class CDRArchiveFileTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 2);
+    private static final LocalDateTime START = MONTH.atDay(1).atStartOfDay();
+    private static final LocalDateTime END = MONTH.plusMonths(1).atDay(1).atStartOfDay();
+    private static final List<String> MSISDNS = List.of(
+            "79991112233", "79992221122", "79993332211", "79994443322", "79995554433");
+
+    @TempDir
+    private Path tempDir;
+
+    private List<CDR> cdrs;
+    private CDRArchiveFile archive;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Random random = new Random(42);
+        cdrs = new ArrayList<>();
+        LocalDateTime time = START;
+        for (int i = 0; i < 1000; i++) {
+            // Несколько звонков подряд начинаются в одну секунду
+            time = time.plusSeconds(random.nextInt(4) == 0 ? 0 : random.nextInt(5000));
+            if (!time.isBefore(END)) {
+                break;
+            }
+            String caller = MSISDNS.get(random.nextInt(MSISDNS.size()));
+            String receiver = i == 10 ? caller : MSISDNS.get(random.nextInt(MSISDNS.size()));
+            cdrs.add(cdr(random.nextBoolean() ? "01" : "02", caller, receiver, time, random.nextInt(100_000)));
+        }
+
+        CDRArchiveWriter writer = new CDRArchiveWriter(MONTH);
+        for (CDR cdr : cdrs) {
+            writer.add(cdr.getCallType(), cdr.getMsisdn(), cdr.getOtherMsisdn(), cdr.getCallStartTime(), cdr.getCallEndTime());
+        }
+        Path file = tempDir.resolve("cdr-2025-02.cdra");
+        long size = writer.write(file);
+        assertEquals(Files.size(file), size);
+        archive = CDRArchiveFile.open(file);
+    }
+
+    /**
+     * Проверяет, что архив возвращает все звонки месяца и звонки произвольного диапазона
+     * в исходном порядке, с границами включительно.
+     */
+    @Test
+    void testForEachCall_MatchesSource() {
+        assertEquals(MONTH, archive.getMonth());
+        assertEquals(cdrs.size(), archive.size());
+        assertEquals(cdrs, calls(START, END));
+
+        LocalDateTime from = cdrs.get(300).getCallStartTime();
+        LocalDateTime to = cdrs.get(700).getCallStartTime();
+        assertEquals(cdrs.stream().filter(cdr -> between(cdr, from, to)).toList(), calls(from, to));
+
+        // Дробная часть секунды на границе исключает звонки, начавшиеся в эту секунду
+        assertEquals(cdrs.stream().filter(cdr -> cdr.getCallStartTime().isAfter(from)).toList(),
+                calls(from.plusNanos(1), END));
+    }
+
+    /**
+     * Проверяет выборку звонков абонента по индексу, включая звонок абонента самому себе,
+     * который, как и в выборке из таблицы, возвращается дважды.
+     */
+    @Test
+    void testForEachSubscriberCall_MatchesSource() {
+        LocalDateTime from = cdrs.get(5).getCallStartTime();
+        LocalDateTime to = cdrs.get(900).getCallStartTime();
+        for (String msisdn : MSISDNS) {
+            List<CDR> expected = new ArrayList<>();
+            for (CDR cdr : cdrs) {
+                if (between(cdr, from, to)) {
+                    if (msisdn.equals(cdr.getMsisdn())) {
+                        expected.add(cdr);
+                    }
+                    if (msisdn.equals(cdr.getOtherMsisdn())) {
+                        expected.add(cdr);
+                    }
+                }
+            }
+            List<CDR> actual = new ArrayList<>();
+            archive.forEachSubscriberCall(msisdn, from, to, actual::add);
+
+            assertEquals(expected, actual);
+            assertEquals(!expected.isEmpty(), archive.hasSubscriberCalls(msisdn, from, to));
+        }
+        assertFalse(archive.hasSubscriberCalls("70000000000", START, END));
+    }
+
+    /**
+     * Проверяет суммы длительностей за полуоткрытый диапазон и сводные записи месяца.
+     */
+    @Test
+    void testDurationsAndAggregate_MatchSource() {
+        LocalDateTime from = cdrs.get(100).getCallStartTime();
+        LocalDateTime to = cdrs.get(600).getCallStartTime();
+        List<UDRRollup> rollups = archive.aggregate();
+        assertEquals(MSISDNS.stream().sorted().toList(), rollups.stream().map(UDRRollup::getMsisdn).toList());
+
+        for (UDRRollup rollup : rollups) {
+            String msisdn = rollup.getMsisdn();
+            long[] expected = new long[2];
+            long[] expectedMonth = new long[4];
+            for (CDR cdr : cdrs) {
+                long seconds = Duration.between(cdr.getCallStartTime(), cdr.getCallEndTime()).getSeconds();
+                int type = "01".equals(cdr.getCallType()) ? 1 : 0;
+                int parties = (msisdn.equals(cdr.getMsisdn()) ? 1 : 0) + (msisdn.equals(cdr.getOtherMsisdn()) ? 1 : 0);
+                if (!cdr.getCallStartTime().isBefore(from) && cdr.getCallStartTime().isBefore(to)) {
+                    expected[type] += parties * seconds;
+                }
+                expectedMonth[type] += parties * seconds;
+                expectedMonth[2 + type] += parties;
+            }
+            long[] seconds = new long[2];
+            archive.addSubscriberCallDurations(seconds, msisdn, from, to);
+
+            assertArrayEquals(expected, seconds);
+            assertEquals(expectedMonth[0], rollup.getIncomingSeconds());
+            assertEquals(expectedMonth[1], rollup.getOutgoingSeconds());
+            assertEquals(expectedMonth[2], rollup.getIncomingCalls());
+            assertEquals(expectedMonth[3], rollup.getOutgoingCalls());
+        }
+    }
+
+    /**
+     * Проверяет, что архив отклоняет звонки, которые нельзя восстановить без потерь.
+     */
+    @Test
+    void testAdd_RejectsLossyCalls() {
+        CDRArchiveWriter writer = new CDRArchiveWriter(MONTH);
+        String msisdn = MSISDNS.get(0);
+        String other = MSISDNS.get(1);
+
+        assertThrows(IllegalStateException.class, () -> writer.add("03", msisdn, other, START, START.plusSeconds(1)));
+        assertThrows(IllegalStateException.class,
+                () -> writer.add("01", msisdn, other, START.plusNanos(500), START.plusSeconds(1)));
+        assertThrows(IllegalStateException.class, () -> writer.add("01", msisdn, other, END, END.plusSeconds(1)));
+        assertThrows(IllegalStateException.class, () -> writer.add("01", msisdn, null, START, START.plusSeconds(1)));
+        writer.add("01", msisdn, other, START.plusHours(1), START.plusHours(2));
+        assertThrows(IllegalStateException.class, () -> writer.add("01", msisdn, other, START, START.plusSeconds(1)));
+        assertEquals(1, writer.size());
+    }
+
+    private List<CDR> calls(LocalDateTime from, LocalDateTime to) {
+        List<CDR> calls = new ArrayList<>();
+        archive.forEachCall(from, to, calls::add);
+        return calls;
+    }
+
+    private static boolean between(CDR cdr, LocalDateTime from, LocalDateTime to) {
+        return !cdr.getCallStartTime().isBefore(from) && !cdr.getCallStartTime().isAfter(to);
+    }
+
+    private static CDR cdr(String callType, String msisdn, String otherMsisdn, LocalDateTime start, long seconds) {
+        return CDR.builder()
+                .callType(callType)
+                .msisdn(msisdn)
+                .otherMsisdn(otherMsisdn)
+                .callStartTime(start)
+                .callEndTime(start.plusSeconds(seconds))
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.model.ArchivedMonth;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.service.impl.CDRGenerationJob;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для класса {@link CDRArchive} на встроенной базе H2.
+ * Перенос месяца фиксирует собственную транзакцию, поэтому тесты выполняются без общей транзакции.
+ */
+@DataJpaTest
+@Import({CDRArchive.class, CDRPartitions.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CDRArchiveTest {
+
+    private static final String MSISDN = "79991112233";
+    private static final String OTHER_MSISDN = "79992223344";
+    private static final YearMonth MONTH = YearMonth.of(2025, 2);
+    private static final LocalDateTime START = MONTH.atDay(1).atStartOfDay();
+    private static final Path ARCHIVE_DIRECTORY = createArchiveDirectory();
+
+    @MockitoBean
+    private CDRGenerationJob generationJob; // Нужен только для запуска класса приложения в срезе JPA
+
+    @Autowired
+    private CDRArchive archive;
+
+    @Autowired
+    private CDRRepository cdrRepository;
+
+    @Autowired
+    private ArchivedMonthRepository catalog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CDRPartitions partitions;
+
+    @DynamicPropertySource
+    static void archiveDirectory(DynamicPropertyRegistry registry) {
+        registry.add("cdr.archive.directory", ARCHIVE_DIRECTORY::toString);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cdrRepository.deleteAll();
+    }
+
+    /**
+     * Проверяет, что звонки месяца переносятся в файл архива и удаляются из таблицы,
+     * а звонки соседних месяцев остаются в таблице.
+     */
+    @Test
+    void testArchive_MovesMonthToFile() {
+        List<CDR> february = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            february.add(cdrRepository.save(cdr(i % 2 == 0 ? "01" : "02", MSISDN, OTHER_MSISDN, START.plusMinutes(90L * i))));
+        }
+        CDR march = cdrRepository.save(cdr("01", OTHER_MSISDN, MSISDN, START.plusMonths(1)));
+
+        ArchivedMonth archivedMonth = archive.archive(MONTH);
+
+        assertEquals(MONTH.atDay(1), archivedMonth.getMonthStart());
+        assertEquals(february.size(), archivedMonth.getRowCount());
+        assertTrue(Files.exists(ARCHIVE_DIRECTORY.resolve(archivedMonth.getFileName())));
+        assertEquals(List.of(archivedMonth.getMonthStart()),
+                catalog.findAll().stream().map(ArchivedMonth::getMonthStart).toList());
+        assertEquals(List.of(march.getId()), cdrRepository.findAll().stream().map(CDR::getId).toList());
+
+        List<CDR> archived = new ArrayList<>();
+        archive.find(MONTH).orElseThrow().forEachSubscriberCall(MSISDN, START, START.plusMonths(1), archived::add);
+        february.forEach(cdr -> cdr.setId(null));
+        assertEquals(february, archived);
+        assertEquals(1, archive.find(START, START.plusMonths(2)).size());
+        assertTrue(archive.find(START.plusMonths(1), START.plusMonths(2)).isEmpty());
+
+        assertThrows(ConflictException.class, () -> archive.archive(MONTH));
+        assertThrows(EntityNotFoundException.class, () -> archive.archive(MONTH.minusMonths(1)));
+    }
+
+    /**
+     * Проверяет, что перенос месяца читает его секцию вместе с секцией по умолчанию и удаляет секцию целиком.
+     */
+    @Test
+    void testArchive_DropsMonthPartition() {
+        YearMonth month = MONTH.minusMonths(3);
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        String partition = partitions.ensure(month);
+        for (int i = 0; i < 50; i++) {
+            jdbcTemplate.update("INSERT INTO " + partition + " VALUES (?, ?, ?, ?, ?, ?)", 1_000_000L + i,
+                    "01", MSISDN, OTHER_MSISDN, start.plusHours(i), start.plusHours(i).plusSeconds(61));
+        }
+        cdrRepository.save(cdr("02", OTHER_MSISDN, MSISDN, start.plusMinutes(30)));
+
+        ArchivedMonth archivedMonth = archive.archive(month);
+
+        assertEquals(51, archivedMonth.getRowCount());
+        assertTrue(partitions.find(month).isEmpty());
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = ?", Long.class, partition.toUpperCase()));
+        assertEquals(0, cdrRepository.count());
+        List<CDR> archived = new ArrayList<>();
+        archive.find(month).orElseThrow().forEachSubscriberCall(MSISDN, start, start.plusMonths(1), archived::add);
+        assertEquals(51, archived.size());
+        assertEquals(start.plusMinutes(30), archived.get(1).getCallStartTime());
+    }
+
+    /**
+     * Проверяет, что месяц со звонками, которые нельзя сохранить без потерь, не переносится в архив.
+     */
+    @Test
+    void testArchive_RejectsLossyMonth() {
+        YearMonth month = MONTH.minusYears(1);
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        cdrRepository.save(cdr("01", MSISDN, OTHER_MSISDN, start));
+        cdrRepository.save(cdr("03", MSISDN, OTHER_MSISDN, start.plusHours(1)));
+
+        assertThrows(IllegalStateException.class, () -> archive.archive(month));
+
+        assertTrue(archive.find(month).isEmpty());
+        assertFalse(catalog.existsById(month.atDay(1)));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cdr", Long.class));
+    }
+
+    private static CDR cdr(String callType, String msisdn, String otherMsisdn, LocalDateTime start) {
+        return CDR.builder()
+                .callType(callType)
+                .msisdn(msisdn)
+                .otherMsisdn(otherMsisdn)
+                .callStartTime(start)
+                .callEndTime(start.plusSeconds(61))
+                .build();
+    }
+
+    private static Path createArchiveDirectory() {
+        try {
+            return Files.createTempDirectory("cdr-archive-test");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.CallTypeConverter;
+import com.example.roaming_cdr_service.model.MsisdnConverter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для класса {@link CDRBulkWriter} на встроенной базе H2.
+ */
+class CDRBulkWriterTest {
+
+    private static final String MSISDN = "79991112233";
+    private static final String OTHER_MSISDN = "79992223344";
+    private static final int BATCH_SIZE = 1000;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private UDRRollupWriter rollupWriter;
+    private CDRPartitions partitions;
+    private CDRBulkWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:bulk_writer_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE SEQUENCE cdr_seq START WITH 1 INCREMENT BY " + CDR.ID_ALLOCATION_SIZE);
+        jdbcTemplate.execute("CREATE TABLE cdr (id BIGINT PRIMARY KEY, call_type TINYINT, msisdn BIGINT, "
+                + "other_msisdn BIGINT, call_start_time TIMESTAMP, call_end_time TIMESTAMP)");
+        rollupWriter = mock(UDRRollupWriter.class);
+        partitions = new CDRPartitions(jdbcTemplate);
+        writer = new CDRBulkWriter(jdbcTemplate, rollupWriter, mock(CDRColumnStore.class), partitions, BATCH_SIZE);
+    }
+
+    /**
+     * Проверяет вставку пакета, размер которого не кратен числу строк в одном {@code INSERT}.
+     */
+    @Test
+    void testInsertAll_WritesAllRowsWithUniqueIds() {
+        List<CDR> cdrs = createCDRs(2345);
+
+        assertEquals(cdrs.size(), writer.insertAll(cdrs));
+        assertEquals(cdrs.size(), writer.insertAll(createCDRs(cdrs.size())));
+
+        String partition = partitions.find(YearMonth.from(START)).orElseThrow();
+        assertEquals(2L * cdrs.size(), count("SELECT COUNT(*) FROM " + partition));
+        assertEquals(2L * cdrs.size(), count("SELECT COUNT(DISTINCT id) FROM " + partition));
+        assertEquals(0L, count("SELECT COUNT(*) FROM cdr"));
+        assertEquals(2L * cdrs.size(), writer.getRowsWritten());
+
+        Set<Long> ids = new HashSet<>();
+        cdrs.forEach(cdr -> ids.add(cdr.getId()));
+        assertEquals(cdrs.size(), ids.size());
+    }
+
+    /**
+     * Проверяет, что записанные значения совпадают с исходными, а номера и тип звонка хранятся числами.
+     */
+    @Test
+    void testInsertAll_PreservesValues() {
+        CDR cdr = createCDRs(1).get(0);
+        writer.insertAll(List.of(cdr));
+
+        String partition = partitions.find(YearMonth.from(START)).orElseThrow();
+        CDR stored = jdbcTemplate.queryForObject("SELECT * FROM " + partition + " WHERE id = ?", (rs, rowNum) -> CDR.builder()
+                .id(rs.getLong("id"))
+                .callType(CallTypeConverter.toCallType(rs.getObject("call_type", Byte.class)))
+                .msisdn(MsisdnConverter.toMsisdn(rs.getObject("msisdn", Long.class)))
+                .otherMsisdn(MsisdnConverter.toMsisdn(rs.getObject("other_msisdn", Long.class)))
+                .callStartTime(rs.getObject("call_start_time", LocalDateTime.class))
+                .callEndTime(rs.getObject("call_end_time", LocalDateTime.class))
+                .build(), cdr.getId());
+
+        assertEquals(cdr, stored);
+        assertEquals(Long.parseLong(MSISDN), jdbcTemplate.queryForObject("SELECT msisdn FROM " + partition, Object.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT call_type FROM " + partition, Integer.class));
+        verify(rollupWriter).addAll(List.of(cdr));
+    }
+
+    /**
+     * Проверяет, что пакет на стыке месяцев раскладывается по секциям месяцев начала звонков.
+     */
+    @Test
+    void testInsertAll_RoutesRowsToMonthPartitions() {
+        List<CDR> cdrs = createCDRs(250);
+        cdrs.forEach(cdr -> {
+            cdr.setCallStartTime(cdr.getCallStartTime().minusHours(2));
+            cdr.setCallEndTime(cdr.getCallEndTime().minusHours(2));
+        });
+
+        writer.insertAll(cdrs);
+
+        assertEquals(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2)), partitions.months());
+        assertEquals(120L, count("SELECT COUNT(*) FROM cdr_2025_01"));
+        assertEquals(130L, count("SELECT COUNT(*) FROM cdr_2025_02"));
+        assertEquals(0L, count("SELECT COUNT(*) FROM cdr"));
+    }
+
+    /**
+     * Проверяет, что пустой пакет ничего не записывает.
+     */
+    @Test
+    void testInsertAll_Empty() {
+        assertEquals(0, writer.insertAll(List.of()));
+        assertTrue(partitions.months().isEmpty());
+        assertEquals(0L, count("SELECT COUNT(*) FROM cdr"));
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    private List<CDR> createCDRs(int count) {
+        List<CDR> cdrs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            cdrs.add(CDR.builder()
+                    .callType(i % 2 == 0 ? "01" : "02")
+                    .msisdn(MSISDN)
+                    .otherMsisdn(OTHER_MSISDN)
+                    .callStartTime(START.plusMinutes(i))
+                    .callEndTime(START.plusMinutes(i).plusSeconds(30))
+                    .build());
+        }
+        return cdrs;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.UDRRollup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для класса {@link CDRColumnStore} на встроенной базе H2.
+ */
+class CDRColumnStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 0, 0);
+    private static final LocalDateTime END = START.plusMonths(1);
+    private static final List<String> MSISDNS = List.of(
+            "79991112233", "79992221122", "79993332211", "79994443322", "79995554433");
+
+    private JdbcTemplate jdbcTemplate;
+    private CDRArchive cdrArchive;
+    private CDRPartitions partitions;
+    private List<CDR> cdrs;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:column_store_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE cdr (id BIGINT PRIMARY KEY, call_type TINYINT, msisdn BIGINT, "
+                + "other_msisdn BIGINT, call_start_time TIMESTAMP, call_end_time TIMESTAMP)");
+        cdrArchive = mock(CDRArchive.class);
+        partitions = new CDRPartitions(jdbcTemplate);
+
+        Random random = new Random(42);
+        cdrs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String caller = MSISDNS.get(random.nextInt(MSISDNS.size()));
+            String receiver = i == 10 ? caller : MSISDNS.get(random.nextInt(MSISDNS.size()));
+            LocalDateTime start = START.plusSeconds(random.nextInt((int) Duration.between(START, END).getSeconds()));
+            cdrs.add(CDR.builder()
+                    .id(i + 1L)
+                    .callType(i == 20 ? "03" : random.nextBoolean() ? "01" : "02")
+                    .msisdn(caller)
+                    .otherMsisdn(receiver)
+                    .callStartTime(start)
+                    .callEndTime(start.plusSeconds(random.nextInt(10_000)))
+                    .build());
+        }
+    }
+
+    /**
+     * Проверяет, что суммы по загруженным из таблицы и архива звонкам совпадают с суммами по исходным записям,
+     * включая звонок абонента самому себе и звонок неизвестного типа.
+     */
+    @Test
+    void testLoad_SumsMatchSource() {
+        // Первая половина звонков — в архиве, вторая — в секции месяца и в секции по умолчанию;
+        // порядок времени начала общий не соблюдён
+        List<CDR> archived = cdrs.subList(0, cdrs.size() / 2);
+        String partition = partitions.ensure(YearMonth.from(START));
+        for (CDR cdr : cdrs.subList(cdrs.size() / 2, cdrs.size())) {
+            insert(cdr.getId() % 2 == 0 ? partition : CDRPartitions.DEFAULT_TABLE, cdr);
+        }
+        CDRArchiveFile file = mock(CDRArchiveFile.class);
+        when(file.getStart()).thenReturn(START);
+        doAnswer(invocation -> {
+            archived.forEach(invocation.<Consumer<CDR>>getArgument(2));
+            return null;
+        }).when(file).forEachCall(eq(START), eq(END), any());
+        when(cdrArchive.find(LocalDateTime.MIN, LocalDateTime.MAX)).thenReturn(List.of(file));
+
+        CDRColumnStore store = createStore();
+        store.load();
+
+        assertEquals(cdrs.size(), store.size());
+        LocalDateTime from = START.plusDays(3).plusNanos(1);
+        LocalDateTime to = START.plusDays(20);
+        for (String msisdn : MSISDNS) {
+            long[] seconds = new long[2];
+            assertTrue(store.addSubscriberCallDurations(seconds, msisdn, from, to));
+            assertArrayEquals(sum(msisdn, from, to), seconds);
+        }
+        assertFalse(store.addSubscriberCallDurations(new long[2], "70000000000", START, END));
+        assertFalse(store.addSubscriberCallDurations(new long[2], MSISDNS.get(0), END, END.plusDays(1)));
+
+        List<UDRRollup> rollups = store.aggregate(START.toLocalDate(), START, END);
+        assertEquals(MSISDNS, rollups.stream().map(UDRRollup::getMsisdn).toList());
+        for (UDRRollup rollup : rollups) {
+            long[] seconds = sum(rollup.getMsisdn(), START, END);
+            assertEquals(START.toLocalDate(), rollup.getMonthStart());
+            assertEquals(seconds[0], rollup.getIncomingSeconds());
+            assertEquals(seconds[1], rollup.getOutgoingSeconds());
+        }
+    }
+
+    /**
+     * Проверяет, что звонки, записанные в транзакции, появляются только после её фиксации.
+     */
+    @Test
+    void testAddAll_AppliesAfterCommit() {
+        CDRColumnStore store = createStore();
+        store.load();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.addAll(cdrs.subList(0, 100));
+            assertEquals(0, store.size());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(0, store.size());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.addAll(cdrs.subList(0, 100));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(100, store.size());
+
+        store.addAll(cdrs.subList(100, cdrs.size()));
+        assertEquals(cdrs.size(), store.size());
+        for (String msisdn : MSISDNS) {
+            long[] seconds = new long[2];
+            store.addSubscriberCallDurations(seconds, msisdn, START, END);
+            assertArrayEquals(sum(msisdn, START, END), seconds);
+        }
+    }
+
+    /**
+     * Проверяет, что пакеты со звонками раньше уже записанных, пришедшие вперемешку, становятся
+     * отдельными сериями: серий остаётся логарифмически мало, а суммы по диапазонам совпадают с исходными записями.
+     */
+    @Test
+    void testAddAll_OutOfOrderBatchesFormFewRuns() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CDRColumnStore store = new CDRColumnStore(jdbcTemplate, cdrArchive, partitions, true, meterRegistry);
+        store.load();
+        List<CDR> byStart = new ArrayList<>(cdrs);
+        byStart.sort(Comparator.comparing(CDR::getCallStartTime));
+
+        store.addAll(byStart.subList(byStart.size() / 2, byStart.size()));
+        assertEquals(1, store.runs());
+        // Звонки первой половины месяца приходят позже и вперемешку
+        List<CDR> late = byStart.subList(0, byStart.size() / 2);
+        for (int i = 0; i < late.size(); i += 100) {
+            store.addAll(cdrs.stream().filter(late.subList(i, i + 100)::contains).toList());
+            assertTrue(store.runs() <= 6, "Серий: " + store.runs());
+        }
+
+        assertEquals(cdrs.size(), store.size());
+        assertTrue(meterRegistry.get("cdr.udr.store.merges").counter().count() > 0);
+        assertEquals(store.runs(), meterRegistry.get("cdr.udr.store.runs").gauge().value());
+        assertSumsMatch(store);
+    }
+
+    /**
+     * Проверяет, что дозапись прошлого периода пакетами по возрастанию времени (как при заполнении
+     * нагрузочного прогона) дописывается в одну серию, а не переписывает хранилище на каждом пакете.
+     */
+    @Test
+    void testAddAll_BackfillAppendsToOneRun() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CDRColumnStore store = new CDRColumnStore(jdbcTemplate, cdrArchive, partitions, true, meterRegistry);
+        store.load();
+        List<CDR> byStart = new ArrayList<>(cdrs);
+        byStart.sort(Comparator.comparing(CDR::getCallStartTime));
+
+        store.addAll(byStart.subList(byStart.size() / 2, byStart.size()));
+        List<CDR> backfill = byStart.subList(0, byStart.size() / 2);
+        for (int i = 0; i < backfill.size(); i += 10) {
+            store.addAll(backfill.subList(i, i + 10));
+            assertTrue(store.runs() <= 2, "Серий: " + store.runs());
+        }
+
+        assertEquals(cdrs.size(), store.size());
+        assertTrue(meterRegistry.get("cdr.udr.store.merges").counter().count() <= 1);
+        assertSumsMatch(store);
+    }
+
+    /**
+     * Проверяет, что выключенное хранилище не загружает и не принимает звонки.
+     */
+    @Test
+    void testDisabled_IgnoresCalls() {
+        CDRColumnStore store = new CDRColumnStore(jdbcTemplate, cdrArchive, partitions, false, new SimpleMeterRegistry());
+        store.load();
+        store.addAll(cdrs);
+
+        assertFalse(store.isAvailable());
+        assertEquals(0, store.size());
+        verifyNoInteractions(cdrArchive);
+    }
+
+    private void assertSumsMatch(CDRColumnStore store) {
+        LocalDateTime from = START.plusDays(3).plusNanos(1);
+        LocalDateTime to = START.plusDays(20);
+        for (String msisdn : MSISDNS) {
+            long[] seconds = new long[2];
+            assertTrue(store.addSubscriberCallDurations(seconds, msisdn, from, to));
+            assertArrayEquals(sum(msisdn, from, to), seconds);
+        }
+        for (UDRRollup rollup : store.aggregate(START.toLocalDate(), from, to)) {
+            long[] seconds = sum(rollup.getMsisdn(), from, to);
+            assertEquals(seconds[0], rollup.getIncomingSeconds());
+            assertEquals(seconds[1], rollup.getOutgoingSeconds());
+        }
+    }
+
+    private CDRColumnStore createStore() {
+        return new CDRColumnStore(jdbcTemplate, cdrArchive, partitions, true, new SimpleMeterRegistry());
+    }
+
+    private void insert(String table, CDR cdr) {
+        jdbcTemplate.update("INSERT INTO " + table + " VALUES (?, ?, ?, ?, ?, ?)", cdr.getId(), cdr.getCallType(),
+                cdr.getMsisdn(), cdr.getOtherMsisdn(), cdr.getCallStartTime(), cdr.getCallEndTime());
+    }
+
+    private long[] sum(String msisdn, LocalDateTime from, LocalDateTime to) {
+        long[] seconds = new long[2];
+        for (CDR cdr : cdrs) {
+            if (cdr.getCallStartTime().isBefore(from) || !cdr.getCallStartTime().isBefore(to)) {
+                continue;
+            }
+            int parties = (msisdn.equals(cdr.getMsisdn()) ? 1 : 0) + (msisdn.equals(cdr.getOtherMsisdn()) ? 1 : 0);
+            long duration = Duration.between(cdr.getCallStartTime(), cdr.getCallEndTime()).getSeconds();
+            if ("02".equals(cdr.getCallType())) {
+                seconds[0] += parties * duration;
+            } else if ("01".equals(cdr.getCallType())) {
+                seconds[1] += parties * duration;
+            }
+        }
+        return seconds;
+    }
+}
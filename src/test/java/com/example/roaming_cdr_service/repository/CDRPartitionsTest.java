@@ -0,0 +1,85 @@
+package com.example.roaming_cdr_service.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link CDRPartitions} на встроенной базе H2.
+ */
+class CDRPartitionsTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 2);
+    private static final LocalDateTime START = MONTH.atDay(1).atStartOfDay();
+
+    private JdbcTemplate jdbcTemplate;
+    private CDRPartitions partitions;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:cdr_partitions_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        partitions = new CDRPartitions(jdbcTemplate);
+        partitions.init();
+    }
+
+    /**
+     * Проверяет, что секция создаётся один раз с индексами и принимает только звонки своего месяца.
+     */
+    @Test
+    void testEnsure_CreatesMonthTable() {
+        String table = partitions.ensure(MONTH);
+
+        assertEquals("cdr_2025_02", table);
+        assertSame(table, partitions.ensure(MONTH));
+        assertEquals(List.of("IDX_CDR_2025_02_MSISDN_START", "IDX_CDR_2025_02_OTHER_MSISDN_START", "IDX_CDR_2025_02_START"),
+                jdbcTemplate.queryForList("SELECT index_name FROM information_schema.indexes "
+                        + "WHERE table_name = 'CDR_2025_02' AND index_name LIKE 'IDX_%' ORDER BY index_name", String.class));
+
+        jdbcTemplate.update("INSERT INTO " + table + " VALUES (1, 1, 79991112233, 79992223344, ?, ?)",
+                START, START.plusMinutes(1));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO " + table + " VALUES (2, 1, 79991112233, 79992223344, ?, ?)",
+                START.plusMonths(1), START.plusMonths(1).plusMinutes(1)));
+    }
+
+    /**
+     * Проверяет, что запрос за диапазон получает только секции пересекающихся месяцев и секцию по умолчанию.
+     */
+    @Test
+    void testTables_PrunesByRange() {
+        partitions.ensure(MONTH.plusMonths(2));
+        partitions.ensure(MONTH);
+        partitions.ensure(MONTH.plusMonths(1));
+
+        assertEquals(List.of("cdr_2025_02", "cdr_2025_03", "cdr_2025_04", "cdr"), partitions.tables());
+        assertEquals(List.of("cdr_2025_03", "cdr"), partitions.tables(START.plusMonths(1), START.plusMonths(2).minusNanos(1)));
+        assertEquals(List.of("cdr_2025_02", "cdr_2025_03", "cdr"), partitions.tables(START.minusYears(1), START.plusMonths(1)));
+        assertEquals(List.of("cdr"), partitions.tables(START.plusMonths(1), START));
+    }
+
+    /**
+     * Проверяет, что удалённая секция исчезает из базы, а оставшиеся находятся при следующем запуске.
+     */
+    @Test
+    void testDropAndInit() {
+        partitions.ensure(MONTH);
+        partitions.ensure(MONTH.plusMonths(1));
+
+        assertTrue(partitions.drop(MONTH));
+        assertFalse(partitions.drop(MONTH));
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'CDR_2025_02'", Long.class));
+
+        CDRPartitions restarted = new CDRPartitions(jdbcTemplate);
+        restarted.init();
+        assertEquals(List.of(MONTH.plusMonths(1)), restarted.months());
+        assertTrue(restarted.find(MONTH).isEmpty());
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.example.roaming_cdr_service.model.CallTypeTotal;
+import com.example.roaming_cdr_service.service.impl.CDRGenerationJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для запросов {@link CDRRepository} на встроенной базе H2.
+ */
+@DataJpaTest
+@Import({CDRPartitions.class, SimpleMeterRegistry.class})
+class CDRRepositoryTest {
+
+    private static final String MSISDN = "79991112233";
+    private static final String OTHER_MSISDN = "79992223344";
+    private static final String THIRD_MSISDN = "79993334455";
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+    @MockitoBean
+    private CDRGenerationJob generationJob; // Нужен только для запуска класса приложения в срезе JPA
+
+    @Autowired
+    private CDRRepository cdrRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CDRPartitions partitions;
+
+    /**
+     * Проверяет, что запрос возвращает звонки абонента в обоих направлениях, упорядоченные по времени начала,
+     * и не возвращает чужие звонки и звонки вне диапазона.
+     */
+    @Test
+    void testFindSubscriberCalls_BothDirectionsOrderedByStart() {
+        CDR incoming = cdrRepository.save(cdr("02", OTHER_MSISDN, MSISDN, START.plusHours(1)));
+        CDR outgoing = cdrRepository.save(cdr("01", MSISDN, OTHER_MSISDN, START.plusHours(3)));
+        CDR earliest = cdrRepository.save(cdr("01", THIRD_MSISDN, MSISDN, START));
+        cdrRepository.save(cdr("01", OTHER_MSISDN, THIRD_MSISDN, START.plusHours(2)));
+        cdrRepository.save(cdr("01", MSISDN, OTHER_MSISDN, START.plusMonths(1)));
+
+        List<CDR> result = cdrRepository.findSubscriberCalls(MSISDN, START, START.plusDays(1));
+
+        assertEquals(List.of(earliest.getId(), incoming.getId(), outgoing.getId()),
+                result.stream().map(CDR::getId).toList());
+    }
+
+    /**
+     * Проверяет, что потоковый запрос возвращает те же записи и в том же порядке, что и списочный.
+     */
+    @Test
+    void testStreamSubscriberCalls_SameAsFind() {
+        cdrRepository.save(cdr("02", OTHER_MSISDN, MSISDN, START.plusHours(1)));
+        cdrRepository.save(cdr("01", MSISDN, OTHER_MSISDN, START.plusHours(3)));
+        cdrRepository.save(cdr("01", THIRD_MSISDN, MSISDN, START));
+        cdrRepository.save(cdr("01", OTHER_MSISDN, THIRD_MSISDN, START.plusHours(2)));
+
+        // Записи должны читаться из базы, а не браться из контекста персистентности
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> expected = cdrRepository.findSubscriberCalls(MSISDN, START, START.plusDays(1)).stream()
+                .map(CDR::getId).toList();
+        try (Stream<CDR> stream = cdrRepository.streamSubscriberCalls(MSISDN, START, START.plusDays(1))) {
+            assertEquals(expected, stream.map(CDR::getId).toList());
+        }
+        assertEquals(3, expected.size());
+    }
+
+    /**
+     * Проверяет потоковое чтение всех звонков периода в порядке времени начала.
+     */
+    @Test
+    void testStreamByCallStartTimeBetween() {
+        CDR second = cdrRepository.save(cdr("01", OTHER_MSISDN, THIRD_MSISDN, START.plusHours(2)));
+        CDR first = cdrRepository.save(cdr("02", OTHER_MSISDN, MSISDN, START.plusHours(1)));
+        cdrRepository.save(cdr("01", MSISDN, OTHER_MSISDN, START.plusDays(2)));
+        entityManager.flush();
+        entityManager.clear();
+
+        try (Stream<CDR> stream = cdrRepository.streamByCallStartTimeBetween(START, START.plusDays(1))) {
+            assertEquals(List.of(first.getId(), second.getId()), stream.map(CDR::getId).toList());
+        }
+    }
+
+    /**
+     * Проверяет, что запросы объединяют секции месяцев с секцией по умолчанию в порядке времени начала
+     * и не читают звонки месяцев вне диапазона.
+     */
+    @Test
+    void testPartitionedCalls_MergedWithDefaultTable() {
+        String january = partitions.ensure(YearMonth.of(2025, 1));
+        String february = partitions.ensure(YearMonth.of(2025, 2));
+        String march = partitions.ensure(YearMonth.of(2025, 3));
+        insert(january, 1_000_001L, "01", MSISDN, OTHER_MSISDN, START.minusHours(1));
+        insert(february, 1_000_002L, "02", OTHER_MSISDN, MSISDN, START.plusHours(2));
+        insert(february, 1_000_003L, "01", OTHER_MSISDN, THIRD_MSISDN, START.plusHours(4));
+        insert(march, 1_000_004L, "01", MSISDN, THIRD_MSISDN, START.plusMonths(1));
+        CDR table = cdrRepository.save(cdr("01", MSISDN, THIRD_MSISDN, START.plusHours(3)));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(List.of(1_000_002L, table.getId()), cdrRepository.findSubscriberCalls(MSISDN, START, START.plusDays(1))
+                .stream().map(CDR::getId).toList());
+        try (Stream<CDR> stream = cdrRepository.streamByCallStartTimeBetween(START.minusDays(1), START.plusDays(1))) {
+            assertEquals(List.of(1_000_001L, 1_000_002L, table.getId(), 1_000_003L), stream.map(CDR::getId).toList());
+        }
+        assertEquals(List.of(1_000_002L, table.getId(), 1_000_003L),
+                cdrRepository.findByCallStartTimeBetween(START, START.plusMonths(1).minusNanos(1)).stream()
+                        .map(CDR::getId).toList());
+        assertTrue(cdrRepository.existsSubscriberCalls(MSISDN, START.plusMonths(1), START.plusMonths(2)));
+        assertFalse(cdrRepository.existsSubscriberCalls(THIRD_MSISDN, START.minusMonths(1), START.plusHours(3).minusNanos(1)));
+
+        Map<String, Long> totals = cdrRepository.sumSubscriberCallDurations(MSISDN, START.minusMonths(1), START.plusMonths(1))
+                .stream()
+                .collect(Collectors.toMap(CallTypeTotal::getCallType, CallTypeTotal::getTotalSeconds));
+        assertEquals(Map.of("01", 600L, "02", 300L), totals);
+    }
+
+    /**
+     * Проверяет поиск звонков абонента в любом направлении без чтения самих записей.
+     */
+    @Test
+    void testExistsSubscriberCalls() {
+        cdrRepository.save(cdr("02", OTHER_MSISDN, MSISDN, START.plusHours(1)));
+        cdrRepository.save(cdr("01", OTHER_MSISDN, THIRD_MSISDN, START.plusDays(2)));
+
+        assertTrue(cdrRepository.existsSubscriberCalls(MSISDN, START, START.plusDays(1)));
+        assertTrue(cdrRepository.existsSubscriberCalls(OTHER_MSISDN, START, START.plusDays(1)));
+        assertFalse(cdrRepository.existsSubscriberCalls(THIRD_MSISDN, START, START.plusDays(1)));
+        assertFalse(cdrRepository.existsSubscriberCalls(MSISDN, START.plusDays(1), START.plusDays(3)));
+    }
+
+    /**
+     * Проверяет суммирование длительностей абонента по типам звонка в обоих направлениях.
+     */
+    @Test
+    void testSumSubscriberCallDurations() {
+        cdrRepository.save(cdr("01", MSISDN, OTHER_MSISDN, START));
+        cdrRepository.save(cdr("01", MSISDN, THIRD_MSISDN, START.plusHours(1)));
+        cdrRepository.save(cdr("02", OTHER_MSISDN, MSISDN, START.plusHours(2)));
+        cdrRepository.save(cdr("01", OTHER_MSISDN, THIRD_MSISDN, START.plusHours(3)));
+
+        Map<String, Long> totals = cdrRepository.sumSubscriberCallDurations(MSISDN, START, START.plusDays(1))
+                .stream()
+                .peek(total -> assertEquals(MSISDN, total.getMsisdn()))
+                .collect(Collectors.toMap(CallTypeTotal::getCallType, CallTypeTotal::getTotalSeconds));
+
+        assertEquals(Map.of("01", 600L, "02", 300L), totals);
+        assertTrue(cdrRepository.sumSubscriberCallDurations(MSISDN, START.plusMonths(1), START.plusMonths(2)).isEmpty());
+        // Конец диапазона не включается
+        assertTrue(cdrRepository.sumSubscriberCallDurations(MSISDN, START.minusDays(1), START).isEmpty());
+    }
+
+    /**
+     * Проверяет, что номера и тип звонка хранятся числами и восстанавливаются без изменений,
+     * а запросы с номером, который не может храниться числом, ничего не находят.
+     */
+    @Test
+    void testNumericColumns_RoundTrip() {
+        CDR saved = cdrRepository.save(cdr("02", OTHER_MSISDN, MSISDN, START));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(List.of("BIGINT", "BIGINT", "TINYINT"), jdbcTemplate.queryForList(
+                "SELECT data_type FROM information_schema.columns WHERE table_name = 'CDR' "
+                        + "AND column_name IN ('MSISDN', 'OTHER_MSISDN', 'CALL_TYPE') ORDER BY column_name DESC", String.class));
+        assertEquals(saved, cdrRepository.findById(saved.getId()).orElseThrow());
+        assertTrue(cdrRepository.findSubscriberCalls("+" + MSISDN, START, START.plusDays(1)).isEmpty());
+        assertFalse(cdrRepository.existsSubscriberCalls("unknown", START, START.plusDays(1)));
+        assertTrue(cdrRepository.sumSubscriberCallDurations("0" + MSISDN, START, START.plusDays(1)).isEmpty());
+    }
+
+    /**
+     * Проверяет, что составные индексы создаются вместе с таблицей.
+     */
+    @Test
+    void testIndexesCreated() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT index_name FROM information_schema.indexes WHERE table_name = 'CDR'", String.class);
+
+        assertTrue(indexes.contains("IDX_CDR_MSISDN_START"));
+        assertTrue(indexes.contains("IDX_CDR_OTHER_MSISDN_START"));
+        assertTrue(indexes.contains("IDX_CDR_START"));
+    }
+
+    private void insert(String table, long id, String callType, String msisdn, String otherMsisdn, LocalDateTime start) {
+        jdbcTemplate.update("INSERT INTO " + table + " VALUES (?, ?, ?, ?, ?, ?)",
+                id, callType, msisdn, otherMsisdn, start, start.plusMinutes(5));
+    }
+
+    private static CDR cdr(String callType, String msisdn, String otherMsisdn, LocalDateTime start) {
+        return CDR.builder()
+                .callType(callType)
+                .msisdn(msisdn)
+                .otherMsisdn(otherMsisdn)
+                .callStartTime(start)
+                .callEndTime(start.plusMinutes(5))
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.UDRRollup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link UDRAggregator} на встроенной базе H2.
+ */
+class UDRAggregatorTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 2);
+    private static final LocalDateTime START = MONTH.atDay(1).atStartOfDay();
+    private static final String[] CALL_TYPES = {"01", "02", "03"};
+
+    private JdbcTemplate jdbcTemplate;
+    private CDRPartitions partitions;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:udr_aggregator_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE cdr (id BIGINT PRIMARY KEY, call_type TINYINT, msisdn BIGINT, "
+                + "other_msisdn BIGINT, call_start_time TIMESTAMP, call_end_time TIMESTAMP)");
+        partitions = new CDRPartitions(jdbcTemplate);
+    }
+
+    /**
+     * Сравнивает параллельный подсчёт по блокам с последовательным подсчётом тех же звонков.
+     * Звонки месяца лежат и в его секции, и в секции по умолчанию; звонки соседних месяцев
+     * и звонки с другими типами не должны влиять на результат.
+     */
+    @Test
+    void testAggregate_MatchesSequentialTotals() {
+        String partition = partitions.ensure(MONTH);
+        SplittableRandom random = new SplittableRandom(42);
+        Map<String, long[]> expected = new HashMap<>();
+        for (int id = 0; id < 1_000; id++) {
+            String caller = "7999000" + String.format("%04d", random.nextInt(50));
+            String receiver = "7999000" + String.format("%04d", random.nextInt(50));
+            String callType = CALL_TYPES[random.nextInt(CALL_TYPES.length)];
+            int seconds = random.nextInt(3_600);
+            // Часть звонков начинается за секунду до месяца или ровно в начале следующего
+            int bucket = random.nextInt(10);
+            LocalDateTime start = bucket == 0 ? START.minusSeconds(1)
+                    : bucket == 1 ? START.plusMonths(1) : START.plusSeconds(random.nextInt(28 * 24 * 3600));
+            String table = bucket > 1 && id % 2 == 0 ? partition : CDRPartitions.DEFAULT_TABLE;
+            jdbcTemplate.update("INSERT INTO " + table + " VALUES (?, ?, ?, ?, ?, ?)",
+                    id, callType, caller, receiver, start, start.plusSeconds(seconds));
+
+            if (bucket > 1) {
+                credit(expected, caller, callType, seconds);
+                credit(expected, receiver, callType, seconds);
+            }
+        }
+
+        List<UDRRollup> rollups = new UDRAggregator(jdbcTemplate, partitions, new SimpleMeterRegistry(), 3, 7).aggregate(MONTH);
+
+        Map<String, long[]> actual = rollups.stream().collect(Collectors.toMap(UDRRollup::getMsisdn, rollup ->
+                new long[]{rollup.getIncomingSeconds(), rollup.getOutgoingSeconds(),
+                        rollup.getIncomingCalls(), rollup.getOutgoingCalls()}));
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((msisdn, totals) -> assertArrayEquals(totals, actual.get(msisdn), msisdn));
+        rollups.forEach(rollup -> assertEquals(MONTH.atDay(1), rollup.getMonthStart()));
+    }
+
+    /**
+     * Проверяет, что месяц без звонков даёт пустой результат.
+     */
+    @Test
+    void testAggregate_EmptyMonth() {
+        assertTrue(new UDRAggregator(jdbcTemplate, partitions, new SimpleMeterRegistry(), 2, 4).aggregate(MONTH).isEmpty());
+    }
+
+    private static void credit(Map<String, long[]> totals, String msisdn, String callType, int seconds) {
+        long[] row = totals.computeIfAbsent(msisdn, m -> new long[4]);
+        if ("02".equals(callType)) {
+            row[0] += seconds;
+            row[2]++;
+        } else if ("01".equals(callType)) {
+            row[1] += seconds;
+            row[3]++;
+        }
+    }
+}
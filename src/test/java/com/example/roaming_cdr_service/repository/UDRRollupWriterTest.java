@@ -0,0 +1,107 @@
+package com.example.roaming_cdr_service.repository;
+
+import com.example.roaming_cdr_service.model.CDR;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit-тесты для класса {@link UDRRollupWriter} на встроенной базе H2.
+ */
+class UDRRollupWriterTest {
+
+    private static final String MSISDN = "79991112233";
+    private static final String OTHER_MSISDN = "79992223344";
+    private static final String THIRD_MSISDN = "79993334455";
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 0, 0);
+    private static final String SELECT_ROLLUP = "SELECT * FROM udr_rollup ORDER BY msisdn, month_start";
+
+    private JdbcTemplate jdbcTemplate;
+    private CDRPartitions partitions;
+    private List<Object> events;
+    private UDRRollupWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:udr_rollup_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE cdr (id BIGINT PRIMARY KEY, call_type TINYINT, msisdn BIGINT, "
+                + "other_msisdn BIGINT, call_start_time TIMESTAMP, call_end_time TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE udr_rollup (msisdn VARCHAR(255) NOT NULL, month_start DATE NOT NULL, "
+                + "incoming_seconds BIGINT NOT NULL, outgoing_seconds BIGINT NOT NULL, "
+                + "incoming_calls BIGINT NOT NULL, outgoing_calls BIGINT NOT NULL, PRIMARY KEY (msisdn, month_start))");
+        events = new ArrayList<>();
+        partitions = new CDRPartitions(jdbcTemplate);
+        writer = new UDRRollupWriter(jdbcTemplate, new UDRAggregator(jdbcTemplate, partitions, new SimpleMeterRegistry(), 2, 2),
+                mock(CDRArchive.class), partitions, events::add);
+    }
+
+    /**
+     * Проверяет, что звонок учитывается у обоих участников и что пакеты накапливаются в одной строке месяца.
+     */
+    @Test
+    void testAddAll_CreditsBothPartiesAndAccumulates() {
+        writer.addAll(List.of(cdr(1, "01", MSISDN, OTHER_MSISDN, START, 60)));
+        writer.addAll(List.of(
+                cdr(2, "02", MSISDN, OTHER_MSISDN, START.plusDays(3), 30),
+                cdr(3, "01", MSISDN, THIRD_MSISDN, START.plusMonths(1), 10)));
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT * FROM udr_rollup WHERE msisdn = ? AND month_start = ?", OTHER_MSISDN, START.toLocalDate());
+        assertEquals(30L, row.get("INCOMING_SECONDS"));
+        assertEquals(60L, row.get("OUTGOING_SECONDS"));
+        assertEquals(1L, row.get("INCOMING_CALLS"));
+        assertEquals(1L, row.get("OUTGOING_CALLS"));
+
+        assertEquals(4L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM udr_rollup", Long.class));
+
+        // Каждый пакет сообщает о месяцах, в которые были записаны звонки
+        assertEquals(Set.of(YearMonth.of(2025, 2), YearMonth.of(2025, 3)),
+                ((UDRRollupChangedEvent) events.get(1)).getMonths());
+    }
+
+    /**
+     * Проверяет, что пересчёт по таблице {@code cdr} даёт ту же сводку, что и пакетное обновление.
+     * Звонки последнего месяца лежат только в его секции.
+     */
+    @Test
+    void testRebuild_MatchesIncrementalUpdates() {
+        List<CDR> cdrs = List.of(
+                cdr(1, "01", MSISDN, OTHER_MSISDN, START, 60),
+                cdr(2, "02", OTHER_MSISDN, MSISDN, START.plusHours(1), 45),
+                cdr(3, "01", THIRD_MSISDN, MSISDN, START.plusMonths(1).minusSeconds(5), 30),
+                cdr(4, "02", MSISDN, THIRD_MSISDN, START.plusMonths(1), 15));
+        String march = partitions.ensure(YearMonth.of(2025, 3));
+        cdrs.forEach(cdr -> jdbcTemplate.update("INSERT INTO "
+                        + (cdr.getId() == 4 ? march : CDRPartitions.DEFAULT_TABLE) + " VALUES (?, ?, ?, ?, ?, ?)",
+                cdr.getId(), cdr.getCallType(), cdr.getMsisdn(), cdr.getOtherMsisdn(), cdr.getCallStartTime(),
+                cdr.getCallEndTime()));
+        writer.addAll(cdrs);
+        List<Map<String, Object>> incremental = jdbcTemplate.queryForList(SELECT_ROLLUP);
+
+        assertEquals(incremental.size(), writer.rebuild());
+        assertEquals(incremental, jdbcTemplate.queryForList(SELECT_ROLLUP));
+        assertTrue(((UDRRollupChangedEvent) events.get(events.size() - 1)).isAllMonths());
+    }
+
+    private static CDR cdr(long id, String callType, String msisdn, String otherMsisdn, LocalDateTime start, int seconds) {
+        return CDR.builder()
+                .id(id)
+                .callType(callType)
+                .msisdn(msisdn)
+                .otherMsisdn(otherMsisdn)
+                .callStartTime(start)
+                .callEndTime(start.plusSeconds(seconds))
+                .build();
+    }
+}
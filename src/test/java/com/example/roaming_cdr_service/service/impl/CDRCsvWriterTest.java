@@ -0,0 +1,127 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.CDR;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link CDRCsvWriter}.
+ */
+class CDRCsvWriterTest {
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 9, 5, 7, 123_000_000);
+
+    @TempDir
+    private Path tempDir;
+
+    /**
+     * Проверяет, что обычные строки совпадают с выводом {@link CSVPrinter} побайтно, в том числе
+     * при смене суток и сбросе маленького буфера.
+     */
+    @Test
+    void testWrite_MatchesCsvPrinter() throws Exception {
+        List<CDR> cdrs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime start = START.plusMinutes(37L * i);
+            cdrs.add(cdr(i % 2 == 0 ? "01" : "02", "7999111" + (1000 + i), "79992223344", start, start.plusSeconds(61L * i)));
+        }
+
+        assertWritten(cdrs, 256);
+    }
+
+    /**
+     * Проверяет, что значения, требующие экранирования, и годы вне 0000–9999 пишутся так же, как {@link CSVPrinter}.
+     */
+    @Test
+    void testWrite_EscapedValues() throws Exception {
+        LocalDateTime end = START.plusSeconds(30);
+        assertWritten(List.of(
+                cdr("01", "7999,111", "79992223344", START, end),
+                cdr("", "79991112233", "79992223344", START, end),
+                cdr(null, "79991112233", null, START, end),
+                cdr("01", "\"7999\"", " 7999 ", START, end),
+                cdr("02", "#7999", "7999\r\n", START, end),
+                cdr("02", "абонент", "79992223344", START, end),
+                cdr("01", "79991112233", "79992223344", START.withYear(12025), end.withYear(12025)),
+                cdr("01", "79991112233", "79992223344", START, end)
+        ), 4096);
+    }
+
+    /**
+     * Проверяет, что строка длиннее буфера записывается целиком.
+     */
+    @Test
+    void testWrite_RowLargerThanBuffer() throws Exception {
+        assertWritten(List.of(
+                cdr("01", "7".repeat(300), "79992223344", START, START.plusSeconds(1)),
+                cdr("02", "79991112233", "79992223344", START, START.plusSeconds(1))
+        ), 128);
+    }
+
+    /**
+     * Проверяет дозапись в существующий файл.
+     */
+    @Test
+    void testWrite_Append() throws Exception {
+        Path file = tempDir.resolve("report.csv");
+        CDR first = cdr("01", "79991112233", "79992223344", START, START.plusSeconds(10));
+        CDR second = cdr("02", "79991112233", "79993334455", START.plusDays(1), START.plusDays(1).plusSeconds(10));
+        try (CDRCsvWriter writer = new CDRCsvWriter(file, false, 1024)) {
+            writer.write(first);
+        }
+        try (CDRCsvWriter writer = new CDRCsvWriter(file, true, 1024)) {
+            writer.write(second);
+        }
+
+        assertEquals(expected(List.of(first, second)), Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    private void assertWritten(List<CDR> cdrs, int bufferSize) throws Exception {
+        Path file = tempDir.resolve("report.csv");
+        try (CDRCsvWriter writer = new CDRCsvWriter(file, false, bufferSize)) {
+            for (CDR cdr : cdrs) {
+                writer.write(cdr);
+            }
+        }
+
+        assertEquals(expected(cdrs), Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    private static String expected(List<CDR> cdrs) throws Exception {
+        StringWriter out = new StringWriter();
+        try (CSVPrinter csvPrinter = new CSVPrinter(out, CSVFormat.DEFAULT)) {
+            for (CDR cdr : cdrs) {
+                csvPrinter.printRecord(
+                        cdr.getCallType(),
+                        cdr.getMsisdn(),
+                        cdr.getOtherMsisdn(),
+                        cdr.getCallStartTime().format(DATE_TIME_FORMATTER),
+                        cdr.getCallEndTime().format(DATE_TIME_FORMATTER)
+                );
+            }
+        }
+        return out.toString();
+    }
+
+    private static CDR cdr(String callType, String msisdn, String otherMsisdn, LocalDateTime start, LocalDateTime end) {
+        return CDR.builder()
+                .callType(callType)
+                .msisdn(msisdn)
+                .otherMsisdn(otherMsisdn)
+                .callStartTime(start)
+                .callEndTime(end)
+                .build();
+    }
+}
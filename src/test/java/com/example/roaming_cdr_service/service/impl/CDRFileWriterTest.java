@@ -0,0 +1,71 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link CDRFileWriter}.
+ */
+class CDRFileWriterTest {
+
+    private static final List<String> MSISDNS = List.of("79991112233", "79992221122");
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 28, 23, 55, 7);
+    private static final long START_SECOND = START.toEpochSecond(ZoneOffset.UTC);
+    private static final long DURATION_SECONDS = 600;
+    private static final String EXPECTED_CSV =
+            "01,79991112233,79992221122,2025-02-28T23:55:07,2025-03-01T00:05:07\r\n";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Проверяет формат CSV, в том числе смену суток между началом и концом звонка.
+     */
+    @Test
+    void testWriteCsv() throws IOException {
+        Path file = tempDir.resolve("cdr.csv");
+
+        try (CDRFileWriter writer = new CDRFileWriter(file, CDRFileWriter.Format.CSV, MSISDNS)) {
+            writer.accept(createCalls());
+            assertEquals(1, writer.getRecordsWritten());
+        }
+
+        assertEquals(EXPECTED_CSV, Files.readString(file, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Проверяет двоичный формат.
+     */
+    @Test
+    void testWriteBinary() throws IOException {
+        Path file = tempDir.resolve("cdr.bin");
+
+        try (CDRFileWriter writer = new CDRFileWriter(file, CDRFileWriter.Format.BINARY, MSISDNS)) {
+            writer.accept(createCalls());
+        }
+
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(Integer.BYTES + CDRFileWriter.BINARY_RECORD_SIZE, content.remaining());
+        assertEquals(CDRFileWriter.BINARY_MAGIC, content.getInt());
+        assertEquals(Long.parseLong(MSISDNS.get(0)), content.getLong());
+        assertEquals(Long.parseLong(MSISDNS.get(1)), content.getLong());
+        assertEquals(START_SECOND, content.getLong());
+        assertEquals(DURATION_SECONDS, content.getInt());
+        assertEquals(GeneratedCalls.OUTGOING, content.get());
+    }
+
+    private GeneratedCalls createCalls() {
+        GeneratedCalls calls = new GeneratedCalls(MSISDNS, 1);
+        calls.add(0, 1, START_SECOND, START_SECOND + DURATION_SECONDS, GeneratedCalls.OUTGOING);
+        return calls;
+    }
+}
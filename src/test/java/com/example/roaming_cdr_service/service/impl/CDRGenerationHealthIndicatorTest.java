@@ -0,0 +1,59 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.GenerationStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.actuate.health.Status;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для класса {@link CDRGenerationHealthIndicator}.
+ */
+class CDRGenerationHealthIndicatorTest {
+
+    @Mock
+    private CDRGenerationJob generationJob;
+
+    @InjectMocks
+    private CDRGenerationHealthIndicator healthIndicator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Проверяет, что во время генерации приложение не готово.
+     */
+    @Test
+    void testHealth_Running() {
+        when(generationJob.getStatus()).thenReturn(status(GenerationStatus.State.RUNNING));
+        assertEquals(Status.OUT_OF_SERVICE, healthIndicator.health().getStatus());
+    }
+
+    /**
+     * Проверяет, что после завершения генерации приложение готово.
+     */
+    @Test
+    void testHealth_Completed() {
+        when(generationJob.getStatus()).thenReturn(status(GenerationStatus.State.COMPLETED));
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+    }
+
+    /**
+     * Проверяет, что ошибка генерации отражается как DOWN.
+     */
+    @Test
+    void testHealth_Failed() {
+        when(generationJob.getStatus()).thenReturn(status(GenerationStatus.State.FAILED));
+        assertEquals(Status.DOWN, healthIndicator.health().getStatus());
+    }
+
+    private GenerationStatus status(GenerationStatus.State state) {
+        return GenerationStatus.builder().state(state).build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.GenerationStatus;
+import com.example.roaming_cdr_service.service.GenerationListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для класса {@link CDRGenerationJob}.
+ */
+class CDRGenerationJobTest {
+
+    private static final int BATCH_RECORDS = 100;
+    private static final LocalDateTime SIMULATED_TIME = LocalDateTime.of(2025, 2, 1, 12, 0);
+    private static final String ERROR_MESSAGE = "Список абонентов пуст";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Mock
+    private CDRServiceImpl cdrServiceImpl;
+
+    private CDRGenerationJob generationJob;
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        generationJob = new CDRGenerationJob(cdrServiceImpl);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        generationJob.shutdown();
+        mocks.close();
+    }
+
+    /**
+     * Проверяет, что до запуска генерация находится в состоянии PENDING.
+     */
+    @Test
+    void testGetStatus_Pending() {
+        assertEquals(GenerationStatus.State.PENDING, generationJob.getStatus().getState());
+        assertFalse(generationJob.isCompleted());
+    }
+
+    /**
+     * Проверяет успешную генерацию и учёт прогресса.
+     */
+    @Test
+    void testStart_Completed() throws InterruptedException {
+        doAnswer(invocation -> {
+            GenerationListener listener = invocation.getArgument(0);
+            listener.onBatchSaved(BATCH_RECORDS, SIMULATED_TIME.minusDays(1));
+            listener.onBatchSaved(BATCH_RECORDS, SIMULATED_TIME);
+            return null;
+        }).when(cdrServiceImpl).generateCDRs(any(GenerationListener.class));
+
+        generationJob.start();
+        generationJob.start(); // повторный запуск игнорируется
+        GenerationStatus status = awaitFinished();
+
+        assertEquals(GenerationStatus.State.COMPLETED, status.getState());
+        assertEquals(2L * BATCH_RECORDS, status.getRecordsWritten());
+        assertEquals(SIMULATED_TIME, status.getSimulatedTime());
+        assertNotNull(status.getFinishedAt());
+        assertTrue(generationJob.isCompleted());
+        verify(cdrServiceImpl, times(1)).generateCDRs(any(GenerationListener.class));
+    }
+
+    /**
+     * Проверяет, что ошибка генерации переводит задание в состояние FAILED.
+     */
+    @Test
+    void testStart_Failed() throws InterruptedException {
+        doThrow(new IllegalStateException(ERROR_MESSAGE)).when(cdrServiceImpl).generateCDRs(any(GenerationListener.class));
+
+        generationJob.start();
+        GenerationStatus status = awaitFinished();
+
+        assertEquals(GenerationStatus.State.FAILED, status.getState());
+        assertEquals(ERROR_MESSAGE, status.getError());
+        assertFalse(generationJob.isCompleted());
+    }
+
+    /**
+     * Проверяет, что Error (например, нехватка памяти) тоже переводит задание в состояние FAILED.
+     */
+    @Test
+    void testStart_FailedWithError() throws InterruptedException {
+        doThrow(new OutOfMemoryError("Java heap space")).when(cdrServiceImpl).generateCDRs(any(GenerationListener.class));
+
+        generationJob.start();
+        GenerationStatus status = awaitFinished();
+
+        assertEquals(GenerationStatus.State.FAILED, status.getState());
+        assertEquals("Java heap space", status.getError());
+        assertFalse(generationJob.isRunning());
+    }
+
+    /**
+     * Проверяет, что остановка приложения во время генерации не считается ошибкой.
+     */
+    @Test
+    void testShutdown_Cancelled() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            GenerationListener listener = invocation.getArgument(0);
+            started.countDown();
+            while (true) {
+                listener.onBatchSaved(BATCH_RECORDS, SIMULATED_TIME);
+                Thread.sleep(1);
+            }
+        }).when(cdrServiceImpl).generateCDRs(any(GenerationListener.class));
+
+        generationJob.start();
+        assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        generationJob.shutdown();
+        GenerationStatus status = awaitFinished();
+
+        assertEquals(GenerationStatus.State.CANCELLED, status.getState());
+        assertNull(status.getError());
+    }
+
+    private GenerationStatus awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        GenerationStatus status = generationJob.getStatus();
+        while (status.getState() == GenerationStatus.State.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = generationJob.getStatus();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.CDR;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link CDRGenerator}.
+ */
+class CDRGeneratorTest {
+
+    private static final List<String> MSISDNS = List.of(
+            "79991112233", "79992221122", "79993332211", "79994443322", "79995554433");
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = START.plusYears(1);
+    private static final long SEED = 42L;
+    private static final int PARTITIONS = 16;
+
+    /**
+     * Проверяет, что одно и то же зерно даёт одинаковый набор данных при любом числе потоков.
+     */
+    @Test
+    void testGenerate_DeterministicForSeed() {
+        List<CDR> sequential = generate(SEED, PARTITIONS, 1);
+        List<CDR> parallel = generate(SEED, PARTITIONS, 4);
+
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, parallel);
+    }
+
+    /**
+     * Проверяет, что разные зёрна дают разные наборы данных.
+     */
+    @Test
+    void testGenerate_DifferentSeeds() {
+        assertNotEquals(generate(SEED, PARTITIONS, 4), generate(SEED + 1, PARTITIONS, 4));
+    }
+
+    /**
+     * Проверяет, что абонент не участвует в двух звонках одновременно, в том числе на границах окон,
+     * и что все звонки лежат в пределах периода.
+     */
+    @Test
+    void testGenerate_NoOverlappingCallsAcrossPartitions() {
+        List<CDR> cdrs = generate(SEED, PARTITIONS, 4);
+        Map<String, LocalDateTime> busyUntil = new HashMap<>();
+
+        for (CDR cdr : cdrs) {
+            assertFalse(cdr.getCallStartTime().isBefore(START));
+            assertTrue(cdr.getCallStartTime().isBefore(END));
+            assertNotEquals(cdr.getMsisdn(), cdr.getOtherMsisdn());
+
+            for (String msisdn : List.of(cdr.getMsisdn(), cdr.getOtherMsisdn())) {
+                LocalDateTime previousEnd = busyUntil.get(msisdn);
+                assertTrue(previousEnd == null || !cdr.getCallStartTime().isBefore(previousEnd),
+                        "Пересечение звонков абонента " + msisdn + " в " + cdr.getCallStartTime());
+                busyUntil.put(msisdn, cdr.getCallEndTime());
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что генератор не принимает неположительное число партиций.
+     */
+    @Test
+    void testConstructor_InvalidPartitions() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CDRGenerator(MSISDNS, SEED, 0, CDRGenerator.DEFAULT_CALLS_PER_SUBSCRIBER_PER_DAY));
+        assertThrows(IllegalArgumentException.class, () -> new CDRGenerator(MSISDNS, SEED, 1, 0));
+    }
+
+    /**
+     * Проверяет, что число записей растёт линейно с числом звонков абонента в сутки и с числом абонентов,
+     * а не зависит от числа партиций.
+     */
+    @Test
+    void testGenerate_VolumeScalesWithRateAndSubscribers() {
+        List<String> subscribers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            subscribers.add(String.valueOf(79990000000L + i));
+        }
+        LocalDateTime end = START.plusMonths(1);
+
+        // Попытки к занятым абонентам отбрасываются, поэтому допуск 10%
+        long base = count(subscribers.subList(0, 100), 1, 0.5, end);
+        assertEquals(100 * 0.5 * 31, base, 100 * 0.5 * 31 * 0.1);
+        assertEquals(4 * base, count(subscribers.subList(0, 100), 1, 2, end), 4 * base * 0.1);
+        assertEquals(10 * base, count(subscribers, 1, 0.5, end), 10 * base * 0.1);
+        assertEquals(base, count(subscribers.subList(0, 100), 8, 0.5, end), base * 0.1);
+    }
+
+    /**
+     * Проверяет, что при большом объёме окна дробятся сверх числа партиций: число звонков окна
+     * ограничено бюджетом, а результат по-прежнему не зависит от числа потоков.
+     */
+    @Test
+    void testGenerate_WindowsBoundedByCallBudget() {
+        List<Integer> windowSizes = new ArrayList<>();
+        List<CDR> sequential = new ArrayList<>();
+        new CDRGenerator(MSISDNS, SEED, 2, 24, 100).generate(START, END, 1, calls -> {
+            windowSizes.add(calls.size());
+            for (int i = 0; i < calls.size(); i++) {
+                sequential.add(calls.toCDR(i));
+            }
+        });
+        List<CDR> parallel = new ArrayList<>();
+        new CDRGenerator(MSISDNS, SEED, 2, 24, 100).generate(START, END, 4, calls -> {
+            for (int i = 0; i < calls.size(); i++) {
+                parallel.add(calls.toCDR(i));
+            }
+        });
+
+        // 5 абонентов × 24 звонка × 366 дней ≈ 44 тыс. попыток — не меньше 440 окон
+        assertTrue(windowSizes.size() >= 440, "Окон: " + windowSizes.size());
+        assertTrue(windowSizes.stream().allMatch(size -> size <= 200), "Окна: " + windowSizes);
+        assertEquals(sequential, parallel);
+    }
+
+    private List<CDR> generate(long seed, int partitions, int parallelism) {
+        List<CDR> cdrs = new ArrayList<>();
+        new CDRGenerator(MSISDNS, seed, partitions, CDRGenerator.DEFAULT_CALLS_PER_SUBSCRIBER_PER_DAY)
+                .generate(START, END, parallelism, calls -> {
+                    for (int i = 0; i < calls.size(); i++) {
+                        cdrs.add(calls.toCDR(i));
+                    }
+                });
+        return cdrs;
+    }
+
+    private long count(List<String> msisdns, int partitions, double callsPerSubscriberPerDay, LocalDateTime end) {
+        long[] calls = {0};
+        new CDRGenerator(msisdns, SEED, partitions, callsPerSubscriberPerDay)
+                .generate(START, end, 1, window -> calls[0] += window.size());
+        return calls[0];
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.config.CDRReportProperties;
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.exception.ReportQueueFullException;
+import com.example.roaming_cdr_service.model.CDR;
+import com.example.roaming_cdr_service.model.ReportStatus;
+import com.example.roaming_cdr_service.repository.UDRRollupChangedEvent;
+import com.example.roaming_cdr_service.service.CDRService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для класса {@link CDRReportJobs}.
+ */
+class CDRReportJobsTest {
+
+    private static final String MSISDN = "79991112233";
+    private static final String OTHER_MSISDN = "79992223344";
+    private static final String THIRD_MSISDN = "79993334455";
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2025, 2, 28, 23, 59, 59);
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Mock
+    private CDRService cdrService;
+
+    @Mock
+    private CDRGenerationJob generationJob;
+
+    @TempDir
+    private Path reportsDirectory;
+
+    private final CDRReportProperties properties = new CDRReportProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CDRReportJobs reportJobs;
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        properties.setDirectory(reportsDirectory.resolve("reports").toString());
+        properties.setWorkers(1);
+        properties.setQueueCapacity(1);
+        properties.getBulk().setMaxOpenFiles(2);
+        reportJobs = new CDRReportJobs(cdrService, generationJob, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        reportJobs.shutdown();
+        mocks.close();
+    }
+
+    /**
+     * Проверяет построение отчёта в фоне: состояние DONE, число строк и содержимое CSV.
+     */
+    @Test
+    void testSubmit_Done() throws Exception {
+        streamCDRs(cdr("01", MSISDN, OTHER_MSISDN, START.plusHours(1)),
+                cdr("02", OTHER_MSISDN, MSISDN, START.plusHours(2)));
+
+        ReportStatus submitted = reportJobs.submit(MSISDN, START, END);
+        ReportStatus status = awaitFinished(submitted.getId());
+
+        assertEquals(ReportStatus.State.DONE, status.getState());
+        assertEquals(2, status.getRowsWritten());
+        assertNotNull(status.getFinishedAt());
+        Path file = reportJobs.getReportFile(submitted.getId());
+        assertEquals(MSISDN + "_" + submitted.getId() + ".csv", file.getFileName().toString());
+        assertEquals("01,79991112233,79992223344,2025-02-01T01:00:00,2025-02-01T01:05:00\r\n"
+                        + "02,79992223344,79991112233,2025-02-01T02:00:00,2025-02-01T02:05:00\r\n",
+                Files.readString(file));
+        assertEquals(1, meterRegistry.get("cdr.report.duration").tags("type", "single", "outcome", "done").timer().count());
+        assertEquals(2, meterRegistry.get("cdr.report.rows").tag("type", "single").summary().totalAmount());
+        assertEquals(Files.size(file), meterRegistry.get("cdr.report.bytes").tag("type", "single").summary().totalAmount());
+    }
+
+    /**
+     * Проверяет, что ошибка построения переводит задание в состояние FAILED, а скачивание отклоняется.
+     */
+    @Test
+    void testSubmit_Failed() throws Exception {
+        doThrow(new IllegalStateException("DB недоступна"))
+                .when(cdrService).streamCDRsForSubscriber(any(), any(), any(), any());
+
+        ReportStatus submitted = reportJobs.submit(MSISDN, START, END);
+        ReportStatus status = awaitFinished(submitted.getId());
+
+        assertEquals(ReportStatus.State.FAILED, status.getState());
+        assertEquals("DB недоступна", status.getError());
+        assertThrows(ConflictException.class, () -> reportJobs.getReportFile(submitted.getId()));
+    }
+
+    /**
+     * Проверяет, что отказ остановленного пула не выдаётся за переполнение очереди (статус 429).
+     */
+    @Test
+    void testSubmit_RejectedAfterShutdown() throws Exception {
+        reportJobs.shutdown();
+
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class,
+                () -> reportJobs.submit(MSISDN, START, END));
+        assertFalse(e instanceof ReportQueueFullException);
+    }
+
+    /**
+     * Проверяет, что при занятом потоке и заполненной очереди новое задание отклоняется,
+     * а ожидающее задание находится в состоянии QUEUED.
+     */
+    @Test
+    void testSubmit_RejectedWhenQueueFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(cdrService).streamCDRsForSubscriber(eq(MSISDN), any(), any(), any());
+
+        ReportStatus running = reportJobs.submit(MSISDN, START, END);
+        assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        ReportStatus queued = reportJobs.submit(MSISDN, START, END);
+
+        assertEquals(ReportStatus.State.RUNNING, reportJobs.getStatus(running.getId()).getState());
+        assertEquals(ReportStatus.State.QUEUED, reportJobs.getStatus(queued.getId()).getState());
+        assertThrows(ReportQueueFullException.class, () -> reportJobs.submit(MSISDN, START, END));
+        assertThrows(ConflictException.class, () -> reportJobs.getReportFile(queued.getId()));
+
+        release.countDown();
+        assertEquals(ReportStatus.State.DONE, awaitFinished(queued.getId()).getState());
+    }
+
+    /**
+     * Проверяет, что отчёт за неизменяемый период строится один раз, а повторные запросы получают его UUID.
+     */
+    @Test
+    void testSubmit_ReusesImmutableRange() throws Exception {
+        when(generationJob.isCompleted()).thenReturn(true);
+        streamCDRs(cdr("01", MSISDN, OTHER_MSISDN, START.plusHours(1)));
+
+        ReportStatus first = reportJobs.submit(MSISDN, START, END);
+        awaitFinished(first.getId());
+        ReportStatus second = reportJobs.submit(MSISDN, START, END);
+
+        assertEquals(first.getId(), second.getId());
+        assertEquals(ReportStatus.State.DONE, second.getState());
+        assertEquals(first.getId(), reportJobs.findReusable(MSISDN, START, END).orElseThrow().getId());
+        assertTrue(reportJobs.findReusable(MSISDN, START, END.minusDays(1)).isEmpty());
+        verify(cdrService, times(1)).streamCDRsForSubscriber(eq(MSISDN), eq(START), eq(END), any());
+    }
+
+    /**
+     * Проверяет, что пока идёт генерация CDR, отчёты не переиспользуются: данные периода ещё могут дополниться.
+     */
+    @Test
+    void testSubmit_NoReuseWhileGenerating() throws Exception {
+        when(generationJob.isCompleted()).thenReturn(false);
+        streamCDRs(cdr("01", MSISDN, OTHER_MSISDN, START.plusHours(1)));
+
+        ReportStatus first = reportJobs.submit(MSISDN, START, END);
+        awaitFinished(first.getId());
+
+        assertTrue(reportJobs.findReusable(MSISDN, START, END).isEmpty());
+        assertNotEquals(first.getId(), reportJobs.submit(MSISDN, START, END).getId());
+    }
+
+    /**
+     * Проверяет, что запись звонков в месяц периода отменяет переиспользование отчёта,
+     * а запись в другой месяц — нет.
+     */
+    @Test
+    void testSubmit_NoReuseAfterRollupChanged() throws Exception {
+        when(generationJob.isCompleted()).thenReturn(true);
+        streamCDRs(cdr("01", MSISDN, OTHER_MSISDN, START.plusHours(1)));
+
+        ReportStatus first = reportJobs.submit(MSISDN, START, END);
+        awaitFinished(first.getId());
+        reportJobs.onRollupChanged(UDRRollupChangedEvent.forMonths(Set.of(YearMonth.of(2025, 3))));
+        assertEquals(first.getId(), reportJobs.submit(MSISDN, START, END).getId());
+
+        reportJobs.onRollupChanged(UDRRollupChangedEvent.forMonths(Set.of(YearMonth.from(START))));
+        assertTrue(reportJobs.findReusable(MSISDN, START, END).isEmpty());
+        ReportStatus second = reportJobs.submit(MSISDN, START, END);
+        assertNotEquals(first.getId(), second.getId());
+        awaitFinished(second.getId());
+
+        reportJobs.onRollupChanged(UDRRollupChangedEvent.forAllMonths());
+        assertNotEquals(second.getId(), reportJobs.submit(MSISDN, START, END).getId());
+    }
+
+    /**
+     * Проверяет удаление отчётов, не использовавшихся дольше срока хранения.
+     */
+    @Test
+    void testCleanUp_Retention() throws Exception {
+        properties.setRetention(Duration.ofHours(1));
+        reportJobs = new CDRReportJobs(cdrService, generationJob, properties, meterRegistry);
+        Path expired = reportFile("1", 10, Instant.now().minus(Duration.ofHours(2)));
+        Path fresh = reportFile("2", 10, Instant.now().minus(Duration.ofMinutes(10)));
+        Path unrelated = Files.writeString(expired.resolveSibling("notes.txt"), "keep");
+        Files.setLastModifiedTime(unrelated, FileTime.from(Instant.now().minus(Duration.ofDays(30))));
+
+        reportJobs.cleanUp();
+
+        assertFalse(Files.exists(expired));
+        assertTrue(Files.exists(fresh));
+        assertTrue(Files.exists(unrelated));
+    }
+
+    /**
+     * Проверяет, что при превышении суммарного размера удаляются давно не использовавшиеся отчёты,
+     * а скачанный недавно отчёт остаётся.
+     */
+    @Test
+    void testCleanUp_MaxTotalSize() throws Exception {
+        properties.setMaxTotalSize(DataSize.ofBytes(25));
+        reportJobs = new CDRReportJobs(cdrService, generationJob, properties, meterRegistry);
+        Path oldest = reportFile("1", 10, Instant.now().minus(Duration.ofMinutes(30)));
+        Path older = reportFile("2", 10, Instant.now().minus(Duration.ofMinutes(20)));
+        Path newest = reportFile("3", 10, Instant.now().minus(Duration.ofMinutes(10)));
+
+        reportJobs.cleanUp();
+
+        assertFalse(Files.exists(oldest));
+        assertTrue(Files.exists(older));
+        assertTrue(Files.exists(newest));
+    }
+
+    /**
+     * Проверяет, что неизвестный UUID отклоняется.
+     */
+    @Test
+    void testGetStatus_NotFound() {
+        assertThrows(EntityNotFoundException.class, () -> reportJobs.getStatus("unknown"));
+        assertThrows(EntityNotFoundException.class, () -> reportJobs.getReportFile("unknown"));
+    }
+
+    /**
+     * Проверяет пакетный отчёт: каждый звонок попадает в файлы обоих участников в порядке чтения,
+     * в том числе когда файлы вытесняются из открытых (лимит 2 файла при 3 абонентах) и дописываются.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSubmitBulk_FansOutToBothParties() throws Exception {
+        CDR first = cdr("01", MSISDN, OTHER_MSISDN, START);
+        CDR second = cdr("02", OTHER_MSISDN, THIRD_MSISDN, START.plusHours(1));
+        CDR third = cdr("01", THIRD_MSISDN, MSISDN, START.plusHours(2));
+        CDR fourth = cdr("01", MSISDN, OTHER_MSISDN, START.plusHours(3));
+        doAnswer(invocation -> {
+            Consumer<CDR> sink = invocation.getArgument(2);
+            List.of(first, second, third, fourth).forEach(sink);
+            return null;
+        }).when(cdrService).streamCDRs(eq(START), eq(END), any(Consumer.class));
+
+        ReportStatus submitted = reportJobs.submitBulk(START, END);
+        ReportStatus status = awaitFinished(submitted.getId());
+
+        assertEquals(ReportStatus.State.DONE, status.getState());
+        assertNull(status.getMsisdn());
+        assertEquals(4, status.getRowsWritten());
+        assertEquals(Set.of(MSISDN, OTHER_MSISDN, THIRD_MSISDN), status.getReports().keySet());
+        assertReport(status.getReports().get(MSISDN), MSISDN, 3, first, third, fourth);
+        assertReport(status.getReports().get(OTHER_MSISDN), OTHER_MSISDN, 3, first, second, fourth);
+        assertReport(status.getReports().get(THIRD_MSISDN), THIRD_MSISDN, 2, second, third);
+        assertThrows(IllegalArgumentException.class, () -> reportJobs.getReportFile(submitted.getId()));
+    }
+
+    /**
+     * Проверяет, что отчёт прошлого запуска приложения находится по UUID в имени файла.
+     */
+    @Test
+    void testGetReportFile_FromPreviousRun() throws Exception {
+        String id = "0b6a3c1e-5f7d-4d7e-9a53-2f1c8e6b4a10";
+        Path directory = Files.createDirectories(reportsDirectory.resolve("reports"));
+        Path file = Files.writeString(directory.resolve(MSISDN + "_" + id + ".csv"), "01\r\n");
+
+        assertEquals(file, reportJobs.getReportFile(id));
+        assertThrows(EntityNotFoundException.class, () -> reportJobs.getReportFile("../" + MSISDN + "_" + id));
+        assertThrows(EntityNotFoundException.class, () -> reportJobs.getStatus(id));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamCDRs(CDR... cdrs) {
+        doAnswer(invocation -> {
+            Consumer<CDR> sink = invocation.getArgument(3);
+            for (CDR cdr : cdrs) {
+                sink.accept(cdr);
+            }
+            return null;
+        }).when(cdrService).streamCDRsForSubscriber(eq(MSISDN), eq(START), eq(END), any(Consumer.class));
+    }
+
+    private void assertReport(String id, String msisdn, int rows, CDR... cdrs) throws Exception {
+        ReportStatus status = reportJobs.getStatus(id);
+        assertEquals(ReportStatus.State.DONE, status.getState());
+        assertEquals(msisdn, status.getMsisdn());
+        assertEquals(rows, status.getRowsWritten());
+        StringBuilder expected = new StringBuilder();
+        for (CDR cdr : cdrs) {
+            expected.append(String.join(",", cdr.getCallType(), cdr.getMsisdn(), cdr.getOtherMsisdn(),
+                    cdr.getCallStartTime().toString() + ":00", cdr.getCallEndTime().toString() + ":00")).append("\r\n");
+        }
+        assertEquals(expected.toString(), Files.readString(reportJobs.getReportFile(id)));
+    }
+
+    private Path reportFile(String suffix, int size, Instant lastModified) throws Exception {
+        Path directory = Files.createDirectories(reportsDirectory.resolve("reports"));
+        Path file = Files.write(directory.resolve(MSISDN + "_00000000-0000-0000-0000-00000000000" + suffix + ".csv"),
+                new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.from(lastModified));
+        return file;
+    }
+
+    private ReportStatus awaitFinished(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        ReportStatus status = reportJobs.getStatus(id);
+        while ((status.getState() == ReportStatus.State.QUEUED || status.getState() == ReportStatus.State.RUNNING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = reportJobs.getStatus(id);
+        }
+        return status;
+    }
+
+    private static CDR cdr(String callType, String msisdn, String otherMsisdn, LocalDateTime start) {
+        return CDR.builder()
+                .callType(callType)
+                .msisdn(msisdn)
+                .otherMsisdn(otherMsisdn)
+                .callStartTime(start)
+                .callEndTime(start.plusMinutes(5))
+                .build();
+    }
+}
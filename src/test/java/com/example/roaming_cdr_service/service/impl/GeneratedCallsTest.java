@@ -0,0 +1,57 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.CDR;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link GeneratedCalls}.
+ */
+class GeneratedCallsTest {
+
+    private static final List<String> MSISDNS = List.of("79991112233", "79992221122");
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 12, 30, 15);
+    private static final long START_SECOND = START.toEpochSecond(ZoneOffset.UTC);
+    private static final int CALLS = 100;
+
+    /**
+     * Проверяет преобразование звонка в доменный объект {@link CDR}.
+     */
+    @Test
+    void testToCDR() {
+        GeneratedCalls calls = new GeneratedCalls(MSISDNS, 1);
+        calls.add(0, 1, START_SECOND, START_SECOND + 300, GeneratedCalls.INCOMING);
+
+        CDR expected = CDR.builder()
+                .callType("02")
+                .msisdn(MSISDNS.get(0))
+                .otherMsisdn(MSISDNS.get(1))
+                .callStartTime(START)
+                .callEndTime(START.plusSeconds(300))
+                .build();
+
+        assertEquals(expected, calls.toCDR(0));
+    }
+
+    /**
+     * Проверяет рост массивов и сжатие на месте.
+     */
+    @Test
+    void testAddMoveAndTruncate() {
+        GeneratedCalls calls = new GeneratedCalls(MSISDNS, 1);
+        for (int i = 0; i < CALLS; i++) {
+            calls.add(i % 2, (i + 1) % 2, START_SECOND + i, START_SECOND + i + 1, GeneratedCalls.OUTGOING);
+        }
+        assertEquals(CALLS, calls.size());
+
+        calls.move(CALLS - 1, 0);
+        calls.truncate(1);
+
+        assertEquals(1, calls.size());
+        assertEquals(START_SECOND + CALLS - 1, calls.startSecond(0));
+        assertEquals("01", calls.toCDR(0).getCallType());
+    }
+}
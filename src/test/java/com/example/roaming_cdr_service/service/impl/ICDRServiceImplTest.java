@@ -1,16 +1,31 @@
 package com.example.roaming_cdr_service.service.impl;
 
+import com.example.roaming_cdr_service.config.CDRGeneratorProperties;
+import com.example.roaming_cdr_service.model.CDR;
 import com.example.roaming_cdr_service.model.Subscriber;
+import com.example.roaming_cdr_service.repository.CDRArchive;
+import com.example.roaming_cdr_service.repository.CDRArchiveFile;
+import com.example.roaming_cdr_service.repository.CDRBulkWriter;
 import com.example.roaming_cdr_service.repository.CDRRepository;
 import com.example.roaming_cdr_service.repository.SubscriberRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -20,18 +35,35 @@ class CDRServiceImplTest {
 
     private static final String TEST_MSISDN_1 = "79991112233";
     private static final String TEST_MSISDN_2 = "79992221122";
+    private static final int BATCH_SIZE = 100;
     @Mock
     private CDRRepository cdrRepository;
 
     @Mock
     private SubscriberRepository subscriberRepository;
 
+    @Mock
+    private CDRBulkWriter cdrBulkWriter;
+
+    @Mock
+    private CDRArchive cdrArchive;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private CDRGeneratorProperties generatorProperties = new CDRGeneratorProperties();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private CDRServiceImpl cdrServiceImpl;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(cdrBulkWriter.getBatchSize()).thenReturn(BATCH_SIZE);
     }
 
     /**
@@ -51,7 +83,29 @@ class CDRServiceImplTest {
         cdrServiceImpl.generateCDRs();
 
         // Проверка результата
-        verify(cdrRepository, atLeastOnce()).saveAll(anyList());
+        verify(cdrBulkWriter, atLeastOnce()).insertAll(anyList());
+        assertTrue(meterRegistry.get("cdr.generation.batch").timer().count() > 0);
+        assertTrue(meterRegistry.get("cdr.generation.records").counter().count() > 0);
+    }
+
+    /**
+     * Тест для метода {@link CDRServiceImpl#generateCDRs()}.
+     * Проверяет генерацию CDR в параллельном режиме с несколькими партициями.
+     */
+    @Test
+    void testGenerateCDRs_Parallel() {
+        List<Subscriber> mockSubscribers = List.of(
+                new Subscriber(TEST_MSISDN_1),
+                new Subscriber(TEST_MSISDN_2)
+        );
+        when(subscriberRepository.findAll()).thenReturn(mockSubscribers);
+        generatorProperties.setSeed(1L);
+        generatorProperties.setPartitions(12);
+        generatorProperties.setParallelism(4);
+
+        cdrServiceImpl.generateCDRs();
+
+        verify(cdrBulkWriter, atLeastOnce()).insertAll(anyList());
     }
 
     /**
@@ -66,4 +120,51 @@ class CDRServiceImplTest {
         // Вызов метода и проверка исключения
         assertThrows(IllegalStateException.class, () -> cdrServiceImpl.generateCDRs());
     }
-}
\ No newline at end of file
+
+    /**
+     * Тест для метода {@link CDRServiceImpl#streamCDRsForSubscriber}.
+     * Проверяет, что записи передаются по одной и отсоединяются от контекста персистентности.
+     */
+    @Test
+    void testStreamCDRsForSubscriber() {
+        LocalDateTime start = LocalDateTime.of(2025, 2, 1, 0, 0);
+        LocalDateTime end = start.plusMonths(1);
+        CDR first = CDR.builder().id(1L).msisdn(TEST_MSISDN_1).otherMsisdn(TEST_MSISDN_2).build();
+        CDR second = CDR.builder().id(2L).msisdn(TEST_MSISDN_2).otherMsisdn(TEST_MSISDN_1).build();
+        when(cdrRepository.streamSubscriberCalls(TEST_MSISDN_1, start, end)).thenReturn(Stream.of(first, second));
+
+        List<CDR> received = new ArrayList<>();
+        cdrServiceImpl.streamCDRsForSubscriber(TEST_MSISDN_1, start, end, received::add);
+
+        assertEquals(List.of(first, second), received);
+        verify(entityManager).detach(first);
+        verify(entityManager).detach(second);
+    }
+
+    /**
+     * Тест для метода {@link CDRServiceImpl#streamCDRs}.
+     * Проверяет, что звонки архивного месяца выдаются между записями таблицы в порядке времени начала.
+     */
+    @Test
+    void testStreamCDRs_MergesArchivedMonths() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime end = start.plusMonths(3);
+        CDR january = CDR.builder().id(1L).callStartTime(start.plusDays(14)).build();
+        CDR march = CDR.builder().id(2L).callStartTime(start.plusMonths(2).plusDays(2)).build();
+        CDR february = CDR.builder().callStartTime(start.plusMonths(1).plusDays(5)).build();
+        CDRArchiveFile archived = mock(CDRArchiveFile.class);
+        when(archived.getStart()).thenReturn(start.plusMonths(1));
+        doAnswer(invocation -> {
+            invocation.<Consumer<CDR>>getArgument(2).accept(february);
+            return null;
+        }).when(archived).forEachCall(eq(start), eq(end), any());
+        when(cdrArchive.find(start, end)).thenReturn(List.of(archived));
+        when(cdrRepository.streamByCallStartTimeBetween(start, end)).thenReturn(Stream.of(january, march));
+
+        List<CDR> received = new ArrayList<>();
+        cdrServiceImpl.streamCDRs(start, end, received::add);
+
+        assertEquals(List.of(january, february, march), received);
+        verify(entityManager, never()).detach(february);
+    }
+}
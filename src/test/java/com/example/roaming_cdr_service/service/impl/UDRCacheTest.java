@@ -0,0 +1,146 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.model.CallDuration;
+import com.example.roaming_cdr_service.model.UDR;
+import com.example.roaming_cdr_service.repository.UDRRollupChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link UDRCache}.
+ */
+class UDRCacheTest {
+
+    private static final String MSISDN = "79991112233";
+    private static final String OTHER_MSISDN = "79992223344";
+    private static final YearMonth FEBRUARY = YearMonth.of(2025, 2);
+    private static final YearMonth MARCH = YearMonth.of(2025, 3);
+
+    private MeterRegistry meterRegistry;
+    private UDRCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UDRCache(3, meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    /**
+     * Проверяет попадания и промахи и их метрики.
+     */
+    @Test
+    void testGetUDR_HitAfterMiss() {
+        UDR first = cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        UDR second = cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    /**
+     * Проверяет, что запись звонков в месяц делает устаревшими только записи этого месяца.
+     */
+    @Test
+    void testOnRollupChanged_InvalidatesOnlyWrittenMonth() {
+        cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        cache.getUDR(MSISDN, MARCH, loader(MSISDN));
+
+        cache.onRollupChanged(UDRRollupChangedEvent.forMonths(Set.of(MARCH)));
+        cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        cache.getUDR(MSISDN, MARCH, loader(MSISDN));
+
+        assertEquals(3, loads.get());
+    }
+
+    /**
+     * Проверяет, что пересчёт всей сводной таблицы делает устаревшими все записи.
+     */
+    @Test
+    void testOnRollupChanged_AllMonths() {
+        cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        cache.getAllUDRs(MARCH, () -> Map.of(MSISDN, udr(MSISDN)));
+
+        cache.onRollupChanged(UDRRollupChangedEvent.forAllMonths());
+        cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        cache.getAllUDRs(MARCH, () -> Map.of(MSISDN, udr(MSISDN)));
+
+        assertEquals(0, cache.getHits());
+    }
+
+    /**
+     * Проверяет вытеснение давно не использованных записей по суммарному весу.
+     */
+    @Test
+    void testEvictsLeastRecentlyUsedByWeight() {
+        cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        cache.getUDR(OTHER_MSISDN, FEBRUARY, loader(OTHER_MSISDN));
+        cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+
+        // UDR всех абонентов весит 2 и вытесняет наименее используемую запись
+        cache.getAllUDRs(MARCH, () -> Map.of(MSISDN, udr(MSISDN), OTHER_MSISDN, udr(OTHER_MSISDN)));
+
+        assertEquals(2, cache.size());
+        cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        assertEquals(2, loads.get());
+        cache.getUDR(OTHER_MSISDN, FEBRUARY, loader(OTHER_MSISDN));
+        assertEquals(3, loads.get());
+        assertTrue(meterRegistry.get("cache.evictions").functionCounter().count() > 0);
+    }
+
+    /**
+     * Проверяет, что ошибки расчёта не кэшируются.
+     */
+    @Test
+    void testLoaderExceptionNotCached() {
+        assertThrows(IllegalStateException.class, () -> cache.getUDR(MSISDN, FEBRUARY, () -> {
+            throw new IllegalStateException();
+        }));
+
+        cache.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Проверяет, что нулевой вес отключает кэш.
+     */
+    @Test
+    void testDisabled() {
+        UDRCache disabled = new UDRCache(0, meterRegistry);
+
+        disabled.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+        disabled.getUDR(MSISDN, FEBRUARY, loader(MSISDN));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, disabled.size());
+    }
+
+    private Supplier<UDR> loader(String msisdn) {
+        return () -> {
+            loads.incrementAndGet();
+            return udr(msisdn);
+        };
+    }
+
+    private static UDR udr(String msisdn) {
+        return UDR.builder()
+                .msisdn(msisdn)
+                .incomingCall(new CallDuration(60))
+                .outcomingCall(new CallDuration(120))
+                .build();
+    }
+}
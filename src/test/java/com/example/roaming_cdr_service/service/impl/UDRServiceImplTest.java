@@ -0,0 +1,300 @@
+package com.example.roaming_cdr_service.service.impl;
+
+import com.example.roaming_cdr_service.exception.ConflictException;
+import com.example.roaming_cdr_service.model.CallDuration;
+import com.example.roaming_cdr_service.model.CallTypeTotal;
+import com.example.roaming_cdr_service.model.UDR;
+import com.example.roaming_cdr_service.model.UDRRollup;
+import com.example.roaming_cdr_service.repository.CDRArchive;
+import com.example.roaming_cdr_service.repository.CDRColumnStore;
+import com.example.roaming_cdr_service.repository.CDRRepository;
+import com.example.roaming_cdr_service.repository.UDRRollupChangedEvent;
+import com.example.roaming_cdr_service.repository.UDRRollupRepository;
+import com.example.roaming_cdr_service.repository.UDRRollupWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для класса {@link UDRServiceImpl}.
+ */
+class UDRServiceImplTest {
+
+    private static final String MSISDN = "79991112233";
+    private static final String OTHER_MSISDN = "79992223344";
+    private static final LocalDateTime START = LocalDateTime.of(2025, 2, 1, 0, 0);
+    private static final LocalDateTime END = START.plusMonths(1);
+    private static final YearMonth MONTH = YearMonth.of(2025, 2);
+    private static final LocalDate MONTH_START = MONTH.atDay(1);
+
+    @Mock
+    private CDRRepository cdrRepository;
+
+    @Mock
+    private CDRArchive cdrArchive;
+
+    @Mock
+    private CDRColumnStore columnStore;
+
+    @Mock
+    private UDRRollupRepository rollupRepository;
+
+    @Mock
+    private UDRRollupWriter rollupWriter;
+
+    @Mock
+    private CDRGenerationJob generationJob;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private UDRCache udrCache = new UDRCache(1000, new SimpleMeterRegistry());
+
+    @InjectMocks
+    private UDRServiceImpl udrService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    /**
+     * Проверяет, что диапазон внутри одного месяца суммируется по CDR записям без обращения к сводной таблице.
+     */
+    @Test
+    void testGetUDR_RangeWithinMonth() {
+        LocalDateTime from = START.plusDays(2);
+        LocalDateTime to = START.plusDays(10);
+        when(cdrRepository.sumSubscriberCallDurations(MSISDN, from, to)).thenReturn(List.of(
+                total(MSISDN, "01", 3_725),
+                total(MSISDN, "02", 59)));
+
+        UDR udr = udrService.getUDR(MSISDN, from, to);
+
+        assertEquals(MSISDN, udr.getMsisdn());
+        assertEquals("01:02:05", udr.getOutcomingCall().getTotalTime());
+        assertEquals("00:00:59", udr.getIncomingCall().getTotalTime());
+        verifyNoInteractions(rollupRepository);
+    }
+
+    /**
+     * Проверяет, что полные месяцы диапазона берутся из сводной таблицы,
+     * а CDR записи сканируются только для неполных месяцев на краях.
+     */
+    @Test
+    void testGetUDR_RangeCombinesRollupsAndEdges() {
+        LocalDateTime from = START.minusDays(10);
+        LocalDateTime to = START.plusMonths(2).plusDays(5);
+        when(cdrRepository.sumSubscriberCallDurations(MSISDN, from, START))
+                .thenReturn(List.of(total(MSISDN, "01", 10)));
+        when(rollupRepository.findByMsisdnAndMonthStartBetween(MSISDN, MONTH_START, MONTH_START.plusMonths(1)))
+                .thenReturn(List.of(rollup(MSISDN, 100, 200), rollup(MSISDN, 1_000, 2_000)));
+        when(cdrRepository.sumSubscriberCallDurations(MSISDN, START.plusMonths(2), to))
+                .thenReturn(List.of(total(MSISDN, "02", 1)));
+
+        UDR udr = udrService.getUDR(MSISDN, from, to);
+
+        assertEquals(new CallDuration(1_101), udr.getIncomingCall());
+        assertEquals(new CallDuration(2_210), udr.getOutcomingCall());
+        verify(cdrRepository, times(2)).sumSubscriberCallDurations(any(), any(), any());
+    }
+
+    /**
+     * Проверяет, что диапазон из целых месяцев не сканирует CDR записи.
+     */
+    @Test
+    void testGetUDR_RangeOfWholeMonths() {
+        when(rollupRepository.findByMsisdnAndMonthStartBetween(MSISDN, MONTH_START, MONTH_START))
+                .thenReturn(List.of(rollup(MSISDN, 60, 0)));
+
+        UDR udr = udrService.getUDR(MSISDN, START, END);
+
+        assertEquals("00:01:00", udr.getIncomingCall().getTotalTime());
+        verifyNoInteractions(cdrRepository);
+    }
+
+    /**
+     * Проверяет, что при отсутствии звонков выбрасывается {@link EntityNotFoundException}.
+     */
+    @Test
+    void testGetUDR_RangeNoDataFound() {
+        when(cdrRepository.sumSubscriberCallDurations(any(), any(), any())).thenReturn(Collections.emptyList());
+        when(rollupRepository.findByMsisdnAndMonthStartBetween(any(), any(), any())).thenReturn(Collections.emptyList());
+
+        assertThrows(EntityNotFoundException.class, () -> udrService.getUDR(MSISDN, START.minusDays(1), END.plusDays(1)));
+    }
+
+    /**
+     * Проверяет, что UDR за месяц читается из сводной таблицы.
+     */
+    @Test
+    void testGetUDR_Month() {
+        when(rollupRepository.findById(new UDRRollup.Key(MSISDN, MONTH_START)))
+                .thenReturn(Optional.of(rollup(MSISDN, 59, 3_725)));
+
+        UDR udr = udrService.getUDR(MSISDN, MONTH);
+
+        assertEquals(MSISDN, udr.getMsisdn());
+        assertEquals("01:02:05", udr.getOutcomingCall().getTotalTime());
+        assertEquals("00:00:59", udr.getIncomingCall().getTotalTime());
+        verifyNoInteractions(cdrRepository);
+    }
+
+    /**
+     * Проверяет, что повторный запрос UDR за месяц обслуживается из кэша до записи звонков в этот месяц.
+     */
+    @Test
+    void testGetUDR_MonthCachedUntilMonthWritten() {
+        when(rollupRepository.findById(new UDRRollup.Key(MSISDN, MONTH_START)))
+                .thenReturn(Optional.of(rollup(MSISDN, 59, 3_725)));
+
+        UDR first = udrService.getUDR(MSISDN, MONTH);
+        assertSame(first, udrService.getUDR(MSISDN, MONTH));
+        verify(rollupRepository, times(1)).findById(any());
+
+        udrCache.onRollupChanged(UDRRollupChangedEvent.forMonths(Set.of(MONTH)));
+        udrService.getUDR(MSISDN, MONTH);
+        verify(rollupRepository, times(2)).findById(any());
+    }
+
+    /**
+     * Проверяет, что при отсутствии сводной записи за месяц выбрасывается {@link EntityNotFoundException}.
+     */
+    @Test
+    void testGetUDR_MonthNoDataFound() {
+        when(rollupRepository.findById(any())).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class, () -> udrService.getUDR(MSISDN, MONTH));
+    }
+
+    /**
+     * Проверяет сборку UDR для всех абонентов из сводных записей месяца.
+     */
+    @Test
+    void testGetAllUDRs_Success() {
+        when(rollupRepository.findByMonthStartOrderByMsisdn(MONTH_START)).thenReturn(List.of(
+                rollup(MSISDN, 60, 300),
+                rollup(OTHER_MSISDN, 120, 0)));
+
+        Map<String, UDR> udrs = udrService.getAllUDRs(MONTH);
+
+        assertEquals(List.of(MSISDN, OTHER_MSISDN), List.copyOf(udrs.keySet()));
+        assertEquals("00:05:00", udrs.get(MSISDN).getOutcomingCall().getTotalTime());
+        assertEquals("00:01:00", udrs.get(MSISDN).getIncomingCall().getTotalTime());
+        assertEquals("00:00:00", udrs.get(OTHER_MSISDN).getOutcomingCall().getTotalTime());
+        assertEquals("00:02:00", udrs.get(OTHER_MSISDN).getIncomingCall().getTotalTime());
+    }
+
+    /**
+     * Проверяет, что потоковая выдача передаёт UDR по одному и отсоединяет прочитанные записи.
+     */
+    @Test
+    void testStreamAllUDRs() {
+        UDRRollup first = rollup(MSISDN, 60, 300);
+        UDRRollup second = rollup(OTHER_MSISDN, 120, 0);
+        when(rollupRepository.streamByMonthStart(MONTH_START)).thenReturn(Stream.of(first, second));
+
+        List<UDR> udrs = new ArrayList<>();
+        udrService.streamAllUDRs(MONTH, udrs::add);
+
+        assertEquals(List.of(MSISDN, OTHER_MSISDN), udrs.stream().map(UDR::getMsisdn).toList());
+        verify(entityManager).detach(first);
+        verify(entityManager).detach(second);
+        assertEquals(0, udrCache.size());
+    }
+
+    /**
+     * Проверяет пересчёт сводной таблицы после завершения генерации.
+     */
+    @Test
+    void testRebuildRollup() {
+        when(rollupWriter.rebuild()).thenReturn(7);
+
+        assertEquals(7, udrService.rebuildRollup());
+    }
+
+    /**
+     * Проверяет, что при включённом колоночном хранилище UDR считаются по нему без запросов к базе.
+     */
+    @Test
+    void testGetUDR_FromColumnStore() {
+        LocalDateTime from = START.minusDays(10);
+        LocalDateTime to = START.plusMonths(2).plusDays(5);
+        when(columnStore.isAvailable()).thenReturn(true);
+        when(columnStore.addSubscriberCallDurations(any(long[].class), eq(MSISDN), eq(from), eq(to))).thenAnswer(invocation -> {
+            long[] seconds = invocation.getArgument(0);
+            seconds[0] += 59;
+            seconds[1] += 3_725;
+            return true;
+        });
+        when(columnStore.aggregate(MONTH_START, START, END)).thenReturn(List.of(rollup(MSISDN, 1, 2), rollup(OTHER_MSISDN, 3, 4)));
+
+        UDR udr = udrService.getUDR(MSISDN, from, to);
+        Map<String, UDR> udrs = udrService.getAllUDRs(MONTH);
+
+        assertEquals("00:00:59", udr.getIncomingCall().getTotalTime());
+        assertEquals("01:02:05", udr.getOutcomingCall().getTotalTime());
+        assertEquals(List.of(MSISDN, OTHER_MSISDN), new ArrayList<>(udrs.keySet()));
+        assertEquals("00:00:04", udrs.get(OTHER_MSISDN).getOutcomingCall().getTotalTime());
+        assertThrows(EntityNotFoundException.class, () -> udrService.getUDR(OTHER_MSISDN, MONTH));
+        verifyNoInteractions(cdrRepository, rollupRepository);
+    }
+
+    /**
+     * Проверяет, что пересчёт во время генерации отклоняется.
+     */
+    @Test
+    void testRebuildRollup_GenerationRunning() {
+        when(generationJob.isRunning()).thenReturn(true);
+
+        assertThrows(ConflictException.class, () -> udrService.rebuildRollup());
+        verify(rollupWriter, never()).rebuild();
+    }
+
+    private static UDRRollup rollup(String msisdn, long incomingSeconds, long outgoingSeconds) {
+        return UDRRollup.builder()
+                .msisdn(msisdn)
+                .monthStart(MONTH_START)
+                .incomingSeconds(incomingSeconds)
+                .outgoingSeconds(outgoingSeconds)
+                .build();
+    }
+
+    private static CallTypeTotal total(String msisdn, String callType, long seconds) {
+        return new CallTypeTotal() {
+            @Override
+            public String getMsisdn() {
+                return msisdn;
+            }
+
+            @Override
+            public String getCallType() {
+                return callType;
+            }
+
+            @Override
+            public Long getTotalSeconds() {
+                return seconds;
+            }
+        };
+    }
+}